@@ -0,0 +1,190 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Generates input for benchmarks.
+ * Every format has an X value (a line counter) followed by random fields.
+ * The formats are:
+ * <ul>
+ * <li><code>split-comma</code>: fields separated by commas, split with a regex</li>
+ * <li><code>split-space</code>: fields separated by spaces, split with the default regex</li>
+ * <li><code>csv</code>: fields separated by commas, read with --csv</li>
+ * <li><code>csv-quoted</code>: quoted fields separated by commas, read with --csv</li>
+ * <li><code>json</code>: JSON objects, read with --json</li>
+ * <li><code>pattern</code>: <code>name=value</code> pairs, read with --pattern</li>
+ * </ul>
+ * @author Adam Crume
+ */
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+
+    /**
+     * Generates a line.
+     * @param format input format
+     * @param width number of fields, including the X value
+     * @param x X value
+     * @param random source of field values
+     * @return the line
+     */
+    static String line(String format, int width, long x, Random random) {
+        StringBuilder b = new StringBuilder();
+        if(format.equals("json")) {
+            b.append("{\"ts\": ").append(x);
+            for(int i = 1; i < width; i++) {
+                b.append(", \"f").append(i).append("\": ").append(value(random));
+            }
+            b.append('}');
+        } else if(format.equals("pattern")) {
+            b.append("ts=").append(x);
+            for(int i = 1; i < width; i++) {
+                b.append(" f").append(i).append('=').append(value(random));
+            }
+        } else {
+            String separator = format.equals("split-space") ? " " : ",";
+            String quote = format.equals("csv-quoted") ? "\"" : "";
+            b.append(quote).append(x).append(quote);
+            for(int i = 1; i < width; i++) {
+                b.append(separator).append(quote).append(value(random)).append(quote);
+            }
+        }
+        return b.toString();
+    }
+
+
+    private static String value(Random random) {
+        return Double.toString(Math.round(random.nextGaussian() * 1e6) / 1000.0);
+    }
+
+
+    /**
+     * Returns the regex for the <code>pattern</code> format.
+     * @param width number of fields, including the X value
+     * @return the regex
+     */
+    static String regex(int width) {
+        StringBuilder b = new StringBuilder("ts=(\\S+)");
+        for(int i = 1; i < width; i++) {
+            b.append(" f").append(i).append("=(\\S+)");
+        }
+        return b.toString();
+    }
+
+
+    /**
+     * Returns the key paths of the fields for the <code>json</code> format.
+     * @param width number of fields, including the X value
+     * @return the key paths, not including the X value
+     */
+    static String[] keyPaths(int width) {
+        String[] keyPaths = new String[width - 1];
+        for(int i = 0; i < keyPaths.length; i++) {
+            keyPaths[i] = "f" + (i + 1);
+        }
+        return keyPaths;
+    }
+
+
+    /**
+     * Configures a file to read a format, and calls {@link DataFile#init()}.
+     * @param dataFile file to configure
+     * @param format input format
+     * @param width number of fields, including the X value
+     */
+    static void configure(DataFile dataFile, String format, int width) {
+        if(format.equals("json")) {
+            dataFile.setJson(true);
+            dataFile.setKeyPaths(keyPaths(width));
+            dataFile.setXKeyPath("ts");
+        } else {
+            dataFile.setX(1);
+            if(format.equals("split-comma")) {
+                dataFile.setFieldSeparator(Pattern.compile(","));
+            } else if(format.startsWith("csv")) {
+                dataFile.setCsvSeparator(',');
+            } else if(format.equals("pattern")) {
+                dataFile.setLinePattern(new LinePattern(regex(width)));
+            }
+        }
+        dataFile.init();
+    }
+
+
+    /**
+     * Returns command line options to read a format.
+     * @param format input format
+     * @param width number of fields, including the X value
+     * @return the options
+     */
+    static List<String> options(String format, int width) {
+        List<String> options = new ArrayList<String>();
+        if(format.equals("json")) {
+            options.add("--json");
+            StringBuilder select = new StringBuilder();
+            for(String keyPath : keyPaths(width)) {
+                select.append(select.length() == 0 ? "" : ",").append(keyPath);
+            }
+            options.add("--select=" + select);
+            options.add("--x=ts");
+        } else {
+            options.add("--x=1");
+            if(format.equals("split-comma")) {
+                options.add("--field-separator=,");
+            } else if(format.startsWith("csv")) {
+                options.add("--csv");
+            } else if(format.equals("pattern")) {
+                options.add("--pattern=" + regex(width));
+            }
+        }
+        return options;
+    }
+
+
+    /**
+     * Writes a temporary file, which is deleted when the JVM exits.
+     * @param format input format
+     * @param width number of fields, including the X value
+     * @param lines number of lines
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    static File writeFile(String format, int width, int lines) throws IOException {
+        File file = File.createTempFile("tailplot-benchmark", ".txt");
+        file.deleteOnExit();
+        Random random = new Random(0);
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        try {
+            for(int i = 0; i < lines; i++) {
+                out.write(line(format, width, i, random));
+                out.newLine();
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading a whole generated file, from the file to the datasets.
+ * In <code>plot</code> mode, the file is plotted with --output, so lines go through {@link FileProcessor}
+ * and the GUI thread to the datasets, and the plot is painted once at the end.
+ * In <code>stats</code> mode, the file is read with --stats, which leaves out the GUI thread.
+ * Throughput in lines per second is <code>lines</code> divided by the reported time.
+ * @author Adam Crume
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileProcessorBenchmark {
+    @Param({ "split-space", "csv", "json" })
+    public String format;
+
+    /** Number of fields, including the X value. */
+    @Param({ "4", "16" })
+    public int width;
+
+    @Param({ "100000" })
+    public int lines;
+
+    @Param({ "plot", "stats" })
+    public String mode;
+
+    private String[] args;
+
+    private PrintStream savedOut;
+
+
+    @Setup
+    public void setup() throws IOException {
+        File file = BenchmarkData.writeFile(format, width, lines);
+        List<String> args = new ArrayList<String>();
+        args.add(file.getPath());
+        args.addAll(BenchmarkData.options(format, width));
+        if(mode.equals("plot")) {
+            File image = File.createTempFile("tailplot-benchmark", ".png");
+            image.deleteOnExit();
+            args.add("--output=" + image.getPath());
+        } else {
+            args.add("--stats");
+        }
+        this.args = args.toArray(new String[args.size()]);
+        // Keep the statistics tables out of the benchmark output.
+        savedOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(savedOut);
+    }
+
+
+    @Benchmark
+    public TailPlot readFile() throws IOException {
+        TailPlot tailPlot = new TailPlot();
+        tailPlot.run(args);
+        return tailPlot;
+    }
+}
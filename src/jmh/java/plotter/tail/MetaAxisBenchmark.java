@@ -0,0 +1,98 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import plotter.DoubleData;
+import plotter.xy.LinearXYAxis;
+import plotter.xy.XYDimension;
+
+/**
+ * Measures switching an axis to and from log scale, which transforms every point.
+ * 100M points need a heap of several gigabytes.
+ * @author Adam Crume
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g", "-Djava.awt.headless=true" })
+public class MetaAxisBenchmark {
+    @Param({ "1000000", "10000000", "100000000" })
+    public int points;
+
+    private MetaAxis metaAxis;
+
+
+    @Setup
+    public void setup() {
+        LinearXYAxis xAxis = new LinearXYAxis(XYDimension.X);
+        LinearXYAxis yAxis = new LinearXYAxis(XYDimension.Y);
+        MultiplexingXYPlotLine line = new MultiplexingXYPlotLine(xAxis, yAxis, XYDimension.X);
+        PlotDataset dataset = new PlotDataset(line);
+        Random random = new Random(0);
+        for(int i = 0; i < points; i++) {
+            // Positive, so the log scale is defined.
+            dataset.add(i, 1 + random.nextDouble() * 1000);
+        }
+        final List<DoubleData> datasets = Collections.singletonList(dataset.getYData());
+        metaAxis = new MetaAxis("Y") {
+            @Override
+            public List<DoubleData> getDatasets() {
+                return datasets;
+            }
+
+
+            @Override
+            protected void logscaleUpdated(boolean logscale) {
+            }
+
+
+            @Override
+            protected void minMaxUpdated() {
+            }
+        };
+        metaAxis.createAutoscaleCheckbox("Autoscale");
+        metaAxis.createLogscaleCheckbox("Log scale");
+        metaAxis.createMinTextField();
+        metaAxis.createMaxTextField();
+        metaAxis.setAxis(yAxis);
+    }
+
+
+    @Benchmark
+    public void logscaleRoundTrip() {
+        metaAxis.setLogscale(true);
+        metaAxis.setLogscale(false);
+    }
+}
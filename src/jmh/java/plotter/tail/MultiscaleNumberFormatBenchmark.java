@@ -0,0 +1,91 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.text.ParseException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MultiscaleNumberFormat}, which formats axis labels and highlighted values.
+ * @author Adam Crume
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiscaleNumberFormatBenchmark {
+    private MultiscaleNumberFormat format = new MultiscaleNumberFormat();
+
+    private double[] values;
+
+    private String[] strings;
+
+    private int next;
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        values = new double[1024];
+        strings = new String[values.length];
+        for(int i = 0; i < values.length; i++) {
+            // Cover both the plain and exponential ranges.
+            values[i] = Math.pow(10, random.nextDouble() * 12 - 6) * (random.nextBoolean() ? 1 : -1);
+            strings[i] = format.format(values[i]);
+        }
+    }
+
+
+    @Benchmark
+    public String formatDouble() {
+        double value = values[next];
+        next = (next + 1) & (values.length - 1);
+        return format.format(value);
+    }
+
+
+    /**
+     * Formats a few values over and over, like tick labels.
+     */
+    @Benchmark
+    public String formatRepeated() {
+        double value = values[next];
+        next = (next + 1) & 7;
+        return format.format(value);
+    }
+
+
+    @Benchmark
+    public Number parse() throws ParseException {
+        String s = strings[next];
+        next = (next + 1) & (strings.length - 1);
+        return format.parse(s);
+    }
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JPanel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import plotter.DoubleData;
+import plotter.xy.LinearXYAxis;
+import plotter.xy.XYDimension;
+
+/**
+ * Measures finding the data point nearest the mouse, as done by {@link PointHighlighter} for each line on every mouse move.
+ * Sorted lines are searched in the pixel coordinates cached by {@link ScreenCoordinates}, starting from the previous result,
+ * and scatter plots are searched in its grid.
+ * Searching the data directly is only a fallback, for lines which can't be cached.
+ * Mouse positions follow a random walk, like a real mouse.
+ * @author Adam Crume
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearestPointBenchmark {
+    private static final int WIDTH = 1000;
+
+    private static final int HEIGHT = 500;
+
+    @Param({ "1000", "1000000", "10000000" })
+    public int points;
+
+    private DoubleData xData;
+
+    private ScreenCoordinates sorted;
+
+    private ScreenCoordinates scattered;
+
+    private double[] queries;
+
+    private int[] xs;
+
+    private int[] ys;
+
+    private int next;
+
+    private int hint = -1;
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        JPanel target = new JPanel();
+        target.setSize(WIDTH, HEIGHT);
+
+        MultiplexingXYPlotLine sortedLine = createLine(points);
+        for(int i = 0; i < points; i++) {
+            sortedLine.add(i, random.nextDouble() * points);
+        }
+        xData = sortedLine.getXData();
+        sorted = new ScreenCoordinates(sortedLine);
+        sorted.update(target);
+
+        MultiplexingXYPlotLine scatterLine = createLine(points);
+        // Decreasing X values turn the line into a scatter plot.
+        scatterLine.add(points, 0);
+        for(int i = 1; i < points; i++) {
+            scatterLine.add(random.nextDouble() * points, random.nextDouble() * points);
+        }
+        scattered = new ScreenCoordinates(scatterLine);
+        scattered.update(target);
+        // Builds the grid
+        scattered.getNearestPoint(0, 0);
+
+        queries = new double[1024];
+        xs = new int[queries.length];
+        ys = new int[queries.length];
+        int x = WIDTH / 2;
+        int y = HEIGHT / 2;
+        for(int i = 0; i < queries.length; i++) {
+            x = Math.max(0, Math.min(WIDTH - 1, x + random.nextInt(11) - 5));
+            y = Math.max(0, Math.min(HEIGHT - 1, y + random.nextInt(11) - 5));
+            xs[i] = x;
+            ys[i] = y;
+            queries[i] = (double) x / WIDTH * points;
+        }
+    }
+
+
+    private static MultiplexingXYPlotLine createLine(int points) {
+        LinearXYAxis xAxis = new LinearXYAxis(XYDimension.X);
+        xAxis.setStart(0);
+        xAxis.setEnd(points);
+        xAxis.setSize(WIDTH, HEIGHT);
+        LinearXYAxis yAxis = new LinearXYAxis(XYDimension.Y);
+        yAxis.setStart(0);
+        yAxis.setEnd(points);
+        yAxis.setSize(WIDTH, HEIGHT);
+        return new MultiplexingXYPlotLine(xAxis, yAxis, XYDimension.X);
+    }
+
+
+    /**
+     * Searches the data directly, as done for lines which can't be cached.
+     */
+    @Benchmark
+    public int getNearestIndex() {
+        double x = queries[next];
+        next = (next + 1) & (queries.length - 1);
+        return PointHighlighter.getNearestIndex(xData, x);
+    }
+
+
+    /**
+     * Searches cached pixel coordinates without a hint.
+     */
+    @Benchmark
+    public int getNearestIndexCached() {
+        int x = xs[next];
+        next = (next + 1) & (queries.length - 1);
+        return sorted.getNearestIndex(x);
+    }
+
+
+    /**
+     * Searches cached pixel coordinates starting from the previous result, as done while the mouse moves.
+     */
+    @Benchmark
+    public int getNearestIndexCachedWithHint() {
+        int x = xs[next];
+        next = (next + 1) & (queries.length - 1);
+        hint = sorted.getNearestIndex(x, hint);
+        return hint;
+    }
+
+
+    /**
+     * Searches the grid of a scatter plot.
+     */
+    @Benchmark
+    public int getNearestPoint() {
+        int x = xs[next];
+        int y = ys[next];
+        next = (next + 1) & (queries.length - 1);
+        return scattered.getNearestPoint(x, y);
+    }
+}
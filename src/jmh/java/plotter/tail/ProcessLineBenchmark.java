@@ -0,0 +1,86 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DataFile#processLine(int, String)} for each input format and several line widths.
+ * @author Adam Crume
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessLineBenchmark {
+    /** Number of distinct lines, which must be a power of two. */
+    private static final int LINES = 1024;
+
+    @Param({ "split-comma", "split-space", "csv", "csv-quoted", "json", "pattern" })
+    public String format;
+
+    /** Number of fields, including the X value. */
+    @Param({ "4", "16", "64" })
+    public int width;
+
+    private DataFile dataFile;
+
+    private String[] lines;
+
+    private int next;
+
+    private int lineNumber;
+
+
+    @Setup
+    public void setup() {
+        TailPlot tailPlot = new TailPlot();
+        // Statistics mode doesn't create plot lines, so no GUI is needed.
+        tailPlot.setStatistics(true);
+        dataFile = new DataFile(tailPlot);
+        BenchmarkData.configure(dataFile, format, width);
+        Random random = new Random(0);
+        lines = new String[LINES];
+        for(int i = 0; i < lines.length; i++) {
+            lines[i] = BenchmarkData.line(format, width, i, random);
+        }
+        // The first line sets up the fields.
+        dataFile.processLine(++lineNumber, lines[0]);
+    }
+
+
+    @Benchmark
+    public double[] processLine() {
+        String line = lines[next];
+        next = (next + 1) & (LINES - 1);
+        return dataFile.processLine(++lineNumber, line);
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+/**
+ * Chooses an autoscaled axis range which only changes when it has to.
+ * The range grows, to round values, only when the data goes outside it.
+ * It never shrinks, since the data's extent only grows until {@link #reset()}.
+ * For a scrolling axis, the width is fixed and the range advances in round steps when the data reaches the end.
+ * Either way, there is a margin of 10% of the data's range on each side, as with normal autoscaling.
+ * @author Adam Crume
+ */
+class AutoscaleHysteresis {
+    /** Fraction of the data's range added as a margin on each side. */
+    private static final double MARGIN = .1;
+
+    /** Start of the range, or NaN if not yet computed. */
+    private double start = Double.NaN;
+
+    /** End of the range, or NaN if not yet computed. */
+    private double end = Double.NaN;
+
+
+    /**
+     * Updates the range for the current data.
+     * @param min minimum data value to display
+     * @param max maximum data value to display
+     * @param scrolling true if the width of the range should stay the same
+     * @return true if the range changed
+     */
+    public boolean update(double min, double max, boolean scrolling) {
+        double span = max - min;
+        double margin = MARGIN * span;
+        if(margin == 0) {
+            // Match normal autoscaling, which uses an empty range.
+            return set(min, max);
+        }
+        double step = roundStep(margin);
+        if(scrolling) {
+            double width = span + 2 * margin;
+            if(Double.isNaN(start) || Math.abs((end - start) - width) > 1e-9 * width || min < start
+                    || max > end - margin) {
+                // Advance the end past the margin by at most one step, so the start stays before the minimum.
+                double newEnd = Math.floor((max + margin) / step) * step + step;
+                return set(newEnd - width, newEnd);
+            }
+            return false;
+        }
+        if(Double.isNaN(start)) {
+            return set(Math.floor((min - margin) / step) * step, Math.ceil((max + margin) / step) * step);
+        }
+        if(min < start || max > end) {
+            // Only move the side the data went past.
+            double newStart = min < start ? Math.floor((min - margin) / step) * step : start;
+            double newEnd = max > end ? Math.ceil((max + margin) / step) * step : end;
+            return set(newStart, newEnd);
+        }
+        return false;
+    }
+
+
+    /**
+     * Forgets the current range, so the next update computes it from scratch.
+     */
+    public void reset() {
+        start = Double.NaN;
+        end = Double.NaN;
+    }
+
+
+    /**
+     * Returns the start of the range.
+     * @return the start of the range, or NaN if not yet computed
+     */
+    public double getStart() {
+        return start;
+    }
+
+
+    /**
+     * Returns the end of the range.
+     * @return the end of the range, or NaN if not yet computed
+     */
+    public double getEnd() {
+        return end;
+    }
+
+
+    /**
+     * Sets the range.
+     * @param start new start
+     * @param end new end
+     * @return true if the range changed
+     */
+    private boolean set(double start, double end) {
+        if(start == this.start && end == this.end) {
+            return false;
+        }
+        this.start = start;
+        this.end = end;
+        return true;
+    }
+
+
+    /**
+     * Returns the largest value of the form 1, 2 or 5 times a power of ten which is no greater than the given value.
+     * @param x a positive value
+     * @return the round step
+     */
+    static double roundStep(double x) {
+        double power = Math.pow(10, Math.floor(Math.log10(x)));
+        double r = x / power;
+        if(r >= 5) {
+            return 5 * power;
+        } else if(r >= 2) {
+            return 2 * power;
+        } else {
+            return power;
+        }
+    }
+}
@@ -0,0 +1,976 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import plotter.DoubleData;
+import plotter.xy.XYAxis;
+import plotter.xy.XYDimension;
+import plotter.xy.XYPlotLine;
+
+/**
+ * Rasterizes plot lines on a fork-join pool instead of the Swing thread.
+ * The plot is divided into vertical tiles, which are kept in a {@link TileCache}.
+ * Tiles belong to a layer, which is determined by the zoom level of the X axis, the Y axes, the data transform and the lines displayed,
+ * so panning back to a range that was already rendered only requires drawing the cached tiles.
+ * When data is added, only the tiles covering its X range are rendered again.
+ * Missing tiles are rendered in parallel across groups of lines from a copy of the data in the tile's range,
+ * and until they are finished, tiles from the previously displayed layer are stretched to fill in.
+ * Lines whose X values aren't sorted are copied incrementally as points are appended,
+ * and each tile's points are picked out of the copy on the pool,
+ * so the Swing thread doesn't look at every point for every tile.
+ * Tiles which are scrolled out of view or belong to a layer that is no longer displayed are abandoned.
+ * Point icons are not supported; point shapes and strokes are.
+ * @author Adam Crume
+ */
+class BackgroundRenderer {
+    /** Width of a tile in pixels. */
+    private static final int TILE_WIDTH = 256;
+
+    /** Maximum number of bytes of tiles to cache. */
+    private static final long CACHE_BYTES = 64L << 20;
+
+    /** Extra pixels of data rendered on each side of a tile, to cover line widths and point shapes. */
+    private static final int MARGIN = 8;
+
+    /** Number of points rendered between checks for cancellation. */
+    private static final int CHECK_INTERVAL = 1 << 16;
+
+    /** Number of points passed to each call to {@link Graphics#drawPolyline(int[], int[], int)}. */
+    private static final int CHUNK = 4096;
+
+    /** Pixel coordinates are clamped to this magnitude to avoid overflow. */
+    private static final double MAX_COORDINATE = 1e6;
+
+    /** Component the lines are displayed in. */
+    private final JComponent contents;
+
+    /** X axis. */
+    private final XYAxis xAxis;
+
+    /** Y axis. */
+    private final XYAxis yAxis;
+
+    /** Second Y axis, or null. */
+    private final XYAxis y2Axis;
+
+    /** Pool the lines are rendered on. */
+    private final ForkJoinPool pool;
+
+    /** Rendered tiles.  Only accessed on the Swing thread. */
+    private final TileCache cache = new TileCache(CACHE_BYTES);
+
+    /** Layers which may have tiles in the cache.  Only accessed on the Swing thread. */
+    private final Map<LayerKey, Layer> layers = new HashMap<LayerKey, Layer>();
+
+    /** Layer being displayed, or null.  Only accessed on the Swing thread. */
+    private Layer current;
+
+    /** Layer displayed before {@link #current}, or null.  Only accessed on the Swing thread. */
+    private Layer previous;
+
+    /** Identifies how the data has been transformed, such as which axes are log-scaled. */
+    private int transform;
+
+    /** Copies of the data of lines whose X values aren't sorted.  Only accessed on the Swing thread. */
+    private final Map<XYPlotLine, Snapshot> snapshots = new HashMap<XYPlotLine, Snapshot>();
+
+
+    /**
+     * Creates a background renderer.
+     * @param contents component the lines are displayed in
+     * @param xAxis X axis
+     * @param yAxis Y axis
+     * @param y2Axis second Y axis, or null
+     * @param pool pool to render lines on
+     */
+    public BackgroundRenderer(JComponent contents, XYAxis xAxis, XYAxis yAxis, XYAxis y2Axis, ForkJoinPool pool) {
+        this.contents = contents;
+        this.xAxis = xAxis;
+        this.yAxis = yAxis;
+        this.y2Axis = y2Axis;
+        this.pool = pool;
+    }
+
+
+    /**
+     * Sets how the data has been transformed.
+     * Tiles are only displayed with the transform they were rendered with.
+     * Must be called on the Swing thread.
+     * @param transform identifies the transform, such as a bit set of which axes are log-scaled
+     */
+    public void setTransform(int transform) {
+        if(transform != this.transform) {
+            // The data was converted in place.
+            snapshots.clear();
+        }
+        this.transform = transform;
+    }
+
+
+    /**
+     * Marks the tiles covering a range of X values as dirty, because data was added there.
+     * Tiles rendered with a different transform can't be checked, so they are discarded.
+     * Must be called on the Swing thread.
+     * @param minX minimum X value of the data, including the point it connects to
+     * @param maxX maximum X value of the data
+     */
+    public void dataAdded(double minX, double maxX) {
+        Iterator<Layer> itr = layers.values().iterator();
+        while(itr.hasNext()) {
+            Layer layer = itr.next();
+            if(layer.key.transform != transform) {
+                discard(layer);
+                itr.remove();
+                continue;
+            }
+            long from = layer.tileIndex(minX, maxX, -MARGIN);
+            long to = layer.tileIndex(minX, maxX, MARGIN);
+            cache.invalidate(layer, from, to);
+            for(Map.Entry<Long, Job> e : layer.pending.entrySet()) {
+                long index = e.getKey();
+                if(index >= from && index <= to) {
+                    e.getValue().dirtied = true;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Discards all tiles, because data was removed or changed in place.
+     * Must be called on the Swing thread.
+     */
+    public void clear() {
+        for(Layer layer : layers.values()) {
+            discard(layer);
+        }
+        layers.clear();
+        cache.clear();
+        snapshots.clear();
+        current = null;
+        previous = null;
+    }
+
+
+    /**
+     * Draws the cached tiles, and starts rendering tiles which are missing or dirty.
+     * Must be called on the Swing thread.
+     * @param g graphics in the contents' coordinates
+     * @param lines lines to display, in painting order
+     */
+    public void paint(Graphics g, List<XYPlotLine> lines) {
+        View view = new View();
+        if(view.width <= 0 || view.height <= 0 || Double.isNaN(view.xScale) || Double.isInfinite(view.xScale)
+                || view.xScale == 0) {
+            return;
+        }
+        LineState[] states = new LineState[lines.size()];
+        for(int i = 0; i < states.length; i++) {
+            states[i] = new LineState(lines.get(i));
+        }
+        snapshots.keySet().retainAll(lines);
+        LayerKey key = new LayerKey(view, states, transform);
+        Layer layer = layers.get(key);
+        if(layer == null) {
+            layer = new Layer(key, view);
+            layers.put(key, layer);
+        }
+        if(layer != current) {
+            if(current != null) {
+                cancelAll(current);
+                previous = current;
+            }
+            current = layer;
+        }
+
+        long first = layer.firstVisible(view);
+        long last = layer.lastVisible(view);
+        // Abandon tiles which have been scrolled out of view.
+        Iterator<Map.Entry<Long, Job>> itr = layer.pending.entrySet().iterator();
+        while(itr.hasNext()) {
+            Map.Entry<Long, Job> e = itr.next();
+            long index = e.getKey();
+            if(index < first || index > last) {
+                e.getValue().cancelled = true;
+                itr.remove();
+            }
+        }
+        boolean complete = true;
+        for(long index = first; index <= last; index++) {
+            if(cache.get(layer, index) == null) {
+                complete = false;
+            }
+        }
+        if(!complete && previous != null && previous.key.transform == transform) {
+            for(long index = previous.firstVisible(view); index <= previous.lastVisible(view); index++) {
+                drawTile(g, view, previous, index);
+            }
+        }
+        for(long index = first; index <= last; index++) {
+            boolean cached = drawTile(g, view, layer, index);
+            if((!cached || cache.isDirty(layer, index)) && !layer.pending.containsKey(index)) {
+                start(layer, index, states);
+            }
+        }
+        // Layers whose tiles have all been evicted can be forgotten.
+        Iterator<Layer> layerItr = layers.values().iterator();
+        while(layerItr.hasNext()) {
+            Layer l = layerItr.next();
+            if(l != current && l != previous && l.pending.isEmpty() && !cache.containsLayer(l)) {
+                layerItr.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Draws a cached tile, if present.
+     * @param g graphics in the contents' coordinates
+     * @param view current location of the axes
+     * @param layer layer of the tile
+     * @param index index of the tile
+     * @return true if the tile was cached
+     */
+    private boolean drawTile(Graphics g, View view, Layer layer, long index) {
+        BufferedImage image = cache.get(layer, index);
+        if(image == null) {
+            return false;
+        }
+        int x1 = (int) Math.round(layer.screenX(view, index));
+        int x2 = (int) Math.round(layer.screenX(view, index + 1));
+        g.drawImage(image, x1, 0, x2 - x1, view.height, null);
+        return true;
+    }
+
+
+    /**
+     * Starts rendering a tile.
+     * @param layer layer of the tile
+     * @param index index of the tile
+     * @param states lines to render
+     */
+    private void start(final Layer layer, final long index, LineState[] states) {
+        final Job job = new Job();
+        int n = states.length;
+        // Contiguous groups of lines are rendered in parallel, and the results are merged into one image.
+        final int groups = Math.max(1, Math.min(n, pool.getParallelism()));
+        final BufferedImage[] images = new BufferedImage[groups];
+        final AtomicInteger remaining = new AtomicInteger(groups);
+        double x1 = layer.logicalX(index * (double) TILE_WIDTH - MARGIN);
+        double x2 = layer.logicalX((index + 1) * (double) TILE_WIDTH + MARGIN);
+        for(int i = 0; i < groups; i++) {
+            final int group = i;
+            final int from = i * n / groups;
+            final int to = (i + 1) * n / groups;
+            final LineState[] groupStates = Arrays.copyOfRange(states, from, to);
+            final double[][] xs = new double[to - from][];
+            final double[][] ys = new double[to - from][];
+            final Points[] points = new Points[to - from];
+            final double minX = Math.min(x1, x2);
+            final double maxX = Math.max(x1, x2);
+            for(int j = 0; j < groupStates.length; j++) {
+                snapshot(groupStates[j], minX, maxX, xs, ys, points, j);
+            }
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    BufferedImage image = new BufferedImage(TILE_WIDTH, layer.key.height, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = image.createGraphics();
+                    try {
+                        for(int j = 0; j < groupStates.length && !job.cancelled; j++) {
+                            if(points[j] != null) {
+                                double[][] filtered = filter(points[j], minX, maxX, job);
+                                xs[j] = filtered[0];
+                                ys[j] = filtered[1];
+                            }
+                            render(g, job, layer, index, groupStates[j], xs[j], ys[j]);
+                        }
+                    } finally {
+                        g.dispose();
+                    }
+                    images[group] = image;
+                    if(remaining.decrementAndGet() == 0 && !job.cancelled) {
+                        Graphics merged = images[0].getGraphics();
+                        try {
+                            for(int j = 1; j < groups; j++) {
+                                merged.drawImage(images[j], 0, 0, null);
+                            }
+                        } finally {
+                            merged.dispose();
+                        }
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                finished(layer, index, job, images[0]);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+        layer.pending.put(index, job);
+    }
+
+
+    /**
+     * Called on the Swing thread when a tile has been rendered.
+     * @param layer layer of the tile
+     * @param index index of the tile
+     * @param job job which rendered the tile
+     * @param image image of the tile
+     */
+    private void finished(Layer layer, long index, Job job, BufferedImage image) {
+        if(job.cancelled || layer.pending.get(index) != job) {
+            return;
+        }
+        layer.pending.remove(index);
+        cache.put(layer, index, image);
+        if(job.dirtied) {
+            cache.invalidate(layer, index, index);
+        }
+        contents.repaint();
+    }
+
+
+    /**
+     * Abandons all tiles being rendered for a layer.
+     * @param layer the layer
+     */
+    private static void cancelAll(Layer layer) {
+        for(Job job : layer.pending.values()) {
+            job.cancelled = true;
+        }
+        layer.pending.clear();
+    }
+
+
+    /**
+     * Abandons a layer's tiles being rendered and removes its cached tiles.
+     * @param layer the layer
+     */
+    private void discard(Layer layer) {
+        cancelAll(layer);
+        cache.removeLayer(layer);
+        if(layer == current) {
+            current = null;
+        }
+        if(layer == previous) {
+            previous = null;
+        }
+    }
+
+
+    /**
+     * Copies a line's data in a range of X values.
+     * Lines whose X values aren't sorted can't be searched by X, so their points are captured instead,
+     * to be filtered by {@link #filter(Points, double, double, Job)} off the Swing thread.
+     * @param state line to copy
+     * @param minX minimum X value
+     * @param maxX maximum X value
+     * @param xs receives the X values
+     * @param ys receives the Y values
+     * @param points receives the points of lines whose X values aren't sorted
+     * @param index index into xs, ys, and points
+     */
+    private void snapshot(LineState state, double minX, double maxX, double[][] xs, double[][] ys, Points[] points,
+            int index) {
+        if(!state.visible) {
+            return;
+        }
+        DoubleData xData = state.line.getXData();
+        DoubleData yData = state.line.getYData();
+        int length = xData.getLength();
+        if(state.line.getIndependentDimension() == XYDimension.X) {
+            // X values are sorted, so only copy the range plus the points just outside it.
+            int from = Math.max(0, insertionPoint(xData, minX) - 1);
+            int to = Math.min(length, insertionPoint(xData, maxX) + 1);
+            int count = Math.max(0, to - from);
+            double[] x = new double[count];
+            double[] y = new double[count];
+            for(int i = 0; i < count; i++) {
+                x[i] = xData.get(from + i);
+                y[i] = yData.get(from + i);
+            }
+            xs[index] = x;
+            ys[index] = y;
+        } else {
+            points[index] = capture(state.line);
+        }
+    }
+
+
+    /**
+     * Captures the points of a line whose X values aren't sorted, bringing its {@link Snapshot} up to date.
+     * @param line the line
+     * @return the points
+     */
+    private Points capture(XYPlotLine line) {
+        DoubleData xData = line.getXData();
+        DoubleData yData = line.getYData();
+        int n = Math.min(xData.getLength(), yData.getLength());
+        // The last point is passed separately, since its Y value may be replaced in place.
+        int copied = Math.max(0, n - 1);
+        int modCount = line instanceof MultiplexingXYPlotLine ? ((MultiplexingXYPlotLine) line).getModCount() : 0;
+        Snapshot snapshot = snapshots.get(line);
+        if(snapshot == null || snapshot.modCount != modCount || copied < snapshot.length) {
+            snapshot = new Snapshot();
+            snapshot.modCount = modCount;
+            snapshots.put(line, snapshot);
+        }
+        if(copied > snapshot.x.length) {
+            // Jobs keep the old arrays, which are no longer written.
+            int capacity = Math.max(copied, snapshot.x.length * 2);
+            snapshot.x = Arrays.copyOf(snapshot.x, capacity);
+            snapshot.y = Arrays.copyOf(snapshot.y, capacity);
+        }
+        for(int i = snapshot.length; i < copied; i++) {
+            snapshot.x[i] = xData.get(i);
+            snapshot.y[i] = yData.get(i);
+        }
+        snapshot.length = copied;
+        if(n == 0) {
+            return new Points(snapshot.x, snapshot.y, 0, Double.NaN, Double.NaN, 0);
+        }
+        return new Points(snapshot.x, snapshot.y, copied, xData.get(n - 1), yData.get(n - 1), n);
+    }
+
+
+    /**
+     * Picks out the points needed to render a range of X values.
+     * Every point in the range is kept, along with both ends of every line segment which overlaps the range,
+     * even if both ends are outside it.  The line is broken where points are skipped.
+     * @param points points of the line
+     * @param minX minimum X value
+     * @param maxX maximum X value
+     * @param job job to check for cancellation, or null
+     * @return the X values and the Y values, or arrays of nulls if the job was cancelled
+     */
+    static double[][] filter(Points points, double minX, double maxX, Job job) {
+        DoubleData x = new DoubleData();
+        DoubleData y = new DoubleData();
+        int count = points.count;
+        int lastKept = -1;
+        for(int i = 0; i < count; i++) {
+            if(i % CHECK_INTERVAL == 0 && job != null && job.cancelled) {
+                return new double[2][];
+            }
+            double xi = points.getX(i);
+            boolean keep = (xi >= minX && xi <= maxX) || (i > 0 && overlaps(points.getX(i - 1), xi, minX, maxX))
+                    || (i + 1 < count && overlaps(xi, points.getX(i + 1), minX, maxX));
+            if(keep) {
+                if(lastKept != i - 1 && x.getLength() > 0) {
+                    x.add(Double.NaN);
+                    y.add(Double.NaN);
+                }
+                x.add(xi);
+                y.add(points.getY(i));
+                lastKept = i;
+            }
+        }
+        return new double[][] { toArray(x), toArray(y) };
+    }
+
+
+    /**
+     * Returns true if the line segment between two X values overlaps a range.
+     * @param a X value of one end
+     * @param b X value of the other end
+     * @param minX minimum X value of the range
+     * @param maxX maximum X value of the range
+     * @return true if the segment overlaps the range, or false if either end is NaN
+     */
+    private static boolean overlaps(double a, double b, double minX, double maxX) {
+        return Math.min(a, b) <= maxX && Math.max(a, b) >= minX;
+    }
+
+
+    /**
+     * Copies data into an array.
+     * @param data data to copy
+     * @return the values
+     */
+    private static double[] toArray(DoubleData data) {
+        double[] a = new double[data.getLength()];
+        for(int i = 0; i < a.length; i++) {
+            a[i] = data.get(i);
+        }
+        return a;
+    }
+
+
+    /**
+     * Finds where a value would be inserted into sorted data.
+     * @param data sorted data
+     * @param value value to search for
+     * @return index of the value or where it would be inserted
+     */
+    private static int insertionPoint(DoubleData data, double value) {
+        int ix = data.binarySearch(value);
+        return ix < 0 ? -ix - 1 : ix;
+    }
+
+
+    /**
+     * Renders a line into a tile.
+     * @param g graphics to render into
+     * @param job job rendering the tile
+     * @param layer layer of the tile
+     * @param index index of the tile
+     * @param state line to render
+     * @param x X values of the points
+     * @param y Y values of the points
+     */
+    private static void render(Graphics2D g, Job job, Layer layer, long index, LineState state, double[] x, double[] y) {
+        if(x == null) {
+            return;
+        }
+        View view = layer.view;
+        double yStart = state.onY2 ? view.y2Start : view.yStart;
+        double y0 = state.onY2 ? view.y2Pixel0 : view.yPixel0;
+        double yScale = state.onY2 ? view.y2Scale : view.yScale;
+        double x0 = -index * (double) TILE_WIDTH;
+        g.setColor(state.color);
+        if(state.stroke != null) {
+            g.setStroke(state.stroke);
+        }
+        int[] px = new int[CHUNK];
+        int[] py = new int[CHUNK];
+        int n = 0;
+        for(int i = 0; i < x.length; i++) {
+            if(i % CHECK_INTERVAL == 0 && job.cancelled) {
+                return;
+            }
+            if(Double.isNaN(x[i]) || Double.isNaN(y[i])) {
+                // Gaps in the data break the line.
+                if(n > 1) {
+                    g.drawPolyline(px, py, n);
+                }
+                n = 0;
+                continue;
+            }
+            int ix = clamp(x0 + (x[i] - layer.origin) * layer.scale);
+            int iy = clamp(y0 + (y[i] - yStart) * yScale);
+            if(state.pointFill != null || state.pointOutline != null) {
+                g.translate(ix, iy);
+                if(state.pointFill != null) {
+                    g.fill(state.pointFill);
+                }
+                if(state.pointOutline != null) {
+                    g.draw(state.pointOutline);
+                }
+                g.translate(-ix, -iy);
+            }
+            if(n > 0 && px[n - 1] == ix && py[n - 1] == iy) {
+                continue;
+            }
+            if(n == CHUNK) {
+                g.drawPolyline(px, py, n);
+                // Start the next chunk with the last point so the line is continuous.
+                px[0] = px[n - 1];
+                py[0] = py[n - 1];
+                n = 1;
+            }
+            px[n] = ix;
+            py[n] = iy;
+            n++;
+        }
+        if(n > 1) {
+            g.drawPolyline(px, py, n);
+        }
+    }
+
+
+    /**
+     * Converts a pixel coordinate to an int, clamping it to avoid overflow.
+     * @param p pixel coordinate
+     * @return the clamped, rounded coordinate
+     */
+    private static int clamp(double p) {
+        return (int) Math.round(Math.max(-MAX_COORDINATE, Math.min(MAX_COORDINATE, p)));
+    }
+
+
+    /**
+     * Compares objects which may be null.
+     * @param a first object
+     * @param b second object
+     * @return true if both are null or they are equal
+     */
+    private static boolean eq(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+
+    /**
+     * Location of the axes and size of the contents.
+     * Also holds the linear mapping from logical to pixel coordinates, so it can be used off the Swing thread.
+     */
+    private final class View {
+        final int width;
+
+        final int height;
+
+        final double xStart;
+
+        final double yStart;
+
+        final double yEnd;
+
+        final double y2Start;
+
+        final double y2End;
+
+        final double xPixel0;
+
+        final double xScale;
+
+        final double yPixel0;
+
+        final double yScale;
+
+        final double y2Pixel0;
+
+        final double y2Scale;
+
+
+        /**
+         * Captures the current view.  Must be called on the Swing thread.
+         */
+        View() {
+            width = contents.getWidth();
+            height = contents.getHeight();
+            xStart = xAxis.getStart();
+            double xEnd = xAxis.getEnd();
+            yStart = yAxis.getStart();
+            yEnd = yAxis.getEnd();
+            xPixel0 = SwingUtilities.convertPoint(xAxis, xAxis.toPhysical(xStart), 0, contents).x;
+            xScale = (SwingUtilities.convertPoint(xAxis, xAxis.toPhysical(xEnd), 0, contents).x - xPixel0) / (xEnd - xStart);
+            yPixel0 = SwingUtilities.convertPoint(yAxis, 0, yAxis.toPhysical(yStart), contents).y;
+            yScale = (SwingUtilities.convertPoint(yAxis, 0, yAxis.toPhysical(yEnd), contents).y - yPixel0) / (yEnd - yStart);
+            if(y2Axis != null) {
+                y2Start = y2Axis.getStart();
+                y2End = y2Axis.getEnd();
+                y2Pixel0 = SwingUtilities.convertPoint(y2Axis, 0, y2Axis.toPhysical(y2Start), contents).y;
+                y2Scale = (SwingUtilities.convertPoint(y2Axis, 0, y2Axis.toPhysical(y2End), contents).y - y2Pixel0)
+                        / (y2End - y2Start);
+            } else {
+                y2Start = y2End = y2Pixel0 = y2Scale = 0;
+            }
+        }
+    }
+
+
+    /**
+     * Everything that determines whether tiles can be reused.
+     */
+    private static final class LayerKey {
+        final int height;
+
+        final double yStart;
+
+        final double yEnd;
+
+        final double y2Start;
+
+        final double y2End;
+
+        /** Pixels per X unit, rounded so that tiny changes in the width of a scrolling axis don't create new layers. */
+        final float xScale;
+
+        final int transform;
+
+        final LineState[] states;
+
+
+        LayerKey(View view, LineState[] states, int transform) {
+            height = view.height;
+            yStart = view.yStart;
+            yEnd = view.yEnd;
+            y2Start = view.y2Start;
+            y2End = view.y2End;
+            xScale = (float) view.xScale;
+            this.transform = transform;
+            this.states = states;
+        }
+
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof LayerKey)) {
+                return false;
+            }
+            LayerKey k = (LayerKey) obj;
+            return height == k.height && yStart == k.yStart && yEnd == k.yEnd && y2Start == k.y2Start
+                    && y2End == k.y2End && xScale == k.xScale && transform == k.transform
+                    && Arrays.equals(states, k.states);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new double[] { height, yStart, yEnd, y2Start, y2End, xScale, transform })
+                    * 31 + Arrays.hashCode(states);
+        }
+    }
+
+
+    /**
+     * A set of tiles rendered the same way.
+     * Tile <i>n</i> covers X values which map to pixels <i>n</i>*{@link #TILE_WIDTH} through
+     * (<i>n</i>+1)*{@link #TILE_WIDTH}, measured from {@link #origin}.
+     */
+    private static final class Layer {
+        final LayerKey key;
+
+        /** View when the layer was created, which gives the Y mapping. */
+        final View view;
+
+        /** X value at pixel 0 of tile 0.  Tiles are measured from a nearby origin to keep the pixel values small. */
+        final double origin;
+
+        /** Pixels per X unit. */
+        final double scale;
+
+        /** Tiles being rendered, by index.  Only accessed on the Swing thread. */
+        final Map<Long, Job> pending = new HashMap<Long, Job>();
+
+
+        Layer(LayerKey key, View view) {
+            this.key = key;
+            this.view = view;
+            this.origin = view.xStart;
+            this.scale = view.xScale;
+        }
+
+
+        /**
+         * Converts a pixel offset within the layer to an X value.
+         * @param p pixels from the origin
+         * @return the X value
+         */
+        double logicalX(double p) {
+            return origin + p / scale;
+        }
+
+
+        /**
+         * Returns the index of the tile containing the edge of a range of X values, adjusted by a number of pixels.
+         * @param minX minimum X value
+         * @param maxX maximum X value
+         * @param margin pixels to add; negative for the leftmost tile, positive for the rightmost
+         * @return the index of the tile
+         */
+        long tileIndex(double minX, double maxX, int margin) {
+            double p1 = (minX - origin) * scale;
+            double p2 = (maxX - origin) * scale;
+            double p = margin < 0 ? Math.min(p1, p2) + margin : Math.max(p1, p2) + margin;
+            return (long) Math.floor(p / TILE_WIDTH);
+        }
+
+
+        /**
+         * Returns the screen location of the left edge of a tile.
+         * @param view current location of the axes
+         * @param index index of the tile
+         * @return the X coordinate in the contents
+         */
+        double screenX(View view, long index) {
+            return view.xPixel0 + (logicalX(index * (double) TILE_WIDTH) - view.xStart) * view.xScale;
+        }
+
+
+        /**
+         * Returns the index of the leftmost visible tile.
+         * @param view current location of the axes
+         * @return the index of the leftmost visible tile
+         */
+        long firstVisible(View view) {
+            return tileAtScreenX(view, 0);
+        }
+
+
+        /**
+         * Returns the index of the rightmost visible tile.
+         * @param view current location of the axes
+         * @return the index of the rightmost visible tile
+         */
+        long lastVisible(View view) {
+            return tileAtScreenX(view, view.width - 1);
+        }
+
+
+        /**
+         * Returns the index of the tile displayed at a screen location.
+         * @param view current location of the axes
+         * @param x X coordinate in the contents
+         * @return the index of the tile
+         */
+        private long tileAtScreenX(View view, int x) {
+            double logical = view.xStart + (x - view.xPixel0) / view.xScale;
+            return (long) Math.floor((logical - origin) * scale / TILE_WIDTH);
+        }
+    }
+
+
+    /**
+     * Everything about a line that affects how it is rendered, except its data.
+     */
+    private final class LineState {
+        final XYPlotLine line;
+
+        final boolean visible;
+
+        final boolean onY2;
+
+        final Color color;
+
+        final Stroke stroke;
+
+        final Shape pointFill;
+
+        final Shape pointOutline;
+
+
+        /**
+         * Captures the current state of a line.  Must be called on the Swing thread.
+         * @param line the line
+         */
+        LineState(XYPlotLine line) {
+            this.line = line;
+            visible = line.isVisible();
+            onY2 = y2Axis != null && line.getYAxis() == y2Axis;
+            color = line.getForeground();
+            stroke = line.getStroke();
+            pointFill = line.getPointFill();
+            pointOutline = line.getPointOutline();
+        }
+
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof LineState)) {
+                return false;
+            }
+            LineState s = (LineState) obj;
+            return line == s.line && visible == s.visible && onY2 == s.onY2 && eq(color, s.color) && stroke == s.stroke
+                    && pointFill == s.pointFill && pointOutline == s.pointOutline;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(line);
+        }
+    }
+
+
+    /**
+     * Copy of the points of a line whose X values aren't sorted, except the last,
+     * which is extended as points are appended.
+     * Jobs only read points below the length they were given, and only points beyond that are written,
+     * so the arrays can be shared with jobs without locking.
+     */
+    private static final class Snapshot {
+        double[] x = new double[16];
+
+        double[] y = new double[16];
+
+        /** Number of points copied. */
+        int length;
+
+        /** Modification count of the line when the copy was started. */
+        int modCount;
+    }
+
+
+    /**
+     * Points of a line captured for a job, which share arrays with a {@link Snapshot}.
+     */
+    static final class Points {
+        private final double[] x;
+
+        private final double[] y;
+
+        /** Number of points in the arrays. */
+        private final int length;
+
+        private final double lastX;
+
+        private final double lastY;
+
+        /** Number of points, including the last point, which is held separately. */
+        final int count;
+
+
+        /**
+         * Creates a set of points.
+         * @param x X values of all points but the last
+         * @param y Y values of all points but the last
+         * @param length number of points in the arrays
+         * @param lastX X value of the last point
+         * @param lastY Y value of the last point
+         * @param count total number of points, which is length or length + 1
+         */
+        Points(double[] x, double[] y, int length, double lastX, double lastY, int count) {
+            this.x = x;
+            this.y = y;
+            this.length = length;
+            this.lastX = lastX;
+            this.lastY = lastY;
+            this.count = count;
+        }
+
+
+        double getX(int i) {
+            return i < length ? x[i] : lastX;
+        }
+
+
+        double getY(int i) {
+            return i < length ? y[i] : lastY;
+        }
+    }
+
+
+    /**
+     * Rendering of a tile in progress.
+     */
+    static final class Job {
+        /** Set when the tile is abandoned. */
+        volatile boolean cancelled;
+
+        /** Set on the Swing thread when data is added to the tile's range while it is being rendered. */
+        boolean dirtied;
+    }
+}
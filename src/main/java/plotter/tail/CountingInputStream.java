@@ -0,0 +1,68 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream.
+ * @author Adam Crume
+ */
+class CountingInputStream extends FilterInputStream {
+    /** Receives the number of bytes read. */
+    private final StripedCounter counter;
+
+
+    /**
+     * Creates a counting stream.
+     * @param in stream to read from
+     * @param counter receives the number of bytes read
+     */
+    public CountingInputStream(InputStream in, StripedCounter counter) {
+        super(in);
+        this.counter = counter;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if(b != -1) {
+            counter.increment();
+        }
+        return b;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if(n > 0) {
+            counter.add(n);
+        }
+        return n;
+    }
+
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        counter.add(skipped);
+        return skipped;
+    }
+}
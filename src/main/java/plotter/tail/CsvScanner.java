@@ -0,0 +1,179 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.Arrays;
+
+/**
+ * Splits lines of comma-separated values as described in RFC 4180.
+ * Fields may be quoted, in which case they may contain separators, and quotes are escaped by doubling them.
+ * A line is scanned once, recording where each field starts and ends.
+ * Nothing is copied until the text of a field is requested, so numeric fields can be parsed in place.
+ * Quoted fields spanning multiple lines are not supported.
+ * <p>
+ * Instances are not thread-safe.
+ * @author Adam Crume
+ */
+class CsvScanner {
+    /** Field separator. */
+    private final char separator;
+
+    /** Line being scanned. */
+    private String line;
+
+    /** Number of fields in the line. */
+    private int count;
+
+    /** Index of the first character of each field's value, excluding quotes and surrounding spaces. */
+    private int[] starts = new int[16];
+
+    /** Index after the last character of each field's value, excluding quotes and surrounding spaces. */
+    private int[] ends = new int[16];
+
+    /** Whether each field contains escaped quotes. */
+    private boolean[] escaped = new boolean[16];
+
+
+    /**
+     * Creates a scanner.
+     * @param separator field separator
+     */
+    public CsvScanner(char separator) {
+        this.separator = separator;
+    }
+
+
+    /**
+     * Scans a line.
+     * @param line the line
+     * @return false if the line contains a quoted field without a closing quote
+     */
+    public boolean scan(String line) {
+        this.line = line;
+        count = 0;
+        int n = line.length();
+        int i = 0;
+        while(true) {
+            while(i < n && line.charAt(i) == ' ') {
+                i++;
+            }
+            int start;
+            int end;
+            boolean hasEscapes = false;
+            if(i < n && line.charAt(i) == '"') {
+                start = ++i;
+                while(true) {
+                    if(i == n) {
+                        return false;
+                    }
+                    if(line.charAt(i) == '"') {
+                        if(i + 1 < n && line.charAt(i + 1) == '"') {
+                            hasEscapes = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                end = i++;
+                // Anything between the closing quote and the separator is ignored.
+                while(i < n && line.charAt(i) != separator) {
+                    i++;
+                }
+            } else {
+                start = i;
+                while(i < n && line.charAt(i) != separator) {
+                    i++;
+                }
+                end = i;
+                while(end > start && line.charAt(end - 1) == ' ') {
+                    end--;
+                }
+            }
+            add(start, end, hasEscapes);
+            if(i >= n) {
+                return true;
+            }
+            // Skip the separator
+            i++;
+        }
+    }
+
+
+    private void add(int start, int end, boolean hasEscapes) {
+        if(count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            escaped = Arrays.copyOf(escaped, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        escaped[count] = hasEscapes;
+        count++;
+    }
+
+
+    /**
+     * Returns the number of fields in the line.
+     * @return the number of fields in the line
+     */
+    public int getFieldCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the index in the line of the first character of a field's value.
+     * @param column index of the field (1-based)
+     * @return index of the first character
+     */
+    public int getStart(int column) {
+        return starts[column - 1];
+    }
+
+
+    /**
+     * Returns the index in the line after the last character of a field's value.
+     * @param column index of the field (1-based)
+     * @return index after the last character
+     */
+    public int getEnd(int column) {
+        return ends[column - 1];
+    }
+
+
+    /**
+     * Returns true if a field's value contains escaped quotes, so it cannot be used in place.
+     * @param column index of the field (1-based)
+     * @return true if the field's value contains escaped quotes
+     */
+    public boolean isEscaped(int column) {
+        return escaped[column - 1];
+    }
+
+
+    /**
+     * Returns the text of a field, with escapes removed.
+     * @param column index of the field (1-based)
+     * @return text of the field
+     */
+    public String getField(int column) {
+        String s = line.substring(starts[column - 1], ends[column - 1]);
+        return escaped[column - 1] ? s.replace("\"\"", "\"") : s;
+    }
+}
@@ -20,18 +20,22 @@ import java.awt.BasicStroke;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.io.File;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.swing.SwingUtilities;
 
-import plotter.xy.SimpleXYDataset;
 import plotter.xy.XYDimension;
 
 /**
@@ -60,7 +64,7 @@ class DataFile {
     /** Indices of fields on the Y2 axis. */
     private int[] y2;
 
-    /** Whether or not fields are on the Y2 axis, indexed the same as the return value of {@link #select(String[], int)}. */
+    /** Whether or not fields are on the Y2 axis, indexed the same as {@link #selection}. */
     private BitSet y2PostSelection = new BitSet();
 
     /** Index of the field to use as the X value. */
@@ -90,6 +94,75 @@ class DataFile {
     /** Index within the files being plotted. */
     private int index;
 
+    /** Rolling quantiles to plot as additional fields. */
+    private List<RollingQuantiles> rollingQuantiles = new ArrayList<RollingQuantiles>();
+
+    /** Number of additional fields for {@link #rollingQuantiles}. */
+    private int rollingQuantileCount;
+
+    /** Expressions to plot as additional fields, keyed by field name. */
+    private Map<String, Expression> derived = new LinkedHashMap<String, Expression>();
+
+    /** Conditions a line must meet to be plotted. */
+    private List<Expression> predicates = new ArrayList<Expression>();
+
+    /** Filters applied to raw lines before they are split into fields. */
+    private List<LineFilter> lineFilters = new ArrayList<LineFilter>();
+
+    /** Indices of input fields used by {@link #derived} and {@link #predicates} (1-based). */
+    private int[] expressionColumns = new int[0];
+
+    /** Input formats for {@link #expressionColumns}. */
+    private NumberFormat[] expressionColumnFormats = new NumberFormat[0];
+
+    /** Values of input fields passed to expressions, indexed by field index.  Reused for every line. */
+    private double[] columns;
+
+    /** Extracts fields from lines, or null to split lines with {@link #fieldSeparator}. */
+    private LinePattern linePattern;
+
+    /** True if lines contain JSON objects. */
+    private boolean json;
+
+    /** Key paths read from JSON objects, indexed by field index (starting at 0), or null if not given. */
+    private String[] keyPaths;
+
+    /** Key path of the X value in JSON objects, or null if not given. */
+    private String xKeyPath;
+
+    /** Reads values from JSON objects, or null if lines are not JSON. */
+    private JsonScanner jsonScanner;
+
+    /** Splits lines as comma-separated values, or null if another method is used. */
+    private CsvScanner csvScanner;
+
+    /** Line being processed. */
+    private String currentLine;
+
+    /** Fields of {@link #currentLine} split by {@link #fieldSeparator}, or null if another method is used. */
+    private String[] splitFields;
+
+    /** Match of {@link #linePattern} in {@link #currentLine}, or null if it is not used. */
+    private Matcher matcher;
+
+    /** Values read from {@link #currentLine} by {@link #jsonScanner}, or null if it is not used. */
+    private double[] jsonValues;
+
+    /** Whether {@link DecimalParser} can be used for the selected fields, indexed the same as {@link #selection}. */
+    private boolean[] fastFields;
+
+    /** Whether {@link DecimalParser} can be used for the X field. */
+    private boolean fastX;
+
+    /** Whether {@link DecimalParser} can be used for {@link #expressionColumns}. */
+    private boolean[] fastExpressionColumns = new boolean[0];
+
+    /** Aggregates rows before they are plotted, or null to plot every row. */
+    private Resampler resampler;
+
+    /** Runtime metrics. */
+    private final FileMetrics metrics = new FileMetrics();
+
 
     /**
      * Creates an unconfigured DataFile.
@@ -111,15 +184,59 @@ class DataFile {
         if(trimmed.isEmpty() || trimmed.startsWith("#")) {
             return null;
         }
-        String[] data = fieldSeparator.split(line);
+        if(firstLineRead || !headerLine) {
+            for(LineFilter filter : lineFilters) {
+                if(!filter.accept(line)) {
+                    return null;
+                }
+            }
+        }
+        currentLine = line;
+        splitFields = null;
+        matcher = null;
+        jsonValues = null;
+        if(jsonScanner != null) {
+            jsonValues = jsonScanner.scan(line);
+            if(jsonValues == null) {
+                metrics.parseError();
+                System.err.println("Invalid JSON object on line " + lineNumber);
+                return null;
+            }
+        } else if(linePattern != null) {
+            matcher = linePattern.match(line);
+            if(matcher == null) {
+                return null;
+            }
+        } else if(csvScanner != null) {
+            if(!csvScanner.scan(line)) {
+                metrics.parseError();
+                System.err.println("Unterminated quoted field on line " + lineNumber);
+                return null;
+            }
+        } else {
+            splitFields = fieldSeparator.split(line);
+        }
+        if(selection == null) {
+            selectAll(getFieldCount());
+        }
+        int fieldCount = getFieldCount();
+        if(fieldCount < minFieldCount) {
+            metrics.parseError();
+            System.err.println("Expected at least " + minFieldCount + " fields, but saw " + fieldCount + " on line "
+                    + lineNumber);
+            return null;
+        }
         if(!firstLineRead) {
             firstLineRead = true;
             if(fields.isEmpty()) {
-                String[] data2 = select(data, lineNumber);
-                for(int i = 0; i < data2.length; i++) {
+                for(int i = 0; i < selection.length; i++) {
                     String name;
                     if(headerLine) {
-                        name = data2[i];
+                        name = getFieldText(selection[i]);
+                    } else if(keyPaths != null) {
+                        name = keyPaths[selection[i] - 1];
+                    } else if(linePattern != null && linePattern.getGroupName(selection[i]) != null) {
+                        name = linePattern.getGroupName(selection[i]);
                     } else if(index > 0) {
                         name = "Column " + (i + 1) + "(file " + (index + 1) + ")";
                     } else {
@@ -135,101 +252,336 @@ class DataFile {
 
             if(fields.get(0).getFormat() == null) {
                 assert fields.size() == selection.length;
+                fastFields = new boolean[selection.length];
                 for(int i = 0; i < selection.length; i++) {
                     NumberFormat format = fieldFormats.get(selection[i]);
                     fields.get(i).setFormat(format == null ? NumberFormat.getInstance() : format);
+                    fastFields[i] = DecimalParser.isCompatible(fields.get(i).getFormat());
                 }
+                addDerivedFields();
+                addRollingQuantileFields();
             }
 
-            for(final Field f : fields) {
-                final MultiplexingXYPlotLine pline = new MultiplexingXYPlotLine(tailPlot.getXAxis(),
-                        f.isOnY2() ? tailPlot.getY2Axis() : tailPlot.getYAxis(), XYDimension.X);
-                final Stroke highlightStroke = new BasicStroke(3);
-                final Shape highlightPointFill = null;
-                final Shape highlightPointOutline = null;
-                pline.setForeground(tailPlot.nextColor());
-                SimpleXYDataset dataset = new SimpleXYDataset(pline);
-                dataset.setXData(pline.getXData());
-                dataset.setYData(pline.getYData());
-                f.setDataset(dataset);
-                f.setPlotLine(pline);
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        tailPlot.addPlotLine(f, pline, highlightStroke, highlightPointFill, highlightPointOutline);
-                    }
-                });
+            if(tailPlot.isStatistics()) {
+                for(Field f : fields) {
+                    f.setStatistics(new FieldStatistics());
+                }
+            } else {
+                createPlotLines();
             }
             if(headerLine) {
                 return null;
             }
         }
 
-        String[] data2 = select(data, lineNumber);
-        if(data2 == null) {
-            return null;
-        }
-
-        final double[] ddata = new double[data2.length + 1];
+        double xValue;
         if(x == -1) {
-            ddata[0] = points;
+            xValue = points;
         } else {
-            String xString = data[x - 1];
             try {
-                ddata[0] = xInputFormat.parse(xString).doubleValue();
+                xValue = parseField(x, xInputFormat, fastX);
+            } catch(ParseException e) {
+                metrics.parseError();
+                System.err.println("Invalid X value on line " + lineNumber + ": " + getFieldText(x));
+                xValue = Double.NaN;
+            }
+        }
+        for(int i = 0; i < expressionColumns.length; i++) {
+            int column = expressionColumns[i];
+            try {
+                columns[column] = parseField(column, expressionColumnFormats[i],
+                        fastExpressionColumns[i]);
             } catch(ParseException e) {
-                System.err.println("Invalid X value on line " + lineNumber + ": " + xString);
-                ddata[0] = Double.NaN;
+                metrics.parseError();
+                System.err.println("Invalid value on line " + lineNumber + " for field " + column + ": "
+                        + getFieldText(column));
+                columns[column] = Double.NaN;
             }
         }
-        for(int i = 0; i < data2.length; i++) {
+        for(Expression p : predicates) {
+            // NaN counts as false
+            if(!(p.evaluate(xValue, columns) != 0)) {
+                return null;
+            }
+        }
+
+        final double[] ddata = new double[selection.length + 1 + derived.size() + rollingQuantileCount];
+        ddata[0] = xValue;
+        for(int i = 0; i < selection.length; i++) {
             try {
-                ddata[i + 1] = fields.get(i).getFormat().parse(data2[i]).doubleValue();
+                ddata[i + 1] = parseField(selection[i], fields.get(i).getFormat(), fastFields[i]);
             } catch(ParseException e) {
+                metrics.parseError();
                 System.err.println("Invalid value on line " + lineNumber + " for \"" + fields.get(i).getName() + "\": "
-                        + data2[i]);
+                        + getFieldText(selection[i]));
                 ddata[i + 1] = Double.NaN;
             }
         }
+        int ix = selection.length + 1;
+        for(Expression e : derived.values()) {
+            ddata[ix++] = e.evaluate(xValue, columns);
+        }
+        for(RollingQuantiles r : rollingQuantiles) {
+            boolean updated = r.add(ddata[0], ddata[r.getFieldIndex() + 1]);
+            for(int i = 0; i < r.getQuantiles().length; i++) {
+                ddata[ix++] = updated ? r.getValue(i) : Double.NaN;
+            }
+        }
         points++;
         return ddata;
     }
 
 
     /**
-     * Selects the relevant fields and discards the rest.
-     * @param data all fields from the raw input
-     * @param lineNumber current line number
-     * @return fields we want to plot
+     * Returns the number of input fields in the current line.
+     * @return the number of input fields
      */
-    private String[] select(String[] data, int lineNumber) {
-        if(data.length < minFieldCount) {
-            System.err.println("Expected at least " + minFieldCount + " fields, but saw " + data.length + " on line "
-                    + lineNumber);
-            return null;
+    private int getFieldCount() {
+        if(splitFields != null) {
+            return splitFields.length;
+        } else if(matcher != null) {
+            return matcher.groupCount();
+        } else if(jsonValues != null) {
+            return jsonValues.length - 1;
+        } else {
+            return csvScanner.getFieldCount();
         }
-        if(selection == null) {
-            if(x == -1) {
-                selection = new int[data.length];
-                for(int i = 0; i < selection.length; i++) {
-                    selection[i] = i + 1;
+    }
+
+
+    /**
+     * Parses an input field of the current line.
+     * Plain decimal numbers are parsed directly from the line, without creating a string.
+     * @param column index of the field (1-based)
+     * @param format input format of the field
+     * @param fast true if {@link DecimalParser} gives the same results as the format
+     * @return value of the field, or NaN if its group did not participate in the match or its key is missing
+     * @throws ParseException if the field is not a valid number
+     */
+    private double parseField(int column, NumberFormat format, boolean fast) throws ParseException {
+        CharSequence s;
+        int start;
+        int end;
+        if(splitFields != null) {
+            s = splitFields[column - 1];
+            start = 0;
+            end = s.length();
+        } else if(matcher != null) {
+            s = currentLine;
+            start = matcher.start(column);
+            if(start == -1) {
+                return Double.NaN;
+            }
+            end = matcher.end(column);
+        } else if(jsonValues != null) {
+            return jsonValues[column];
+        } else if(csvScanner.isEscaped(column)) {
+            s = csvScanner.getField(column);
+            start = 0;
+            end = s.length();
+        } else {
+            s = currentLine;
+            start = csvScanner.getStart(column);
+            end = csvScanner.getEnd(column);
+        }
+        if(fast) {
+            double value = DecimalParser.parse(s, start, end);
+            if(!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        return format.parse(s.subSequence(start, end).toString()).doubleValue();
+    }
+
+
+    /**
+     * Returns the text of an input field of the current line.
+     * @param column index of the field (1-based)
+     * @return text of the field
+     */
+    private String getFieldText(int column) {
+        if(splitFields != null) {
+            return splitFields[column - 1];
+        } else if(matcher != null) {
+            return matcher.group(column);
+        } else if(jsonValues != null) {
+            return String.valueOf(jsonValues[column]);
+        } else {
+            return csvScanner.getField(column);
+        }
+    }
+
+
+    /**
+     * Adds fields for the derived expressions after the selected fields.
+     */
+    private void addDerivedFields() {
+        for(String name : derived.keySet()) {
+            if(y2 != null) {
+                name += " (Y1)";
+            }
+            fields.add(new Field(name, false));
+        }
+    }
+
+
+    /**
+     * Adds fields for the rolling quantiles after the selected and derived fields.
+     * These only have values when the quantiles are recomputed, so they are sparse.
+     */
+    private void addRollingQuantileFields() {
+        DecimalFormat percentFormat = new DecimalFormat("#.###");
+        for(RollingQuantiles r : rollingQuantiles) {
+            int ix = -1;
+            for(int j = 0; j < selection.length; j++) {
+                if(selection[j] == r.getColumn()) {
+                    ix = j;
+                    break;
                 }
-            } else {
-                // Default not to plot the X value (it would just draw a diagonal)
-                selection = new int[data.length - 1];
-                for(int i = 0; i < x - 1; i++) {
-                    selection[i] = i + 1;
+            }
+            if(ix == -1) {
+                tailPlot.usage("Field specified in --quantiles (" + r.getColumn() + ") not present in --select");
+            }
+            r.setFieldIndex(ix);
+            Field source = fields.get(ix);
+            for(double q : r.getQuantiles()) {
+                Field f = new Field(source.getName() + " p" + percentFormat.format(q * 100), source.isOnY2());
+                f.setSparse(true);
+                fields.add(f);
+                rollingQuantileCount++;
+            }
+        }
+    }
+
+
+    /**
+     * Creates plot lines for the fields and adds them to the plot.
+     */
+    private void createPlotLines() {
+        for(final Field f : fields) {
+            final MultiplexingXYPlotLine pline = new MultiplexingXYPlotLine(tailPlot.getXAxis(),
+                    f.isOnY2() ? tailPlot.getY2Axis() : tailPlot.getYAxis(), XYDimension.X);
+            final Stroke highlightStroke = new BasicStroke(3);
+            final Shape highlightPointFill = null;
+            final Shape highlightPointOutline = null;
+            pline.setForeground(tailPlot.nextColor());
+            PlotDataset dataset = new PlotDataset(pline);
+            f.setDataset(dataset);
+            f.setPlotLine(pline);
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    tailPlot.addPlotLine(f, pline, highlightStroke, highlightPointFill, highlightPointOutline);
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Adds a row of data to the fields' summary statistics.
+     * @param ddata row returned by {@link #processLine(int, String)}
+     */
+    void addStatistics(double[] ddata) {
+        for(int i = 1; i < ddata.length; i++) {
+            Field f = fields.get(i - 1);
+            if(!f.isSparse() || !Double.isNaN(ddata[i])) {
+                f.getStatistics().add(ddata[i]);
+            }
+        }
+    }
+
+
+    /**
+     * Prints the fields' summary statistics as a table.
+     * @param out stream to print to
+     */
+    void printStatistics(PrintStream out) {
+        NumberFormat format = new MultiscaleNumberFormat(new DecimalFormat("#.######"), new DecimalFormat(
+                "0.######E0"), .01, 999.5);
+        List<String[]> rows = new ArrayList<String[]>();
+        rows.add(new String[] { "Field", "Count", "NaN", "Min", "Max", "Mean", "Std dev", "p50", "p90", "p99" });
+        for(Field f : fields) {
+            FieldStatistics s = f.getStatistics();
+            if(s != null) {
+                rows.add(new String[] { f.getName(), String.valueOf(s.getCount()), String.valueOf(s.getNaNCount()),
+                        formatStatistic(format, s.getMin()), formatStatistic(format, s.getMax()),
+                        formatStatistic(format, s.getMean()), formatStatistic(format, s.getStandardDeviation()),
+                        formatStatistic(format, s.getQuantile(.5)), formatStatistic(format, s.getQuantile(.9)),
+                        formatStatistic(format, s.getQuantile(.99)) });
+            }
+        }
+        StringBuilder b = new StringBuilder();
+        b.append(file == null ? "<standard input>" : file.getPath()).append(':');
+        b.append(System.getProperty("line.separator"));
+        b.append(formatTable(rows));
+        out.print(b);
+        out.flush();
+    }
+
+
+    /**
+     * Formats rows of text as a table, with each column padded to the width of its widest cell.
+     * @param rows rows of the table, which must all have the same number of cells
+     * @return the table, with a line separator after each row
+     */
+    static String formatTable(List<String[]> rows) {
+        int[] widths = new int[rows.isEmpty() ? 0 : rows.get(0).length];
+        for(String[] row : rows) {
+            for(int i = 0; i < row.length; i++) {
+                widths[i] = Math.max(widths[i], row[i].length());
+            }
+        }
+        StringBuilder b = new StringBuilder();
+        for(String[] row : rows) {
+            for(int i = 0; i < row.length; i++) {
+                if(i > 0) {
+                    b.append("  ");
                 }
-                for(int i = x - 1; i < selection.length; i++) {
-                    selection[i] = i + 2;
+                b.append(row[i]);
+                if(i < row.length - 1) {
+                    for(int j = row[i].length(); j < widths[i]; j++) {
+                        b.append(' ');
+                    }
                 }
             }
+            b.append(System.getProperty("line.separator"));
         }
+        return b.toString();
+    }
+
 
-        String[] ret = new String[selection.length];
-        for(int i = 0; i < ret.length; i++) {
-            ret[i] = data[selection[i] - 1];
+    /**
+     * Formats a statistic for {@link #printStatistics(PrintStream)}.
+     * @param format number format
+     * @param value the statistic
+     * @return formatted statistic, or "-" if it is NaN
+     */
+    private static String formatStatistic(NumberFormat format, double value) {
+        return Double.isNaN(value) ? "-" : format.format(value);
+    }
+
+
+    /**
+     * Selects all fields, except the X value.
+     * @param fieldCount number of input fields
+     */
+    private void selectAll(int fieldCount) {
+        if(x == -1) {
+            selection = new int[fieldCount];
+            for(int i = 0; i < selection.length; i++) {
+                selection[i] = i + 1;
+            }
+        } else {
+            // Default not to plot the X value (it would just draw a diagonal)
+            selection = new int[fieldCount - 1];
+            for(int i = 0; i < x - 1; i++) {
+                selection[i] = i + 1;
+            }
+            for(int i = x - 1; i < selection.length; i++) {
+                selection[i] = i + 2;
+            }
         }
-        return ret;
+        minFieldCount = Math.max(minFieldCount, fieldCount);
     }
 
 
@@ -264,6 +616,29 @@ class DataFile {
      * Sets up internal data after configuration.
      */
     protected void init() {
+        if(json) {
+            if(keyPaths == null) {
+                tailPlot.usage("--json requires key paths in --select");
+            }
+            if(headerLine || linePattern != null) {
+                tailPlot.usage("--json cannot be used with --header-line or --pattern");
+            }
+            selection = new int[keyPaths.length];
+            for(int i = 0; i < selection.length; i++) {
+                selection[i] = i + 1;
+            }
+            if(xKeyPath != null) {
+                keyPaths = Arrays.copyOf(keyPaths, keyPaths.length + 1);
+                keyPaths[keyPaths.length - 1] = xKeyPath;
+                x = keyPaths.length;
+            }
+            jsonScanner = new JsonScanner(keyPaths);
+        } else if(keyPaths != null || xKeyPath != null) {
+            tailPlot.usage("Key paths in --select and --x can only be used with --json");
+        }
+        if(csvScanner != null && (json || linePattern != null)) {
+            tailPlot.usage("--csv cannot be used with --json or --pattern");
+        }
         if(y2 != null) {
             for(int i = 0; i < y2.length; i++) {
                 int ix = y2[i];
@@ -308,6 +683,52 @@ class DataFile {
         if(x != -1) {
             NumberFormat format = fieldFormats.get(x);
             xInputFormat = format == null ? NumberFormat.getInstance() : format;
+            fastX = DecimalParser.isCompatible(xInputFormat);
+        }
+        BitSet used = new BitSet();
+        for(Expression e : derived.values()) {
+            e.addColumns(used);
+        }
+        for(Expression p : predicates) {
+            p.addColumns(used);
+        }
+        expressionColumns = new int[used.cardinality()];
+        expressionColumnFormats = new NumberFormat[expressionColumns.length];
+        fastExpressionColumns = new boolean[expressionColumns.length];
+        int ix = 0;
+        for(int i = used.nextSetBit(0); i >= 0; i = used.nextSetBit(i + 1)) {
+            NumberFormat format = fieldFormats.get(i);
+            expressionColumns[ix] = i;
+            expressionColumnFormats[ix] = format == null ? NumberFormat.getInstance() : format;
+            fastExpressionColumns[ix] = DecimalParser.isCompatible(expressionColumnFormats[ix]);
+            ix++;
+        }
+        columns = new double[used.length()];
+        minFieldCount = Math.max(minFieldCount, used.length() - 1);
+        if(json && minFieldCount > keyPaths.length) {
+            tailPlot.usage("Field index " + minFieldCount + " is greater than the number of key paths in --select ("
+                    + keyPaths.length + ")");
+        }
+        if(linePattern != null) {
+            int groups = linePattern.getGroupCount();
+            if(headerLine) {
+                tailPlot.usage("--header-line cannot be used with --pattern");
+            }
+            int maxIndex = Math.max(minFieldCount, x);
+            if(maxIndex > groups) {
+                tailPlot.usage("Field index " + maxIndex + " is greater than the number of groups in --pattern (" + groups
+                        + ")");
+            }
+            if(selection == null) {
+                // Select every group except the X value.
+                selection = new int[x == -1 ? groups : groups - 1];
+                int ix2 = 0;
+                for(int i = 1; i <= groups; i++) {
+                    if(i != x) {
+                        selection[ix2++] = i;
+                    }
+                }
+            }
         }
     }
 
@@ -400,10 +821,25 @@ class DataFile {
      */
     public void clearData() {
         for(Field f : fields) {
-            SimpleXYDataset dataset = f.getDataset();
+            PlotDataset dataset = f.getDataset();
             if(dataset != null) {
                 dataset.removeAllPoints();
             }
+            if(f.getStatistics() != null) {
+                f.setStatistics(new FieldStatistics());
+            }
+        }
+        for(Expression e : derived.values()) {
+            e.reset();
+        }
+        for(Expression p : predicates) {
+            p.reset();
+        }
+        for(RollingQuantiles r : rollingQuantiles) {
+            r.clear();
+        }
+        if(resampler != null) {
+            resampler.clear();
         }
         points = 0;
     }
@@ -428,6 +864,108 @@ class DataFile {
     }
 
 
+    /**
+     * Adds rolling quantiles of a field to plot.
+     * @param rollingQuantiles the rolling quantiles
+     */
+    public void addRollingQuantiles(RollingQuantiles rollingQuantiles) {
+        this.rollingQuantiles.add(rollingQuantiles);
+    }
+
+
+    /**
+     * Adds an expression to plot as a field.
+     * @param name name of the field
+     * @param expression expression computing the field's value
+     */
+    public void addDerived(String name, Expression expression) {
+        derived.put(name, expression);
+    }
+
+
+    /**
+     * Adds a condition a line must meet to be plotted.
+     * The line is plotted if the expression is non-zero.
+     * @param predicate expression to evaluate for each line
+     */
+    public void addPredicate(Expression predicate) {
+        predicates.add(predicate);
+    }
+
+
+    /**
+     * Adds a filter applied to raw lines before they are split into fields.
+     * @param filter the filter
+     */
+    public void addLineFilter(LineFilter filter) {
+        lineFilters.add(filter);
+    }
+
+
+    /**
+     * Sets the separator for lines of comma-separated values with optional quoting.
+     * This replaces the field separator regex.
+     * @param separator the field separator
+     */
+    public void setCsvSeparator(char separator) {
+        csvScanner = new CsvScanner(separator);
+    }
+
+
+    /**
+     * Sets whether lines contain JSON objects.
+     * @param json true if lines contain JSON objects
+     */
+    public void setJson(boolean json) {
+        this.json = json;
+    }
+
+
+    /**
+     * Sets the key paths to plot from JSON objects.
+     * @param keyPaths key paths, such as <code>latency.p99</code>
+     */
+    public void setKeyPaths(String[] keyPaths) {
+        this.keyPaths = keyPaths;
+    }
+
+
+    /**
+     * Sets the key path of the X value in JSON objects.
+     * @param xKeyPath key path of the X value
+     */
+    public void setXKeyPath(String xKeyPath) {
+        this.xKeyPath = xKeyPath;
+    }
+
+
+    /**
+     * Sets the pattern used to extract fields from lines.
+     * @param linePattern the pattern, or null to split lines with the field separator
+     */
+    public void setLinePattern(LinePattern linePattern) {
+        this.linePattern = linePattern;
+    }
+
+
+    /**
+     * Returns the resampler that aggregates rows before they are plotted.
+     * @return the resampler, or null to plot every row
+     */
+    public Resampler getResampler() {
+        return resampler;
+    }
+
+
+    /**
+     * Sets the resampler that aggregates rows before they are plotted.
+     * @param resampler the resampler, or null to plot every row
+     */
+    public void setResampler(Resampler resampler) {
+        this.resampler = resampler;
+    }
+
+
     /**
      * Sets the index within the files being plotted.
      * @param index index within the files being plotted
@@ -435,4 +973,22 @@ class DataFile {
     public void setIndex(int index) {
         this.index = index;
     }
+
+
+    /**
+     * Returns the index within the files being plotted.
+     * @return index within the files being plotted
+     */
+    public int getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Returns the runtime metrics.
+     * @return the runtime metrics
+     */
+    public FileMetrics getMetrics() {
+        return metrics;
+    }
 }
@@ -0,0 +1,103 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+
+/**
+ * Parses plain decimal numbers, such as <code>-12.5</code>, without allocating.
+ * Only numbers that can be converted exactly are handled; anything else
+ * (exponents, grouping separators, trailing text, too many digits) is left to a {@link NumberFormat},
+ * so results are the same as the format's.
+ * @author Adam Crume
+ */
+class DecimalParser {
+    /** Powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /** Largest mantissa that is exactly representable as a double. */
+    private static final long MAX_EXACT = 1L << 53;
+
+
+    private DecimalParser() {
+    }
+
+
+    /**
+     * Parses a number.
+     * @param s text containing the number
+     * @param start index of the first character of the number
+     * @param end index after the last character of the number
+     * @return the number, or NaN if it is not a plain decimal number that can be converted exactly
+     */
+    public static double parse(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if(i < end && s.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        for(; i < end; i++) {
+            char c = s.charAt(i);
+            if(c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if(mantissa > MAX_EXACT) {
+                    return Double.NaN;
+                }
+                digits++;
+                if(point) {
+                    fractionDigits++;
+                }
+            } else if(c == '.' && !point) {
+                point = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if(digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        // Both operands are exact, so the division is correctly rounded.
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+
+    /**
+     * Returns true if {@link #parse(CharSequence, int, int)} gives the same result as a format
+     * for every number it accepts.
+     * @param format the format
+     * @return true if the format reads plain decimal numbers in the usual way
+     */
+    public static boolean isCompatible(NumberFormat format) {
+        if(!(format instanceof DecimalFormat) || format.getClass() != DecimalFormat.class) {
+            return false;
+        }
+        DecimalFormat f = (DecimalFormat) format;
+        return f.getDecimalFormatSymbols().getDecimalSeparator() == '.'
+                && f.getDecimalFormatSymbols().getMinusSign() == '-' && f.getPositivePrefix().isEmpty()
+                && f.getPositiveSuffix().isEmpty() && f.getNegativePrefix().equals("-")
+                && f.getNegativeSuffix().isEmpty() && f.getMultiplier() == 1 && !f.isParseIntegerOnly()
+                && !f.isParseBigDecimal();
+    }
+}
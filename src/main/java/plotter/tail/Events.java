@@ -0,0 +1,159 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+/**
+ * Emits JDK Flight Recorder events describing where time is spent.
+ * This class does nothing.  If the JVM supports Flight Recorder and TailPlot was built with a JDK that does,
+ * {@link #get()} returns a subclass that emits events.
+ * <p>
+ * Each event is timed by calling a <code>begin</code> method before the work and passing its result
+ * to the matching <code>end</code> method afterward.
+ * <code>begin</code> methods return null if the event is disabled, in which case the caller should skip
+ * computing the event's values and the <code>end</code> method does nothing.
+ * Events are disabled by default.
+ * @author Adam Crume
+ */
+class Events {
+    /** Name of the subclass that emits Flight Recorder events. */
+    private static final String FLIGHT_RECORDER_EVENTS = "plotter.tail.JfrEvents";
+
+    /** The instance. */
+    private static final Events INSTANCE = load();
+
+
+    /**
+     * Returns the instance.
+     * @return the instance
+     */
+    static Events get() {
+        return INSTANCE;
+    }
+
+
+    /**
+     * Loads the subclass that emits Flight Recorder events, if possible.
+     * @return the instance
+     */
+    private static Events load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Events) Class.forName(FLIGHT_RECORDER_EVENTS).getConstructor().newInstance();
+        } catch(ReflectiveOperationException e) {
+            // Flight Recorder is not available, or TailPlot was built without support for it.
+        } catch(LinkageError e) {
+            // Same as above
+        }
+        return new Events();
+    }
+
+
+    /**
+     * Starts timing a batch of lines read and parsed by the reader thread.
+     * @return the event, or null if it is disabled
+     */
+    Object beginReadBatch() {
+        return null;
+    }
+
+
+    /**
+     * Finishes timing a batch of lines read and parsed by the reader thread.
+     * @param event result of {@link #beginReadBatch()}
+     * @param dataFile file being read
+     * @param lines number of lines read
+     * @param rows number of rows produced
+     */
+    void endReadBatch(Object event, DataFile dataFile, int lines, int rows) {
+    }
+
+
+    /**
+     * Starts timing a batch of rows added to the plot on the Swing thread.
+     * @return the event, or null if it is disabled
+     */
+    Object beginApplyBatch() {
+        return null;
+    }
+
+
+    /**
+     * Finishes timing a batch of rows added to the plot on the Swing thread.
+     * @param event result of {@link #beginApplyBatch()}
+     * @param dataFile file the rows came from
+     * @param rows number of rows added
+     */
+    void endApplyBatch(Object event, DataFile dataFile, int rows) {
+    }
+
+
+    /**
+     * Starts timing an update of the axis ranges.
+     * @return the event, or null if it is disabled
+     */
+    Object beginCommitMinMax() {
+        return null;
+    }
+
+
+    /**
+     * Finishes timing an update of the axis ranges.
+     * @param event result of {@link #beginCommitMinMax()}
+     * @param axes the axes
+     */
+    void endCommitMinMax(Object event, MetaAxis... axes) {
+    }
+
+
+    /**
+     * Starts timing a conversion between linear and log scale.
+     * @return the event, or null if it is disabled
+     */
+    Object beginLogscale() {
+        return null;
+    }
+
+
+    /**
+     * Finishes timing a conversion between linear and log scale.
+     * @param event result of {@link #beginLogscale()}
+     * @param axis name of the axis
+     * @param logscale true if the axis was converted to log scale, false if to linear
+     * @param points number of values converted
+     */
+    void endLogscale(Object event, String axis, boolean logscale, long points) {
+    }
+
+
+    /**
+     * Starts timing a paint of the plot.
+     * @return the event, or null if it is disabled
+     */
+    Object beginPaint() {
+        return null;
+    }
+
+
+    /**
+     * Finishes timing a paint of the plot.
+     * @param event result of {@link #beginPaint()}
+     * @param width width of the plot in pixels
+     * @param height height of the plot in pixels
+     * @param fields number of fields being plotted
+     */
+    void endPaint(Object event, int width, int height, int fields) {
+    }
+}
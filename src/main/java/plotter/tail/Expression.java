@@ -0,0 +1,828 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Computes a value from the fields of a row.
+ * Expressions are parsed once with {@link #parse(String)} into a tree of nodes that work on primitive doubles,
+ * and evaluated once per row, in order.
+ * Some functions (such as {@link Rate}) keep state between rows.
+ * <p>
+ * Syntax:
+ * <ul>
+ * <li><code>colN</code> is the value of input field N (1-based)</li>
+ * <li><code>x</code> is the X value of the row</li>
+ * <li>numbers, parentheses, and the operators <code>+ - * / % ^</code></li>
+ * <li>the comparisons <code>&lt; &lt;= &gt; &gt;= == !=</code>, which are 1 if true and 0 if false</li>
+ * <li><code>abs(e)</code>, <code>sqrt(e)</code>, <code>log(e)</code>, <code>log10(e)</code>, <code>exp(e)</code>,
+ * <code>min(a, b)</code>, <code>max(a, b)</code></li>
+ * <li><code>delta(e)</code>: change from the previous row</li>
+ * <li><code>rate(e)</code>: change per X unit from the previous row, treating a decrease as a counter reset</li>
+ * <li><code>ema(e, ALPHA)</code>: exponential moving average with smoothing factor ALPHA</li>
+ * <li><code>sma(e, N)</code>: mean of the last N rows, for N up to 2<sup>24</sup></li>
+ * </ul>
+ * @author Adam Crume
+ */
+abstract class Expression {
+    /** Arguments of this expression. */
+    protected final Expression[] args;
+
+
+    /**
+     * Creates an expression.
+     * @param args arguments of the expression
+     */
+    protected Expression(Expression... args) {
+        this.args = args;
+    }
+
+
+    /**
+     * Evaluates the expression for a row.
+     * @param x X value of the row
+     * @param columns values of the input fields, indexed by field index (1-based)
+     * @return value of the expression
+     */
+    abstract double evaluate(double x, double[] columns);
+
+
+    /**
+     * Clears state kept between rows.
+     */
+    void reset() {
+        for(Expression arg : args) {
+            arg.reset();
+        }
+    }
+
+
+    /**
+     * Adds the indices of the input fields used by this expression.
+     * @param columns set of field indices (1-based)
+     */
+    void addColumns(BitSet columns) {
+        for(Expression arg : args) {
+            arg.addColumns(columns);
+        }
+    }
+
+
+    /**
+     * Parses an expression.
+     * @param s text of the expression
+     * @return the expression
+     * @throws ParseException if the text is not a valid expression
+     */
+    static Expression parse(String s) throws ParseException {
+        Parser parser = new Parser(s);
+        Expression e = parser.parseComparison();
+        parser.skipWhitespace();
+        if(parser.pos < s.length()) {
+            throw new ParseException("Unexpected '" + s.charAt(parser.pos) + "' at position " + (parser.pos + 1)
+                    + " in expression: " + s, parser.pos);
+        }
+        return e;
+    }
+
+
+    /**
+     * Recursive descent parser for expressions.
+     */
+    private static class Parser {
+        private final String s;
+
+        private int pos;
+
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+
+        Expression parseComparison() throws ParseException {
+            Expression e = parseSum();
+            int op;
+            if(accept("<=")) {
+                op = Compare.LE;
+            } else if(accept(">=")) {
+                op = Compare.GE;
+            } else if(accept("==")) {
+                op = Compare.EQ;
+            } else if(accept("!=")) {
+                op = Compare.NE;
+            } else if(accept("<")) {
+                op = Compare.LT;
+            } else if(accept(">")) {
+                op = Compare.GT;
+            } else {
+                return e;
+            }
+            return new Compare(e, parseSum(), op);
+        }
+
+
+        Expression parseSum() throws ParseException {
+            Expression e = parseProduct();
+            while(true) {
+                if(accept('+')) {
+                    e = new Add(e, parseProduct());
+                } else if(accept('-')) {
+                    e = new Subtract(e, parseProduct());
+                } else {
+                    return e;
+                }
+            }
+        }
+
+
+        Expression parseProduct() throws ParseException {
+            Expression e = parseUnary();
+            while(true) {
+                if(accept('*')) {
+                    e = new Multiply(e, parseUnary());
+                } else if(accept('/')) {
+                    e = new Divide(e, parseUnary());
+                } else if(accept('%')) {
+                    e = new Remainder(e, parseUnary());
+                } else {
+                    return e;
+                }
+            }
+        }
+
+
+        Expression parseUnary() throws ParseException {
+            if(accept('-')) {
+                return new Negate(parseUnary());
+            }
+            Expression e = parsePrimary();
+            if(accept('^')) {
+                // Right associative, and binds tighter than unary minus on the left.
+                e = new Power(e, parseUnary());
+            }
+            return e;
+        }
+
+
+        Expression parsePrimary() throws ParseException {
+            skipWhitespace();
+            if(pos == s.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = s.charAt(pos);
+            if(accept('(')) {
+                Expression e = parseComparison();
+                expect(')');
+                return e;
+            } else if(Character.isDigit(c) || c == '.') {
+                return new Constant(parseNumber());
+            } else if(Character.isLetter(c) || c == '_') {
+                int start = pos;
+                while(pos < s.length() && (Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_')) {
+                    pos++;
+                }
+                String name = s.substring(start, pos);
+                if(accept('(')) {
+                    List<Expression> args = new ArrayList<Expression>();
+                    if(!accept(')')) {
+                        do {
+                            args.add(parseComparison());
+                        } while(accept(','));
+                        expect(')');
+                    }
+                    return function(name, args.toArray(new Expression[args.size()]), start);
+                } else if(name.equals("x")) {
+                    return new XValue();
+                } else if(name.startsWith("col")) {
+                    try {
+                        int column = Integer.parseInt(name.substring("col".length()));
+                        if(column > 0) {
+                            return new Column(column);
+                        }
+                    } catch(NumberFormatException e) {
+                        // fall through
+                    }
+                }
+                pos = start;
+                throw error("Unknown variable '" + name + "'");
+            } else {
+                throw error("Unexpected '" + c + "'");
+            }
+        }
+
+
+        double parseNumber() throws ParseException {
+            int start = pos;
+            while(pos < s.length() && (Character.isDigit(s.charAt(pos)) || s.charAt(pos) == '.')) {
+                pos++;
+            }
+            if(pos < s.length() && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+                pos++;
+                if(pos < s.length() && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) {
+                    pos++;
+                }
+                while(pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                    pos++;
+                }
+            }
+            try {
+                return Double.parseDouble(s.substring(start, pos));
+            } catch(NumberFormatException e) {
+                pos = start;
+                throw error("Invalid number");
+            }
+        }
+
+
+        Expression function(String name, Expression[] args, int start) throws ParseException {
+            int arity;
+            Expression e;
+            if(name.equals("abs")) {
+                arity = 1;
+                e = args.length == arity ? new Abs(args) : null;
+            } else if(name.equals("sqrt")) {
+                arity = 1;
+                e = args.length == arity ? new Sqrt(args) : null;
+            } else if(name.equals("log")) {
+                arity = 1;
+                e = args.length == arity ? new Log(args) : null;
+            } else if(name.equals("log10")) {
+                arity = 1;
+                e = args.length == arity ? new Log10(args) : null;
+            } else if(name.equals("exp")) {
+                arity = 1;
+                e = args.length == arity ? new Exp(args) : null;
+            } else if(name.equals("min")) {
+                arity = 2;
+                e = args.length == arity ? new Min(args) : null;
+            } else if(name.equals("max")) {
+                arity = 2;
+                e = args.length == arity ? new Max(args) : null;
+            } else if(name.equals("delta")) {
+                arity = 1;
+                e = args.length == arity ? new Delta(args[0]) : null;
+            } else if(name.equals("rate")) {
+                arity = 1;
+                e = args.length == arity ? new Rate(args[0]) : null;
+            } else if(name.equals("ema")) {
+                arity = 2;
+                if(args.length == arity) {
+                    double alpha = constant(name, args[1], start);
+                    if(!(alpha > 0 && alpha <= 1)) {
+                        pos = start;
+                        throw error("Smoothing factor for ema must be greater than 0 and at most 1");
+                    }
+                    e = new Ema(args[0], alpha);
+                } else {
+                    e = null;
+                }
+            } else if(name.equals("sma")) {
+                arity = 2;
+                if(args.length == arity) {
+                    double n = constant(name, args[1], start);
+                    if(n < 1 || n != Math.floor(n)) {
+                        pos = start;
+                        throw error("Window for sma must be a positive integer");
+                    }
+                    if(n > Sma.MAX_WINDOW) {
+                        pos = start;
+                        throw error("Window for sma must be at most " + Sma.MAX_WINDOW);
+                    }
+                    e = new Sma(args[0], (int) n);
+                } else {
+                    e = null;
+                }
+            } else {
+                pos = start;
+                throw error("Unknown function '" + name + "'");
+            }
+            if(e == null) {
+                pos = start;
+                throw error("Function '" + name + "' takes " + arity + " argument(s)");
+            }
+            return e;
+        }
+
+
+        double constant(String function, Expression arg, int start) throws ParseException {
+            if(arg instanceof Constant) {
+                return ((Constant) arg).value;
+            } else if(arg instanceof Negate && arg.args[0] instanceof Constant) {
+                return -((Constant) arg.args[0]).value;
+            }
+            pos = start;
+            throw error("Second argument of '" + function + "' must be a number");
+        }
+
+
+        void skipWhitespace() {
+            while(pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+
+        boolean accept(String token) {
+            skipWhitespace();
+            if(s.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+
+        boolean accept(char c) {
+            skipWhitespace();
+            if(pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+
+        void expect(char c) throws ParseException {
+            if(!accept(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+
+        ParseException error(String msg) {
+            return new ParseException(msg + " at position " + (pos + 1) + " in expression: " + s, pos);
+        }
+    }
+
+
+    private static class Constant extends Expression {
+        final double value;
+
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return value;
+        }
+    }
+
+
+    private static class XValue extends Expression {
+        @Override
+        double evaluate(double x, double[] columns) {
+            return x;
+        }
+    }
+
+
+    private static class Column extends Expression {
+        private final int column;
+
+
+        Column(int column) {
+            this.column = column;
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return columns[column];
+        }
+
+
+        @Override
+        void addColumns(BitSet columns) {
+            columns.set(column);
+        }
+    }
+
+
+    private static class Negate extends Expression {
+        Negate(Expression a) {
+            super(a);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return -args[0].evaluate(x, columns);
+        }
+    }
+
+
+    private static class Add extends Expression {
+        Add(Expression a, Expression b) {
+            super(a, b);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return args[0].evaluate(x, columns) + args[1].evaluate(x, columns);
+        }
+    }
+
+
+    private static class Subtract extends Expression {
+        Subtract(Expression a, Expression b) {
+            super(a, b);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return args[0].evaluate(x, columns) - args[1].evaluate(x, columns);
+        }
+    }
+
+
+    private static class Multiply extends Expression {
+        Multiply(Expression a, Expression b) {
+            super(a, b);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return args[0].evaluate(x, columns) * args[1].evaluate(x, columns);
+        }
+    }
+
+
+    private static class Divide extends Expression {
+        Divide(Expression a, Expression b) {
+            super(a, b);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return args[0].evaluate(x, columns) / args[1].evaluate(x, columns);
+        }
+    }
+
+
+    private static class Remainder extends Expression {
+        Remainder(Expression a, Expression b) {
+            super(a, b);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return args[0].evaluate(x, columns) % args[1].evaluate(x, columns);
+        }
+    }
+
+
+    private static class Power extends Expression {
+        Power(Expression a, Expression b) {
+            super(a, b);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.pow(args[0].evaluate(x, columns), args[1].evaluate(x, columns));
+        }
+    }
+
+
+    private static class Compare extends Expression {
+        static final int LT = 0;
+
+        static final int LE = 1;
+
+        static final int GT = 2;
+
+        static final int GE = 3;
+
+        static final int EQ = 4;
+
+        static final int NE = 5;
+
+        private final int op;
+
+
+        Compare(Expression a, Expression b, int op) {
+            super(a, b);
+            this.op = op;
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            double a = args[0].evaluate(x, columns);
+            double b = args[1].evaluate(x, columns);
+            boolean result;
+            switch(op) {
+            case LT:
+                result = a < b;
+                break;
+            case LE:
+                result = a <= b;
+                break;
+            case GT:
+                result = a > b;
+                break;
+            case GE:
+                result = a >= b;
+                break;
+            case EQ:
+                result = a == b;
+                break;
+            default:
+                result = a != b;
+                break;
+            }
+            return result ? 1 : 0;
+        }
+    }
+
+
+    private static class Abs extends Expression {
+        Abs(Expression[] args) {
+            super(args);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.abs(args[0].evaluate(x, columns));
+        }
+    }
+
+
+    private static class Sqrt extends Expression {
+        Sqrt(Expression[] args) {
+            super(args);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.sqrt(args[0].evaluate(x, columns));
+        }
+    }
+
+
+    private static class Log extends Expression {
+        Log(Expression[] args) {
+            super(args);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.log(args[0].evaluate(x, columns));
+        }
+    }
+
+
+    private static class Log10 extends Expression {
+        Log10(Expression[] args) {
+            super(args);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.log10(args[0].evaluate(x, columns));
+        }
+    }
+
+
+    private static class Exp extends Expression {
+        Exp(Expression[] args) {
+            super(args);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.exp(args[0].evaluate(x, columns));
+        }
+    }
+
+
+    private static class Min extends Expression {
+        Min(Expression[] args) {
+            super(args);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.min(args[0].evaluate(x, columns), args[1].evaluate(x, columns));
+        }
+    }
+
+
+    private static class Max extends Expression {
+        Max(Expression[] args) {
+            super(args);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            return Math.max(args[0].evaluate(x, columns), args[1].evaluate(x, columns));
+        }
+    }
+
+
+    /**
+     * Change from the previous row.
+     * Rows where the argument is NaN are skipped.
+     */
+    private static class Delta extends Expression {
+        private double previous = Double.NaN;
+
+
+        Delta(Expression a) {
+            super(a);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            double value = args[0].evaluate(x, columns);
+            if(Double.isNaN(value)) {
+                return Double.NaN;
+            }
+            double ret = value - previous;
+            previous = value;
+            return ret;
+        }
+
+
+        @Override
+        void reset() {
+            super.reset();
+            previous = Double.NaN;
+        }
+    }
+
+
+    /**
+     * Change per X unit from the previous row, for monotonic counters.
+     * If the value decreases, the counter is assumed to have been reset to zero in between.
+     * Rows where the argument or X is NaN are skipped.
+     */
+    private static class Rate extends Expression {
+        private double previous = Double.NaN;
+
+        private double previousX = Double.NaN;
+
+
+        Rate(Expression a) {
+            super(a);
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            double value = args[0].evaluate(x, columns);
+            if(Double.isNaN(value) || Double.isNaN(x)) {
+                return Double.NaN;
+            }
+            double increase = value >= previous ? value - previous : value;
+            double dx = x - previousX;
+            previous = value;
+            previousX = x;
+            return dx > 0 ? increase / dx : Double.NaN;
+        }
+
+
+        @Override
+        void reset() {
+            super.reset();
+            previous = Double.NaN;
+            previousX = Double.NaN;
+        }
+    }
+
+
+    /**
+     * Exponential moving average.
+     * Rows where the argument is NaN don't change the average, and evaluate to the current average.
+     */
+    private static class Ema extends Expression {
+        private final double alpha;
+
+        private double average = Double.NaN;
+
+
+        Ema(Expression a, double alpha) {
+            super(a);
+            this.alpha = alpha;
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            double value = args[0].evaluate(x, columns);
+            if(Double.isNaN(value)) {
+                return average;
+            }
+            if(Double.isNaN(average)) {
+                average = value;
+            } else {
+                average += alpha * (value - average);
+            }
+            return average;
+        }
+
+
+        @Override
+        void reset() {
+            super.reset();
+            average = Double.NaN;
+        }
+    }
+
+
+    /**
+     * Simple moving average over a fixed number of rows.
+     * Rows where the argument is NaN aren't counted, and evaluate to the current average.
+     * The running sum is recomputed from the window each time it wraps around,
+     * so rounding errors from subtracting old values don't accumulate.
+     */
+    private static class Sma extends Expression {
+        /** Largest window, which keeps the buffer to 128 MB. */
+        static final int MAX_WINDOW = 1 << 24;
+
+        /** Most recent values, as a ring buffer. */
+        private final double[] window;
+
+        /** Index in {@link #window} of the next value. */
+        private int next;
+
+        /** Number of values in {@link #window}. */
+        private int count;
+
+        /** Sum of values in {@link #window}. */
+        private double sum;
+
+
+        Sma(Expression a, int n) {
+            super(a);
+            window = new double[n];
+        }
+
+
+        @Override
+        double evaluate(double x, double[] columns) {
+            double value = args[0].evaluate(x, columns);
+            if(!Double.isNaN(value)) {
+                if(count == window.length) {
+                    sum -= window[next];
+                } else {
+                    count++;
+                }
+                window[next] = value;
+                sum += value;
+                if(++next == window.length) {
+                    next = 0;
+                    sum = 0;
+                    for(double v : window) {
+                        sum += v;
+                    }
+                }
+            }
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+
+        @Override
+        void reset() {
+            super.reset();
+            next = 0;
+            count = 0;
+            sum = 0;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+
+/**
+ * Formats doubles into a reusable buffer, producing the same output as a {@link DecimalFormat}
+ * with a pattern like "#.###" or "0.###E0".
+ * The digits are generated with long arithmetic.
+ * Values whose rounding is too close to call in double precision, or which are too large or small,
+ * are rejected so the caller can fall back to the {@link DecimalFormat}.
+ * Not thread-safe.
+ * @author Adam Crume
+ */
+class FastDecimalFormat {
+    /** Powers of ten which are exact as doubles. */
+    private static final double[] POWERS = new double[23];
+
+    /** Powers of ten as longs. */
+    private static final long[] LONG_POWERS = new long[19];
+
+    static {
+        POWERS[0] = 1;
+        for(int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+        LONG_POWERS[0] = 1;
+        for(int i = 1; i < LONG_POWERS.length; i++) {
+            LONG_POWERS[i] = LONG_POWERS[i - 1] * 10;
+        }
+    }
+
+    /** Scaled values must be below this so they are exact as longs and have a fractional part. */
+    private static final double MAX_SCALED = 1L << 52;
+
+    /** Relative error allowed for a scaled value, which is rounded once. */
+    private static final double EPSILON = 4e-16;
+
+    /** True for scientific notation. */
+    private final boolean exponential;
+
+    /** Maximum number of digits after the decimal separator. */
+    private final int fractionDigits;
+
+    /** Prefix for negative numbers. */
+    private final String negativePrefix;
+
+    /** Decimal separator. */
+    private final char decimalSeparator;
+
+    /** Minus sign used in negative exponents. */
+    private final char minusSign;
+
+    /** Separator between the mantissa and exponent. */
+    private final String exponentSeparator;
+
+    /** Formatted text. */
+    private final char[] buffer = new char[64];
+
+    /** Length of the formatted text. */
+    private int length;
+
+    /** Index of the first integer digit. */
+    private int integerBegin;
+
+    /** Index after the last integer digit. */
+    private int integerEnd;
+
+
+    private FastDecimalFormat(boolean exponential, int fractionDigits, DecimalFormat format) {
+        DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+        this.exponential = exponential;
+        this.fractionDigits = fractionDigits;
+        this.negativePrefix = format.getNegativePrefix();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.minusSign = symbols.getMinusSign();
+        this.exponentSeparator = symbols.getExponentSeparator();
+    }
+
+
+    /**
+     * Creates a fast equivalent of a format.
+     * @param format format to imitate
+     * @return the fast format, or null if the format isn't a {@link DecimalFormat} with a supported pattern
+     */
+    public static FastDecimalFormat create(NumberFormat format) {
+        if(!(format instanceof DecimalFormat)) {
+            return null;
+        }
+        DecimalFormat f = (DecimalFormat) format;
+        int digits = f.getMaximumFractionDigits();
+        if(f.getMinimumFractionDigits() != 0 || digits > 15 || f.getMultiplier() != 1
+                || f.getRoundingMode() != RoundingMode.HALF_EVEN || f.isDecimalSeparatorAlwaysShown()
+                || !f.getPositivePrefix().isEmpty() || !f.getPositiveSuffix().isEmpty()
+                || !f.getNegativeSuffix().isEmpty() || f.getNegativePrefix().length() > 8
+                || f.getDecimalFormatSymbols().getZeroDigit() != '0'
+                || f.getDecimalFormatSymbols().getExponentSeparator().length() > 8) {
+            return null;
+        }
+        StringBuilder fraction = new StringBuilder();
+        for(int i = 0; i < digits; i++) {
+            fraction.append('#');
+        }
+        String pattern = f.toPattern();
+        if(pattern.equals("#0." + fraction) || (digits == 0 && pattern.equals("#0"))) {
+            return new FastDecimalFormat(false, digits, f);
+        } else if(pattern.equals("0." + fraction + "E0") || (digits == 0 && pattern.equals("0E0"))) {
+            return new FastDecimalFormat(true, digits, f);
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Formats a value into the buffer.
+     * @param value value to format
+     * @return false if the value must be formatted by the original format instead
+     */
+    public boolean format(double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value)) {
+            return false;
+        }
+        length = 0;
+        // DecimalFormat keeps the sign of values which round to zero, including negative zero.
+        if(Double.doubleToRawLongBits(value) < 0) {
+            append(negativePrefix);
+        }
+        integerBegin = length;
+        double mag = Math.abs(value);
+        if(!exponential) {
+            long scaled = round(mag, fractionDigits);
+            if(scaled < 0) {
+                return false;
+            }
+            appendDigits(scaled / LONG_POWERS[fractionDigits], 1);
+            integerEnd = length;
+            appendFraction(scaled % LONG_POWERS[fractionDigits]);
+            return true;
+        }
+        if(mag == 0) {
+            buffer[length++] = '0';
+            integerEnd = length;
+            append(exponentSeparator);
+            buffer[length++] = '0';
+            return true;
+        }
+        int exponent = (int) Math.floor(Math.log10(mag));
+        long scaled = round(mag, fractionDigits - exponent);
+        // log10 may be off by one near powers of ten.
+        if(scaled >= 0 && scaled < LONG_POWERS[fractionDigits]) {
+            exponent--;
+            scaled = round(mag, fractionDigits - exponent);
+        } else if(scaled > LONG_POWERS[fractionDigits + 1]) {
+            exponent++;
+            scaled = round(mag, fractionDigits - exponent);
+        }
+        if(scaled < LONG_POWERS[fractionDigits] || scaled > LONG_POWERS[fractionDigits + 1]) {
+            return false;
+        }
+        if(scaled == LONG_POWERS[fractionDigits + 1]) {
+            // Rounded up to the next power of ten.
+            scaled = LONG_POWERS[fractionDigits];
+            exponent++;
+        }
+        appendDigits(scaled / LONG_POWERS[fractionDigits], 1);
+        integerEnd = length;
+        appendFraction(scaled % LONG_POWERS[fractionDigits]);
+        append(exponentSeparator);
+        if(exponent < 0) {
+            buffer[length++] = minusSign;
+        }
+        appendDigits(Math.abs(exponent), 1);
+        return true;
+    }
+
+
+    /**
+     * Returns the buffer containing the formatted text.
+     * @return the buffer
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+
+    /**
+     * Returns the length of the formatted text.
+     * @return the length of the formatted text
+     */
+    public int getLength() {
+        return length;
+    }
+
+
+    /**
+     * Returns the index of the first integer digit in the formatted text.
+     * @return the index of the first integer digit
+     */
+    public int getIntegerBegin() {
+        return integerBegin;
+    }
+
+
+    /**
+     * Returns the index after the last integer digit in the formatted text.
+     * @return the index after the last integer digit
+     */
+    public int getIntegerEnd() {
+        return integerEnd;
+    }
+
+
+    /**
+     * Multiplies a value by a power of ten and rounds it half-even.
+     * @param mag non-negative value
+     * @param power power of ten
+     * @return the rounded value, or -1 if it can't be computed reliably
+     */
+    private static long round(double mag, int power) {
+        if(power >= POWERS.length || -power >= POWERS.length) {
+            return -1;
+        }
+        // Multiplying or dividing by an exact power of ten rounds only once.
+        double scaled = power >= 0 ? mag * POWERS[power] : mag / POWERS[-power];
+        if(scaled >= MAX_SCALED) {
+            return -1;
+        }
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if(Math.abs(fraction - .5) <= scaled * EPSILON) {
+            // The exact value may be on either side of (or exactly on) the halfway point.
+            return -1;
+        }
+        return (long) floor + (fraction > .5 ? 1 : 0);
+    }
+
+
+    /**
+     * Appends the digits after the decimal separator, without trailing zeros.
+     * @param fraction digits as an integer, scaled by 10^{@link #fractionDigits}
+     */
+    private void appendFraction(long fraction) {
+        if(fraction == 0) {
+            return;
+        }
+        int digits = fractionDigits;
+        while(fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        buffer[length++] = decimalSeparator;
+        appendDigits(fraction, digits);
+    }
+
+
+    /**
+     * Appends a non-negative integer.
+     * @param n the integer
+     * @param minDigits minimum number of digits, padded with leading zeros
+     */
+    private void appendDigits(long n, int minDigits) {
+        int digits = 1;
+        while(digits < LONG_POWERS.length && n >= LONG_POWERS[digits]) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        for(int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+        length += digits;
+    }
+
+
+    /**
+     * Appends a string.
+     * @param s the string
+     */
+    private void append(String s) {
+        s.getChars(0, s.length(), buffer, length);
+        length += s.length();
+    }
+}
@@ -18,11 +18,10 @@ package plotter.tail;
 
 import java.text.NumberFormat;
 
-import plotter.xy.SimpleXYDataset;
 import plotter.xy.XYPlotLine;
 
 class Field {
-    private SimpleXYDataset dataset;
+    private PlotDataset dataset;
 
     private String name;
 
@@ -33,6 +32,12 @@ class Field {
     /** The plot line for this field. */
     private XYPlotLine plotLine;
 
+    /** Summary statistics for this field, or null if not being computed. */
+    private FieldStatistics statistics;
+
+    /** True if the field only has values on some rows, with NaN on the others. */
+    private boolean sparse;
+
 
     public Field(String name, boolean onY2) {
         this.name = name;
@@ -40,12 +45,12 @@ class Field {
     }
 
 
-    public SimpleXYDataset getDataset() {
+    public PlotDataset getDataset() {
         return dataset;
     }
 
 
-    public void setDataset(SimpleXYDataset dataset) {
+    public void setDataset(PlotDataset dataset) {
         this.dataset = dataset;
     }
 
@@ -104,4 +109,41 @@ class Field {
     public void setPlotLine(XYPlotLine line) {
         this.plotLine = line;
     }
+
+
+    /**
+     * Returns the summary statistics for this field.
+     * @return the summary statistics, or null if not being computed
+     */
+    public FieldStatistics getStatistics() {
+        return statistics;
+    }
+
+
+    /**
+     * Sets the summary statistics for this field.
+     * @param statistics the summary statistics, or null if not being computed
+     */
+    public void setStatistics(FieldStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+
+    /**
+     * Returns true if the field only has values on some rows.
+     * For sparse fields, NaN marks a row without a value rather than an invalid value, so it is not plotted.
+     * @return true if the field only has values on some rows
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+
+    /**
+     * Sets whether the field only has values on some rows.
+     * @param sparse true if the field only has values on some rows
+     */
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
 }
@@ -0,0 +1,135 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+/**
+ * Summary statistics for the values of a field, computed in constant memory.
+ * @author Adam Crume
+ */
+class FieldStatistics {
+    /** Number of values, not counting NaNs. */
+    private long count;
+
+    /** Number of NaN values. */
+    private long nanCount;
+
+    /** Smallest value. */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /** Largest value. */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /** Running mean. */
+    private double mean;
+
+    /** Running sum of squared differences from the mean. */
+    private double m2;
+
+    /** Approximates the distribution of values. */
+    private final QuantileSketch sketch = new QuantileSketch();
+
+
+    /**
+     * Adds a value.
+     * @param value value to add
+     */
+    public void add(double value) {
+        if(Double.isNaN(value)) {
+            nanCount++;
+            return;
+        }
+        count++;
+        if(value < min) {
+            min = value;
+        }
+        if(value > max) {
+            max = value;
+        }
+        // Welford's algorithm
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        sketch.add(value);
+    }
+
+
+    /**
+     * Returns the number of values, not counting NaNs.
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the number of NaN values.
+     * @return the number of NaN values
+     */
+    public long getNaNCount() {
+        return nanCount;
+    }
+
+
+    /**
+     * Returns the smallest value.
+     * @return the smallest value, or NaN if there are no values
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+
+    /**
+     * Returns the largest value.
+     * @return the largest value, or NaN if there are no values
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+
+    /**
+     * Returns the mean.
+     * @return the mean, or NaN if there are no values
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+
+    /**
+     * Returns the sample standard deviation.
+     * @return the sample standard deviation, or NaN if there are fewer than two values
+     */
+    public double getStandardDeviation() {
+        return count < 2 ? Double.NaN : Math.sqrt(m2 / (count - 1));
+    }
+
+
+    /**
+     * Returns the approximate value at the given quantile.
+     * @param q quantile, between 0 and 1
+     * @return the approximate value, or NaN if there are no values
+     */
+    public double getQuantile(double q) {
+        if(count == 0) {
+            return Double.NaN;
+        }
+        return Math.max(min, Math.min(max, sketch.getQuantile(q)));
+    }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.util.List;
+
+
+/**
+ * Runtime metrics for a {@link DataFile}.
+ * Counters are updated by the reader thread without locking.
+ * Values derived from the plot are sampled on the Swing thread by {@link #update(List)}.
+ * @author Adam Crume
+ */
+class FileMetrics implements FileMetricsMBean {
+    /** Estimated heap used by a point: an X and a Y value. */
+    static final int BYTES_PER_POINT = 16;
+
+    /** Number of lines read. */
+    private final StripedCounter linesRead = new StripedCounter();
+
+    /** Number of bytes read. */
+    private final StripedCounter bytesRead = new StripedCounter();
+
+    /** Number of parse errors. */
+    private final StripedCounter parseErrors = new StripedCounter();
+
+    /** Number of rows waiting to be added to the plot. */
+    private volatile int queueDepth;
+
+    /** Largest value of {@link #queueDepth}. */
+    private volatile int peakQueueDepth;
+
+    /** Lines per second, as of the last update. */
+    private volatile double linesPerSecond;
+
+    /** Points stored for all fields, as of the last update. */
+    private volatile long pointsStored;
+
+    /** Value of {@link #linesRead} at the last update.  Only accessed on the Swing thread. */
+    private long lastLinesRead;
+
+    /** Value of {@link System#nanoTime()} at the last update, or 0 if there has been no update.  Only accessed on the Swing thread. */
+    private long lastUpdate;
+
+
+    /**
+     * Records that a line was read.
+     */
+    public void lineRead() {
+        linesRead.increment();
+    }
+
+
+    /**
+     * Returns the counter for bytes read.
+     * @return the counter for bytes read
+     */
+    public StripedCounter getBytesReadCounter() {
+        return bytesRead;
+    }
+
+
+    /**
+     * Records a line or value that could not be parsed.
+     */
+    public void parseError() {
+        parseErrors.increment();
+    }
+
+
+    /**
+     * Sets the number of rows waiting to be added to the plot.
+     * Must be called while holding the lock on the queue.
+     * @param queueDepth number of rows waiting
+     */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+        if(queueDepth > peakQueueDepth) {
+            peakQueueDepth = queueDepth;
+        }
+    }
+
+
+    /**
+     * Samples the rate and the number of points stored.
+     * Must be called on the Swing thread.
+     * @param fields the file's fields
+     */
+    public void update(List<Field> fields) {
+        long now = System.nanoTime();
+        long lines = linesRead.get();
+        if(lastUpdate != 0) {
+            linesPerSecond = (lines - lastLinesRead) * 1e9 / (now - lastUpdate);
+        }
+        lastLinesRead = lines;
+        lastUpdate = now;
+        long points = 0;
+        for(Field field : fields) {
+            PlotDataset dataset = field.getDataset();
+            if(dataset != null) {
+                points += dataset.getPointCount();
+            }
+        }
+        pointsStored = points;
+    }
+
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.get();
+    }
+
+
+    @Override
+    public double getLinesPerSecond() {
+        return linesPerSecond;
+    }
+
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.get();
+    }
+
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+
+    @Override
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+
+    @Override
+    public long getPointsStored() {
+        return pointsStored;
+    }
+
+
+    @Override
+    public long getPointBytes() {
+        return pointsStored * BYTES_PER_POINT;
+    }
+}
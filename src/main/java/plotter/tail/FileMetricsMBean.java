@@ -0,0 +1,77 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+/**
+ * JMX view of {@link FileMetrics}.
+ * @author Adam Crume
+ */
+public interface FileMetricsMBean {
+    /**
+     * Returns the number of lines read, including lines that were skipped.
+     * @return number of lines read
+     */
+    long getLinesRead();
+
+
+    /**
+     * Returns the rate lines were read at over the last second.
+     * @return lines per second
+     */
+    double getLinesPerSecond();
+
+
+    /**
+     * Returns the number of bytes read.
+     * @return number of bytes read
+     */
+    long getBytesRead();
+
+
+    /**
+     * Returns the number of lines or values that could not be parsed.
+     * @return number of parse errors
+     */
+    long getParseErrors();
+
+
+    /**
+     * Returns the number of rows waiting to be added to the plot.
+     * @return number of rows waiting
+     */
+    int getQueueDepth();
+
+
+    /**
+     * Returns the largest number of rows that have been waiting to be added to the plot.
+     * @return largest number of rows waiting
+     */
+    int getPeakQueueDepth();
+
+
+    /**
+     * Returns the number of points stored for all fields.
+     * @return number of points
+     */
+    long getPointsStored();
+
+
+    /**
+     * Returns an estimate of the heap used to store points for all fields.
+     * @return heap used, in bytes
+     */
+    long getPointBytes();
+}
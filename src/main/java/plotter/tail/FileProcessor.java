@@ -18,8 +18,8 @@ package plotter.tail;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
@@ -27,6 +27,8 @@ import java.util.List;
 
 import javax.swing.SwingUtilities;
 
+import plotter.DoubleData;
+
 /**
  * Reads data from a file and plots it.
  * Even though a {@link DataFile} will only have one current FileProcessor,
@@ -49,6 +51,21 @@ class FileProcessor implements Runnable {
     /** Reads the file. */
     private BufferedReader in;
 
+    /** Maximum number of lines in a {@link Events#beginReadBatch() read batch}. */
+    private static final int READ_BATCH = 1024;
+
+    /** Last row added to the plot.  Only accessed on the GUI thread. */
+    private double[] lastPlotted;
+
+    /** X values of each field's points in the batch being added to the plot.  Only accessed on the GUI thread. */
+    private double[][] batchX = new double[0][];
+
+    /** Y values of each field's points in the batch being added to the plot.  Only accessed on the GUI thread. */
+    private double[][] batchY = new double[0][];
+
+    /** Number of each field's points in the batch being added to the plot.  Only accessed on the GUI thread. */
+    private int[] batchCounts = new int[0];
+
 
     /**
      * Creates a file processor.
@@ -82,21 +99,39 @@ class FileProcessor implements Runnable {
     @Override
     public void run() {
         File file = dataFile.getFile();
+        final FileMetrics metrics = dataFile.getMetrics();
+        StripedCounter bytesRead = metrics.getBytesReadCounter();
         if(file == null) {
-            in = new BufferedReader(new InputStreamReader(System.in));
+            in = new BufferedReader(new InputStreamReader(new CountingInputStream(System.in, bytesRead)));
         } else {
             try {
-                in = new BufferedReader(new FileReader(file));
+                in = new BufferedReader(new InputStreamReader(new CountingInputStream(new FileInputStream(file),
+                        bytesRead)));
             } catch(FileNotFoundException e) {
                 e.printStackTrace();
+                tailPlot.fileFinished();
                 return;
             }
         }
+        // Set when another processor takes over the file, which then reports when the file is finished.
+        boolean replaced = false;
         try {
             dataFile.clearData();
-            tailPlot.resetMinMax();
+            boolean statistics = tailPlot.isStatistics();
+            Resampler resampler = dataFile.getResampler();
+            long statisticsInterval = tailPlot.getStatisticsInterval();
+            long nextStatistics = System.currentTimeMillis() + statisticsInterval;
+            if(!statistics) {
+                tailPlot.resetMinMax();
+            }
 
             int lineNumber = 0;
+            final Events events = Events.get();
+            // Lines read since the read batch started, and rows they produced.
+            // The batch ends when it is full or the end of the file is reached.
+            Object readBatch = null;
+            int batchLines = 0;
+            int batchRows = 0;
             // Shuffles data from the IO thread to the GUI thread.
             final List<double[]> buffer = new ArrayList<double[]>();
             long oldFileSize = 0;
@@ -104,6 +139,7 @@ class FileProcessor implements Runnable {
                 if(file != null && tailPlot.isAutorestart()) {
                     long fileSize = file.length();
                     if(fileSize < oldFileSize) {
+                        replaced = true;
                         dataFile.restart();
                         return;
                     }
@@ -111,12 +147,30 @@ class FileProcessor implements Runnable {
                 }
                 synchronized(this) {
                     if(stop) {
+                        replaced = true;
                         return;
                     }
                 }
+                if(statisticsInterval > 0) {
+                    long now = System.currentTimeMillis();
+                    if(now >= nextStatistics) {
+                        dataFile.printStatistics(System.out);
+                        nextStatistics = now + statisticsInterval;
+                    }
+                }
+                if(batchLines == READ_BATCH) {
+                    events.endReadBatch(readBatch, dataFile, batchLines, batchRows);
+                    batchLines = 0;
+                    batchRows = 0;
+                }
                 String line = in.readLine();
                 if(line == null) {
-                    if(file == null) {
+                    if(batchLines > 0) {
+                        events.endReadBatch(readBatch, dataFile, batchLines, batchRows);
+                        batchLines = 0;
+                        batchRows = 0;
+                    }
+                    if(file == null || !tailPlot.isFollow()) {
                         break;
                     }
                     try {
@@ -126,32 +180,65 @@ class FileProcessor implements Runnable {
                     continue;
                 }
                 lineNumber++;
+                metrics.lineRead();
+                if(batchLines++ == 0) {
+                    readBatch = events.beginReadBatch();
+                }
 
                 final double[] ddata = dataFile.processLine(lineNumber, line);
 
                 if(ddata == null) {
                     continue;
                 }
+                batchRows++;
+
+                if(statistics) {
+                    // Statistics are computed on this thread, so nothing needs to be handed to the GUI thread.
+                    dataFile.addStatistics(ddata);
+                    continue;
+                }
 
                 synchronized(buffer) {
+                    double[] row = ddata;
+                    if(resampler != null) {
+                        // The row for the bucket in progress is updated in place, so this must hold the lock.
+                        row = resampler.add(ddata);
+                        if(row == null || (!buffer.isEmpty() && buffer.get(buffer.size() - 1) == row)) {
+                            continue;
+                        }
+                    }
                     boolean empty = buffer.isEmpty();
-                    buffer.add(ddata);
+                    buffer.add(row);
+                    metrics.setQueueDepth(buffer.size());
                     if(empty) {
                         SwingUtilities.invokeLater(new Runnable() {
                             @Override
                             public void run() {
+                                long start = System.nanoTime();
+                                Object applyBatch = events.beginApplyBatch();
+                                int rows;
                                 synchronized(buffer) {
+                                    rows = buffer.size();
                                     MetaAxis metaX = tailPlot.getMetaX();
                                     boolean isXLogscale = metaX.isLogscale();
+                                    LatencyMonitor latencyMonitor = tailPlot.getLatencyMonitor();
+                                    List<Field> fields = dataFile.getFields();
+                                    startBatch(fields.size(), rows);
                                     for(double[] ddata : buffer) {
                                         double xVal = ddata[0];
                                         if(isXLogscale) {
                                             xVal = Math.log10(xVal);
                                         }
+                                        // A resampled row is plotted again each time its bucket is updated.
+                                        boolean update = ddata == lastPlotted;
+                                        lastPlotted = ddata;
                                         boolean anyVisible = false;
                                         for(int i = 1; i < ddata.length; i++) {
                                             double val = ddata[i];
-                                            Field field = dataFile.getFields().get(i - 1);
+                                            Field field = fields.get(i - 1);
+                                            if(field.isSparse() && Double.isNaN(val)) {
+                                                continue;
+                                            }
                                             boolean visible = field.isVisible();
                                             MetaAxis fieldY;
                                             if(field.isOnY2()) {
@@ -166,15 +253,33 @@ class FileProcessor implements Runnable {
                                                 fieldY.updateMinMax(val);
                                                 anyVisible = true;
                                             }
-                                            field.getDataset().add(xVal, val);
+                                            // Only the first row of a batch can be an update, so the new points come after it.
+                                            if(!update || !replaceLastPoint(field, xVal, val)) {
+                                                int n = batchCounts[i - 1]++;
+                                                batchX[i - 1][n] = xVal;
+                                                batchY[i - 1][n] = val;
+                                            }
                                         }
                                         if(anyVisible) {
                                             metaX.updateMinMax(xVal);
                                         }
                                     }
+                                    for(int i = 0; i < batchCounts.length; i++) {
+                                        if(batchCounts[i] > 0) {
+                                            fields.get(i).getDataset().append(batchX[i], batchY[i], 0, batchCounts[i]);
+                                        }
+                                    }
+                                    if(latencyMonitor != null) {
+                                        for(double[] ddata : buffer) {
+                                            latencyMonitor.added(ddata[0]);
+                                        }
+                                    }
                                     buffer.clear();
+                                    metrics.setQueueDepth(0);
                                 }
-                                tailPlot.commitMinMax();
+                                tailPlot.getRenderScheduler().requestFrame();
+                                events.endApplyBatch(applyBatch, dataFile, rows);
+                                tailPlot.getMetrics().batchApplied(System.nanoTime() - start);
                             }
                         });
                     }
@@ -188,6 +293,58 @@ class FileProcessor implements Runnable {
             } catch(IOException e) {
                 e.printStackTrace();
             }
+            if(!replaced) {
+                try {
+                    if(tailPlot.isStatistics()) {
+                        dataFile.printStatistics(System.out);
+                    }
+                } finally {
+                    // Even if reading failed unexpectedly, or --output and --stats would wait forever.
+                    tailPlot.fileFinished();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Prepares {@link #batchX}, {@link #batchY}, and {@link #batchCounts} for a batch.
+     * @param fieldCount number of fields
+     * @param rows number of rows in the batch
+     */
+    private void startBatch(int fieldCount, int rows) {
+        if(batchCounts.length != fieldCount) {
+            batchX = new double[fieldCount][];
+            batchY = new double[fieldCount][];
+            batchCounts = new int[fieldCount];
+        }
+        for(int i = 0; i < fieldCount; i++) {
+            if(batchX[i] == null || batchX[i].length < rows) {
+                // Grow geometrically so that slowly growing batches don't reallocate every time.
+                int capacity = Math.max(rows, batchX[i] == null ? 16 : batchX[i].length * 2);
+                batchX[i] = new double[capacity];
+                batchY[i] = new double[capacity];
+            }
+            batchCounts[i] = 0;
+        }
+    }
+
+
+    /**
+     * Changes the Y value of a field's last point, if it has the given X value.
+     * @param field field to update
+     * @param x X value of the point
+     * @param y new Y value of the point
+     * @return true if the point was changed
+     */
+    private static boolean replaceLastPoint(Field field, double x, double y) {
+        PlotDataset dataset = field.getDataset();
+        DoubleData xData = dataset.getXData();
+        int index = xData.getLength() - 1;
+        if(index < 0 || xData.get(index) != x) {
+            return false;
         }
+        dataset.setLastY(y);
+        return true;
     }
 }
@@ -0,0 +1,439 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads numbers for a fixed set of key paths from lines containing JSON objects.
+ * A key path is a list of keys separated by dots, such as <code>latency.p99</code>.
+ * The scanner makes a single pass over the line, decoding only the values of requested keys
+ * and skipping everything else without building objects.
+ * Numbers are read directly into an array of values.
+ * Strings containing numbers are read as numbers, <code>true</code> and <code>false</code> are read as 1 and 0,
+ * and anything else is NaN.
+ * Numbers must follow the JSON grammar, in strings as well, so text such as <code>+1</code>, <code>.5</code>,
+ * <code>01</code> or <code>1d</code> is not a number.
+ * A line with anything but whitespace after the object is not a JSON object.
+ * <p>
+ * Instances are not thread-safe.
+ * @author Adam Crume
+ */
+class JsonScanner {
+    /** Root of the tree of requested keys. */
+    private final Node root = new Node(null);
+
+    /** Values of the key paths from the last line, indexed by column (1-based).  Reused for every line. */
+    private final double[] values;
+
+    /** Columns which repeat an earlier key path, and are copied from {@link #sources} after each line. */
+    private final int[] copies;
+
+    /** Column with the first occurrence of each key path in {@link #copies}. */
+    private final int[] sources;
+
+    /** Line being scanned. */
+    private String line;
+
+    /** Current position in {@link #line}. */
+    private int pos;
+
+
+    /**
+     * Creates a scanner.
+     * @param keyPaths key paths to read, where the value of <code>keyPaths[i]</code> goes in column <code>i + 1</code>
+     */
+    public JsonScanner(String[] keyPaths) {
+        values = new double[keyPaths.length + 1];
+        int[] copies = new int[keyPaths.length];
+        int[] sources = new int[keyPaths.length];
+        int n = 0;
+        for(int i = 0; i < keyPaths.length; i++) {
+            Node node = root;
+            for(String key : keyPaths[i].split("\\.")) {
+                node = node.child(key);
+            }
+            if(node.column == 0) {
+                node.column = i + 1;
+            } else {
+                // The same key path may be requested twice, such as for both X and Y.
+                copies[n] = i + 1;
+                sources[n] = node.column;
+                n++;
+            }
+        }
+        this.copies = Arrays.copyOf(copies, n);
+        this.sources = Arrays.copyOf(sources, n);
+    }
+
+
+    /**
+     * Scans a line.
+     * @param line the line
+     * @return values of the key paths, indexed by column (1-based), with NaN for missing keys,
+     *         or null if the line is not a JSON object.  The array is reused for the next line.
+     */
+    public double[] scan(String line) {
+        this.line = line;
+        pos = 0;
+        Arrays.fill(values, Double.NaN);
+        try {
+            skipWhitespace();
+            expect('{');
+            scanObject(root);
+            skipWhitespace();
+            if(pos != line.length()) {
+                return null;
+            }
+            for(int i = 0; i < copies.length; i++) {
+                values[copies[i]] = values[sources[i]];
+            }
+            return values;
+        } catch(IllegalArgumentException e) {
+            return null;
+        } catch(StringIndexOutOfBoundsException e) {
+            return null;
+        } finally {
+            this.line = null;
+        }
+    }
+
+
+    /**
+     * Scans an object, after its opening brace.
+     * @param node node for the object, or null if none of its keys are requested
+     */
+    private void scanObject(Node node) {
+        skipWhitespace();
+        if(line.charAt(pos) == '}') {
+            pos++;
+            return;
+        }
+        while(true) {
+            skipWhitespace();
+            expect('"');
+            int start = pos;
+            boolean escaped = skipString();
+            Node child = node == null ? null : node.find(line, start, pos - 1, escaped);
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            scanValue(child);
+            skipWhitespace();
+            char c = line.charAt(pos++);
+            if(c == '}') {
+                return;
+            } else if(c != ',') {
+                throw new IllegalArgumentException();
+            }
+        }
+    }
+
+
+    /**
+     * Scans an array, after its opening bracket.
+     * Array elements are never requested.
+     */
+    private void skipArray() {
+        skipWhitespace();
+        if(line.charAt(pos) == ']') {
+            pos++;
+            return;
+        }
+        while(true) {
+            skipWhitespace();
+            scanValue(null);
+            skipWhitespace();
+            char c = line.charAt(pos++);
+            if(c == ']') {
+                return;
+            } else if(c != ',') {
+                throw new IllegalArgumentException();
+            }
+        }
+    }
+
+
+    /**
+     * Scans a value.
+     * @param node node for the value, or null if it is not requested
+     */
+    private void scanValue(Node node) {
+        int column = node == null ? 0 : node.column;
+        char c = line.charAt(pos);
+        if(c == '{') {
+            pos++;
+            scanObject(node == null || node.children.isEmpty() ? null : node);
+        } else if(c == '[') {
+            pos++;
+            skipArray();
+        } else if(c == '"') {
+            pos++;
+            int start = pos;
+            boolean escaped = skipString();
+            if(column != 0 && !escaped) {
+                values[column] = parseNumber(start, pos - 1, false);
+            }
+        } else if(line.startsWith("true", pos)) {
+            pos += 4;
+            if(column != 0) {
+                values[column] = 1;
+            }
+        } else if(line.startsWith("false", pos)) {
+            pos += 5;
+            if(column != 0) {
+                values[column] = 0;
+            }
+        } else if(line.startsWith("null", pos)) {
+            pos += 4;
+        } else {
+            int start = pos;
+            while(pos < line.length() && "+-.0123456789eE".indexOf(line.charAt(pos)) != -1) {
+                pos++;
+            }
+            if(pos == start) {
+                throw new IllegalArgumentException();
+            }
+            if(column != 0) {
+                values[column] = parseNumber(start, pos, true);
+            }
+        }
+    }
+
+
+    /**
+     * Parses a number in the line.
+     * @param start index of the first character of the number
+     * @param end index after the last character of the number
+     * @param strict true to reject the line if the number is invalid, false to return NaN
+     * @return the number
+     */
+    private double parseNumber(int start, int end, boolean strict) {
+        if(!isNumber(start, end)) {
+            if(strict) {
+                throw new IllegalArgumentException();
+            }
+            return Double.NaN;
+        }
+        double value = DecimalParser.parse(line, start, end);
+        if(Double.isNaN(value)) {
+            // Exponents and long numbers are rare enough to allocate for.
+            try {
+                value = Double.parseDouble(line.substring(start, end));
+            } catch(NumberFormatException e) {
+                if(strict) {
+                    throw new IllegalArgumentException(e);
+                }
+            }
+        }
+        return value;
+    }
+
+
+    /**
+     * Checks that text in the line is a number in the JSON grammar.
+     * Both {@link DecimalParser} and {@link Double#parseDouble(String)} accept more than that.
+     * @param start index of the first character of the number
+     * @param end index after the last character of the number
+     * @return true if the text is a JSON number
+     */
+    private boolean isNumber(int start, int end) {
+        int i = start;
+        if(i < end && line.charAt(i) == '-') {
+            i++;
+        }
+        if(i < end && line.charAt(i) == '0') {
+            i++;
+        } else {
+            int digits = skipDigits(i, end);
+            if(digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        if(i < end && line.charAt(i) == '.') {
+            int digits = skipDigits(i + 1, end);
+            if(digits == i + 1) {
+                return false;
+            }
+            i = digits;
+        }
+        if(i < end && (line.charAt(i) == 'e' || line.charAt(i) == 'E')) {
+            i++;
+            if(i < end && (line.charAt(i) == '+' || line.charAt(i) == '-')) {
+                i++;
+            }
+            int digits = skipDigits(i, end);
+            if(digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        return i == end;
+    }
+
+
+    /**
+     * Skips digits in the line.
+     * @param start index to start at
+     * @param end index to stop at
+     * @return index of the first character which isn't a digit, or <code>end</code>
+     */
+    private int skipDigits(int start, int end) {
+        int i = start;
+        while(i < end && line.charAt(i) >= '0' && line.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+
+    /**
+     * Skips the rest of a string, after its opening quote.
+     * @return true if the string contains escapes
+     */
+    private boolean skipString() {
+        boolean escaped = false;
+        while(true) {
+            char c = line.charAt(pos++);
+            if(c == '"') {
+                return escaped;
+            } else if(c == '\\') {
+                escaped = true;
+                pos++;
+            }
+        }
+    }
+
+
+    private void skipWhitespace() {
+        while(pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+    }
+
+
+    private void expect(char c) {
+        if(line.charAt(pos++) != c) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+
+    /**
+     * Decodes the escapes in a JSON string.
+     * @param s the string, without quotes
+     * @return the decoded string
+     */
+    static String unescape(String s) {
+        StringBuilder b = new StringBuilder(s.length());
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                switch(c) {
+                case 'b':
+                    c = '\b';
+                    break;
+                case 'f':
+                    c = '\f';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                case 'u':
+                    if(i + 4 < s.length()) {
+                        c = (char) Integer.parseInt(s.substring(i + 1, i + 5), 16);
+                        i += 4;
+                    }
+                    break;
+                }
+            }
+            b.append(c);
+        }
+        return b.toString();
+    }
+
+
+    /**
+     * A requested key.
+     */
+    private static class Node {
+        /** The key, or null for the root. */
+        final String key;
+
+        /** Column for the key's value, or 0 if only its children are requested. */
+        int column;
+
+        /** Requested keys within the key's value. */
+        final List<Node> children = new ArrayList<Node>();
+
+
+        Node(String key) {
+            this.key = key;
+        }
+
+
+        Node child(String key) {
+            for(Node child : children) {
+                if(child.key.equals(key)) {
+                    return child;
+                }
+            }
+            Node child = new Node(key);
+            children.add(child);
+            return child;
+        }
+
+
+        /**
+         * Finds a child by the key's text in a line.
+         * @param line the line
+         * @param start index of the key's first character
+         * @param end index after the key's last character
+         * @param escaped true if the key contains escapes
+         * @return the child, or null if the key is not requested
+         */
+        Node find(String line, int start, int end, boolean escaped) {
+            if(escaped) {
+                String key = unescape(line.substring(start, end));
+                for(Node child : children) {
+                    if(child.key.equals(key)) {
+                        return child;
+                    }
+                }
+            } else {
+                int length = end - start;
+                for(int i = 0, n = children.size(); i < n; i++) {
+                    Node child = children.get(i);
+                    if(child.key.length() == length && line.regionMatches(start, child.key, 0, length)) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how long rows take to reach the plot, for the --latency option.
+ * X values are taken to be the times the lines were written, in milliseconds since the epoch,
+ * as written by {@link LoadGenerator}.
+ * Two latencies are measured: until a row is added to the datasets, and until the plot is next painted.
+ * All methods must be called on the Swing thread.
+ * @author Adam Crume
+ */
+class LatencyMonitor {
+    /** Wall clock time when the class was loaded, in milliseconds since the epoch. */
+    private static final long BASE_MILLIS = System.currentTimeMillis();
+
+    /** Value of {@link System#nanoTime()} when the class was loaded. */
+    private static final long BASE_NANOS = System.nanoTime();
+
+    /** Quantiles to report. */
+    private static final double[] QUANTILES = { .5, .9, .99, .999 };
+
+    /** Latency until rows are added to the datasets, since the last report. */
+    private final QuantileSketch datasetLatency = new QuantileSketch();
+
+    /** Latency until rows are painted, since the last report. */
+    private final QuantileSketch paintLatency = new QuantileSketch();
+
+    /** Maximum of {@link #datasetLatency}. */
+    private double maxDatasetLatency = Double.NaN;
+
+    /** Maximum of {@link #paintLatency}. */
+    private double maxPaintLatency = Double.NaN;
+
+    /** Times that rows added since the last paint were written. */
+    private double[] unpainted = new double[1024];
+
+    /** Number of valid entries in {@link #unpainted}. */
+    private int unpaintedCount;
+
+    /** Time of the last report, in milliseconds since the epoch. */
+    private double lastReport = currentTimeMillis();
+
+
+    /**
+     * Returns the wall clock time with sub-millisecond resolution.
+     * {@link System#currentTimeMillis()} may only be accurate to several milliseconds,
+     * so this measures time elapsed since the class was loaded with {@link System#nanoTime()}.
+     * @return current time in milliseconds since the epoch
+     */
+    static double currentTimeMillis() {
+        return BASE_MILLIS + (System.nanoTime() - BASE_NANOS) / 1e6;
+    }
+
+
+    /**
+     * Records that a row was added to the datasets.
+     * @param written time the row was written, in milliseconds since the epoch
+     */
+    public void added(double written) {
+        if(Double.isNaN(written)) {
+            return;
+        }
+        double latency = currentTimeMillis() - written;
+        datasetLatency.add(latency);
+        if(!(latency <= maxDatasetLatency)) {
+            maxDatasetLatency = latency;
+        }
+        if(unpaintedCount == unpainted.length) {
+            double[] tmp = new double[unpainted.length * 2];
+            System.arraycopy(unpainted, 0, tmp, 0, unpaintedCount);
+            unpainted = tmp;
+        }
+        unpainted[unpaintedCount++] = written;
+    }
+
+
+    /**
+     * Returns true if rows have been added since the plot was last painted.
+     * @return true if the plot needs to be painted
+     */
+    public boolean isDirty() {
+        return unpaintedCount > 0;
+    }
+
+
+    /**
+     * Records that the plot was painted, including all rows added so far.
+     */
+    public void painted() {
+        double now = currentTimeMillis();
+        for(int i = 0; i < unpaintedCount; i++) {
+            double latency = now - unpainted[i];
+            paintLatency.add(latency);
+            if(!(latency <= maxPaintLatency)) {
+                maxPaintLatency = latency;
+            }
+        }
+        unpaintedCount = 0;
+    }
+
+
+    /**
+     * Prints the latencies measured since the last report, and starts measuring again.
+     * @param out stream to print to
+     */
+    public void print(PrintStream out) {
+        double now = currentTimeMillis();
+        double seconds = (now - lastReport) / 1000;
+        lastReport = now;
+        NumberFormat format = new MultiscaleNumberFormat(new DecimalFormat("#.###"), new DecimalFormat("0.###E0"),
+                .001, 99999.5);
+        List<String[]> rows = new ArrayList<String[]>();
+        rows.add(new String[] { "Latency (ms)", "Rows", "Rows/s", "p50", "p90", "p99", "p99.9", "Max" });
+        rows.add(row("dataset", datasetLatency, maxDatasetLatency, seconds, format));
+        rows.add(row("paint", paintLatency, maxPaintLatency, seconds, format));
+        out.print(DataFile.formatTable(rows));
+        out.flush();
+        datasetLatency.clear();
+        paintLatency.clear();
+        maxDatasetLatency = Double.NaN;
+        maxPaintLatency = Double.NaN;
+    }
+
+
+    /**
+     * Formats a row of the report.
+     * @param name name of the latency
+     * @param sketch latencies
+     * @param max maximum latency
+     * @param seconds length of the reporting period in seconds
+     * @param format number format
+     * @return the row
+     */
+    private static String[] row(String name, QuantileSketch sketch, double max, double seconds, NumberFormat format) {
+        String[] row = new String[QUANTILES.length + 4];
+        long count = sketch.getCount();
+        row[0] = name;
+        row[1] = String.valueOf(count);
+        row[2] = seconds > 0 ? String.valueOf(Math.round(count / seconds)) : "-";
+        for(int i = 0; i < QUANTILES.length; i++) {
+            // The sketch is approximate, so don't let it exceed the exact maximum.
+            row[i + 3] = count == 0 ? "-" : format.format(Math.min(sketch.getQuantile(QUANTILES[i]), max));
+        }
+        row[row.length - 1] = count == 0 ? "-" : format.format(max);
+        return row;
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Accepts or rejects raw input lines before they are split into fields.
+ * Patterns without regex metacharacters are searched for as plain text, which is much cheaper than running the regex engine.
+ * @author Adam Crume
+ */
+class LineFilter {
+    /** Characters that give a regex special meaning. */
+    private static final String METACHARACTERS = "\\.[]{}()*+?^$|";
+
+    /** Text to search for, or null if {@link #matcher} is used. */
+    private final String literal;
+
+    /** Matcher for the regex, reused for every line, or null if {@link #literal} is used. */
+    private final Matcher matcher;
+
+    /** True if matching lines are rejected, false if only matching lines are accepted. */
+    private final boolean exclude;
+
+
+    /**
+     * Creates a filter.
+     * @param regex regex to search for in each line
+     * @param exclude true if matching lines are rejected, false if only matching lines are accepted
+     */
+    public LineFilter(String regex, boolean exclude) {
+        this.exclude = exclude;
+        boolean isLiteral = true;
+        for(int i = 0; i < regex.length(); i++) {
+            if(METACHARACTERS.indexOf(regex.charAt(i)) != -1) {
+                isLiteral = false;
+                break;
+            }
+        }
+        if(isLiteral) {
+            literal = regex;
+            matcher = null;
+        } else {
+            literal = null;
+            matcher = Pattern.compile(regex).matcher("");
+        }
+    }
+
+
+    /**
+     * Checks a line.
+     * @param line the line
+     * @return true if the line should be processed
+     */
+    public boolean accept(String line) {
+        boolean found;
+        if(literal != null) {
+            found = line.indexOf(literal) != -1;
+        } else {
+            found = matcher.reset(line).find();
+        }
+        return found != exclude;
+    }
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts fields from lines with a regex, where each capture group is a field.
+ * Lines that do not contain text every match requires are rejected without running the regex engine.
+ * @author Adam Crume
+ */
+class LinePattern {
+    /** The regex. */
+    private final Pattern pattern;
+
+    /** Text every match contains, or null if none is known. */
+    private final String requiredLiteral;
+
+    /** Names of the capture groups, indexed by group number.  Unnamed groups have null names. */
+    private final String[] groupNames;
+
+    /** Matchers for the regex, reused for every line read by a thread. */
+    private final ThreadLocal<Matcher> matchers = new ThreadLocal<Matcher>() {
+        @Override
+        protected Matcher initialValue() {
+            return pattern.matcher("");
+        }
+    };
+
+
+    /**
+     * Creates a line pattern.
+     * @param regex the regex
+     */
+    public LinePattern(String regex) {
+        pattern = Pattern.compile(regex);
+        requiredLiteral = requiredLiteral(regex);
+        String[] names = groupNames(regex);
+        if(names.length != pattern.matcher("").groupCount() + 1) {
+            // Our scan disagrees with the regex engine, so don't trust it.
+            names = new String[pattern.matcher("").groupCount() + 1];
+        }
+        groupNames = names;
+    }
+
+
+    /**
+     * Matches a line.
+     * The returned matcher is reused for the next line read by the current thread.
+     * @param line the line
+     * @return matcher positioned at the first match, or null if the line does not match
+     */
+    public Matcher match(String line) {
+        if(requiredLiteral != null && line.indexOf(requiredLiteral) == -1) {
+            return null;
+        }
+        Matcher matcher = matchers.get();
+        matcher.reset(line);
+        return matcher.find() ? matcher : null;
+    }
+
+
+    /**
+     * Returns the number of capture groups.
+     * @return the number of capture groups
+     */
+    public int getGroupCount() {
+        return groupNames.length - 1;
+    }
+
+
+    /**
+     * Returns the name of a capture group.
+     * @param group group number (1-based)
+     * @return the name of the group, or null if it is unnamed
+     */
+    public String getGroupName(int group) {
+        return groupNames[group];
+    }
+
+
+    /**
+     * Returns text every match of a regex contains.
+     * This is the longest run of plain characters outside of groups, and is only found if the regex has no
+     * alternation or flags at the top level.
+     * @param regex the regex
+     * @return text every match contains, or null if none is found
+     */
+    static String requiredLiteral(String regex) {
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        boolean lastWasLiteral = false;
+        int depth = 0;
+        int n = regex.length();
+        for(int i = 0; i < n; i++) {
+            char c = regex.charAt(i);
+            char literal = 0;
+            if(c == '\\') {
+                if(i + 1 == n) {
+                    return null;
+                }
+                char e = regex.charAt(++i);
+                if(e == 'Q') {
+                    return null;
+                }
+                if(depth == 0 && !Character.isLetterOrDigit(e)) {
+                    literal = e;
+                } else {
+                    // Other escapes break the run, including their operands, such as the digits of \x41.
+                    i = skipEscape(regex, i);
+                }
+            } else if(c == '[') {
+                i = skipCharacterClass(regex, i);
+            } else if(c == '(') {
+                if(i + 2 < n && regex.charAt(i + 1) == '?'
+                        && (Character.isLetter(regex.charAt(i + 2)) || regex.charAt(i + 2) == '-')) {
+                    // Inline flags, such as case insensitivity, change what literals match.
+                    return null;
+                }
+                depth++;
+            } else if(c == ')') {
+                depth--;
+            } else if(c == '|') {
+                if(depth == 0) {
+                    return null;
+                }
+            } else if(depth == 0 && (c == '*' || c == '?' || c == '{')) {
+                if(lastWasLiteral) {
+                    // The previous character may not be present.
+                    run.setLength(run.length() - 1);
+                }
+                if(c == '{') {
+                    int end = regex.indexOf('}', i);
+                    i = end == -1 ? n : end;
+                }
+            } else if(depth == 0 && ".^$*+?{}".indexOf(c) == -1) {
+                literal = c;
+            }
+            if(literal != 0) {
+                run.append(literal);
+                lastWasLiteral = true;
+            } else {
+                if(run.length() > best.length()) {
+                    best = run.toString();
+                }
+                run.setLength(0);
+                lastWasLiteral = false;
+            }
+        }
+        if(run.length() > best.length()) {
+            best = run.toString();
+        }
+        return best.isEmpty() ? null : best;
+    }
+
+
+    /**
+     * Returns the names of the capture groups in a regex.
+     * @param regex the regex
+     * @return names of the groups, indexed by group number (starting at 1), with null for unnamed groups
+     */
+    static String[] groupNames(String regex) {
+        List<String> names = new ArrayList<String>();
+        names.add(null);
+        int n = regex.length();
+        for(int i = 0; i < n; i++) {
+            char c = regex.charAt(i);
+            if(c == '\\') {
+                if(i + 1 < n && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    i = end == -1 ? n : end + 1;
+                } else if(i + 1 < n) {
+                    i = skipEscape(regex, i + 1);
+                } else {
+                    i++;
+                }
+            } else if(c == '[') {
+                i = skipCharacterClass(regex, i);
+            } else if(c == '(') {
+                if(i + 1 < n && regex.charAt(i + 1) == '?') {
+                    if(i + 3 < n && regex.charAt(i + 2) == '<' && Character.isLetter(regex.charAt(i + 3))) {
+                        int end = regex.indexOf('>', i + 3);
+                        if(end != -1) {
+                            names.add(regex.substring(i + 3, end));
+                        }
+                    }
+                } else {
+                    names.add(null);
+                }
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+
+    /**
+     * Skips over an escape sequence, including operands such as the digits of \x41 and \0101,
+     * the control character of \cA, and the name of \k&lt;name&gt;.
+     * @param regex the regex
+     * @param start index of the character after the backslash
+     * @return index of the last character of the escape sequence
+     */
+    private static int skipEscape(String regex, int start) {
+        int last = regex.length() - 1;
+        char e = regex.charAt(start);
+        if(Character.isLetter(e) && start < last && regex.charAt(start + 1) == '{') {
+            // \x{...}, \p{...}, and \N{...}, or a quantifier following a class such as \d, which is skipped anyway
+            int end = regex.indexOf('}', start);
+            return end == -1 ? last : end;
+        }
+        switch(e) {
+        case 'x':
+            return Math.min(last, start + 2);
+        case 'u':
+            return Math.min(last, start + 4);
+        case 'c':
+        case 'p':
+        case 'P':
+            return Math.min(last, start + 1);
+        case 'k':
+            int end = regex.indexOf('>', start);
+            return end == -1 ? last : end;
+        case '0':
+            // Up to three octal digits, the first of which must be at most 3 if there are three.
+            int maxDigits = start < last && regex.charAt(start + 1) <= '3' ? 3 : 2;
+            int i = start;
+            while(i - start < maxDigits && i < last && regex.charAt(i + 1) >= '0' && regex.charAt(i + 1) <= '7') {
+                i++;
+            }
+            return i;
+        default:
+            if(e >= '1' && e <= '9') {
+                // Back references may have more than one digit.
+                i = start;
+                while(i < last && Character.isDigit(regex.charAt(i + 1))) {
+                    i++;
+                }
+                return i;
+            }
+            return start;
+        }
+    }
+
+
+    /**
+     * Skips over a character class.
+     * @param regex the regex
+     * @param start index of the opening bracket
+     * @return index of the closing bracket
+     */
+    private static int skipCharacterClass(String regex, int start) {
+        int i = start + 1;
+        int depth = 1;
+        if(i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if(i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        for(; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(c == '[') {
+                depth++;
+            } else if(c == ']') {
+                if(--depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,351 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes synthetic data at a controlled rate, for load testing TailPlot.
+ * Each line starts with the time it was written, so TailPlot can measure latency with --latency.
+ * @author Adam Crume
+ */
+public class LoadGenerator implements Runnable {
+    /** Number of lines written between flushes when there is no rate limit. */
+    private static final int UNLIMITED_BATCH = 1000;
+
+    /** File to write, or null for standard output. */
+    private final File file;
+
+    /** Lines per second, or 0 for no limit. */
+    private double rate = 1000;
+
+    /** Number of value fields after the timestamp. */
+    private int width = 4;
+
+    /** Output format: space, csv or json. */
+    private String format = "space";
+
+    /** Number of lines to write, or -1 for no limit. */
+    private long lines = -1;
+
+    /** Milliseconds to run for, or 0 for no limit. */
+    private long duration;
+
+    /** Number of lines after which the file is rotated, or 0 to never rotate. */
+    private long rotate;
+
+    /** True if files are rotated by truncating them, false if by renaming them. */
+    private boolean truncate;
+
+    /** Random walk of each field. */
+    private double[] values;
+
+    /** Generates the steps of the random walks. */
+    private final Random random = new Random();
+
+    /** Number of lines written. */
+    private long written;
+
+    /** Destination of the lines. */
+    private Writer out;
+
+
+    /**
+     * Creates a generator.
+     * @param file file to write, or null for standard output
+     */
+    LoadGenerator(File file) {
+        this.file = file;
+    }
+
+
+    public static void main(String[] args) {
+        List<File> files = new ArrayList<File>();
+        List<String> options = new ArrayList<String>();
+        for(String arg : args) {
+            if(arg.equals("--help") || arg.equals("-h")) {
+                usage(null);
+            } else if(arg.equals("-")) {
+                files.add(null);
+            } else if(arg.startsWith("-")) {
+                options.add(arg);
+            } else {
+                files.add(new File(arg));
+            }
+        }
+        if(files.isEmpty()) {
+            files.add(null);
+        }
+        List<Thread> threads = new ArrayList<Thread>();
+        for(File file : files) {
+            LoadGenerator generator = new LoadGenerator(file);
+            for(String option : options) {
+                generator.parseOption(option);
+            }
+            Thread thread = new Thread(generator, "LoadGenerator " + (file == null ? "stdout" : file.getPath()));
+            threads.add(thread);
+        }
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            for(Thread thread : threads) {
+                thread.join();
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    static void usage(String msg) {
+        if(msg != null) {
+            System.err.println(msg);
+        }
+        System.err.println("Usage: LoadGenerator [options] [file ...]");
+        System.err.println("Writes synthetic data at a controlled rate, for load testing TailPlot.");
+        System.err.println("If no file is specified, or a file is '-', standard output is written.  Each file is written by its own thread.");
+        System.err.println("Each line starts with the time it was written, in milliseconds since the epoch, followed by the value fields.");
+        System.err.println();
+        System.err.println("Options:");
+        System.err.println("      --rate=N                  lines per second for each file, or 0 for as fast as possible (default: 1000)");
+        System.err.println("      --width=N                 number of value fields after the timestamp (default: 4)");
+        System.err.println("      --format=FMT              space, csv, or json (default: space).  With json, the timestamp has key 'sent' and the fields 'f1', 'f2', ...");
+        System.err.println("      --lines=N                 stop after writing N lines to each file");
+        System.err.println("      --duration=SECS           stop after SECS seconds");
+        System.err.println("      --rotate=N                rotate each file after every N lines");
+        System.err.println("      --rotate-mode=MODE        rename (move the file to FILE.1 and start a new file) or truncate (truncate the file in place) (default: rename)");
+        System.err.println("      --help                    display this message");
+        System.err.println();
+        System.err.println("Examples:");
+        System.err.println("  Measure latency at 10,000 lines per second");
+        System.err.println("    LoadGenerator --rate=10000 | TailPlot --x=1 --latency=5");
+        System.err.println();
+        System.err.println("  Follow two files that are rotated every 100,000 lines");
+        System.err.println("    LoadGenerator --rate=5000 --rotate=100000 a.txt b.txt &");
+        System.err.println("    TailPlot a.txt --x=1 b.txt --x=1 --latency=5");
+        System.exit(1);
+    }
+
+
+    /**
+     * Applies a command line option.
+     * @param option the option
+     */
+    private void parseOption(String option) {
+        try {
+            if(option.startsWith("--rate=")) {
+                rate = Double.parseDouble(option.substring("--rate=".length()));
+                if(rate < 0) {
+                    usage("Invalid rate: " + option);
+                }
+            } else if(option.startsWith("--width=")) {
+                width = Integer.parseInt(option.substring("--width=".length()));
+                if(width < 1) {
+                    usage("Invalid width: " + option);
+                }
+            } else if(option.startsWith("--format=")) {
+                format = option.substring("--format=".length());
+                if(!format.equals("space") && !format.equals("csv") && !format.equals("json")) {
+                    usage("Invalid format: " + option);
+                }
+            } else if(option.startsWith("--lines=")) {
+                lines = Long.parseLong(option.substring("--lines=".length()));
+                if(lines < 0) {
+                    usage("Invalid number of lines: " + option);
+                }
+            } else if(option.startsWith("--duration=")) {
+                duration = (long) (Double.parseDouble(option.substring("--duration=".length())) * 1000);
+                if(duration <= 0) {
+                    usage("Invalid duration: " + option);
+                }
+            } else if(option.startsWith("--rotate=")) {
+                rotate = Long.parseLong(option.substring("--rotate=".length()));
+                if(rotate <= 0) {
+                    usage("Invalid number of lines: " + option);
+                }
+            } else if(option.startsWith("--rotate-mode=")) {
+                String mode = option.substring("--rotate-mode=".length());
+                if(mode.equals("truncate")) {
+                    truncate = true;
+                } else if(!mode.equals("rename")) {
+                    usage("Invalid rotate mode: " + option);
+                }
+            } else {
+                usage("Unrecognized option: " + option);
+            }
+        } catch(NumberFormatException e) {
+            usage("Invalid number: " + option);
+        }
+        if(rotate > 0 && file == null) {
+            usage("--rotate cannot be used with standard output");
+        }
+    }
+
+
+    @Override
+    public void run() {
+        values = new double[width];
+        long startNanos = System.nanoTime();
+        try {
+            open();
+            try {
+                while(lines < 0 || written < lines) {
+                    long elapsed = System.nanoTime() - startNanos;
+                    if(duration > 0 && elapsed >= duration * 1000000) {
+                        break;
+                    }
+                    long due;
+                    if(rate == 0) {
+                        due = written + UNLIMITED_BATCH;
+                    } else {
+                        due = (long) (elapsed / 1e9 * rate);
+                    }
+                    if(lines >= 0) {
+                        due = Math.min(due, lines);
+                    }
+                    if(due <= written) {
+                        try {
+                            Thread.sleep(1);
+                        } catch(InterruptedException e) {
+                            break;
+                        }
+                        continue;
+                    }
+                    StringBuilder b = new StringBuilder();
+                    while(written < due) {
+                        b.setLength(0);
+                        formatLine(b);
+                        out.append(b);
+                        written++;
+                        if(rotate > 0 && written % rotate == 0) {
+                            rotate();
+                        }
+                    }
+                    // Lines must reach the reader promptly, or the measured latency includes buffering here.
+                    out.flush();
+                }
+            } finally {
+                out.close();
+            }
+        } catch(IOException e) {
+            // Standard output was probably closed by the reader.
+            if(file != null) {
+                e.printStackTrace();
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.err.println((file == null ? "<standard output>" : file.getPath()) + ": wrote " + written + " lines in "
+                + Math.round(seconds * 1000) / 1000.0 + " seconds (" + Math.round(written / seconds) + " lines/s)");
+    }
+
+
+    /**
+     * Opens {@link #out}, truncating the file.
+     * @throws IOException if the file cannot be opened
+     */
+    private void open() throws IOException {
+        OutputStream stream;
+        if(file == null) {
+            stream = new FileOutputStream(FileDescriptor.out);
+        } else {
+            stream = new FileOutputStream(file);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 65536);
+    }
+
+
+    /**
+     * Rotates the file.
+     * @throws IOException if the file cannot be rotated
+     */
+    private void rotate() throws IOException {
+        out.close();
+        if(!truncate) {
+            File rotated = new File(file.getPath() + ".1");
+            if(rotated.exists() && !rotated.delete()) {
+                throw new IOException("Unable to delete " + rotated);
+            }
+            if(!file.renameTo(rotated)) {
+                throw new IOException("Unable to rename " + file + " to " + rotated);
+            }
+        }
+        open();
+    }
+
+
+    /**
+     * Formats the next line, including the line terminator.
+     * @param b buffer to append to
+     */
+    private void formatLine(StringBuilder b) {
+        for(int i = 0; i < width; i++) {
+            values[i] += random.nextGaussian();
+        }
+        double sent = LatencyMonitor.currentTimeMillis();
+        if(format.equals("json")) {
+            b.append("{\"sent\":");
+            appendFixed(b, sent);
+            for(int i = 0; i < width; i++) {
+                b.append(",\"f").append(i + 1).append("\":");
+                appendFixed(b, values[i]);
+            }
+            b.append('}');
+        } else {
+            char separator = format.equals("csv") ? ',' : ' ';
+            appendFixed(b, sent);
+            for(int i = 0; i < width; i++) {
+                b.append(separator);
+                appendFixed(b, values[i]);
+            }
+        }
+        b.append('\n');
+    }
+
+
+    /**
+     * Appends a number with three decimal places.
+     * This is much faster than {@link Double#toString(double)}, which would limit the rate for wide lines.
+     * @param b buffer to append to
+     * @param value number to append
+     */
+    static void appendFixed(StringBuilder b, double value) {
+        long thousandths = Math.round(value * 1000);
+        if(thousandths < 0) {
+            b.append('-');
+            thousandths = -thousandths;
+        }
+        b.append(thousandths / 1000).append('.');
+        long fraction = thousandths % 1000;
+        if(fraction < 100) {
+            b.append('0');
+        }
+        if(fraction < 10) {
+            b.append('0');
+        }
+        b.append(fraction);
+    }
+}
@@ -39,6 +39,9 @@ import plotter.tail.XYPlotFrame.AxisListener;
 import plotter.xy.XYAxis;
 
 abstract class MetaAxis implements AxisListener {
+    /** Name of the axis, such as "X". */
+    private final String name;
+
     private XYAxis axis;
 
     private NumberFormat format = new MultiscaleNumberFormat();
@@ -59,6 +62,9 @@ abstract class MetaAxis implements AxisListener {
 
     private double scrollWidth = Double.NaN;
 
+    /** Chooses the autoscaled range if hysteresis is enabled, or null to fit the data on every update. */
+    private AutoscaleHysteresis hysteresis;
+
     // These *AutomaticallyUpdated fields are set to true before we change the value,
     // and set to false afterward (so the PropertyChangeListeners know to ignore the
     // update).  We can't rely on the PropertyChangeListeners on the text fields to
@@ -72,6 +78,9 @@ abstract class MetaAxis implements AxisListener {
 
     protected JFormattedTextField maxText;
 
+    /** True if autoscaling changed the range since the text fields were last updated. */
+    private boolean textStale;
+
     private NumberFormat minmaxTextFormat;
     {
         NumberFormat plainFormat = new DecimalFormat("#.#########");
@@ -103,6 +112,24 @@ abstract class MetaAxis implements AxisListener {
     }
 
 
+    /**
+     * Creates a meta axis.
+     * @param name name of the axis, such as "X"
+     */
+    MetaAxis(String name) {
+        this.name = name;
+    }
+
+
+    /**
+     * Returns the name of the axis.
+     * @return the name of the axis, such as "X"
+     */
+    public String getName() {
+        return name;
+    }
+
+
     public abstract List<DoubleData> getDatasets();
 
 
@@ -114,6 +141,10 @@ abstract class MetaAxis implements AxisListener {
             @Override
             public void actionPerformed(ActionEvent e) {
                 commitMinMax();
+                if(!autoScaleCheckBox.isSelected()) {
+                    // Show the current range right away, since the user may be about to edit it.
+                    updateText();
+                }
             }
         });
         return autoScaleCheckBox;
@@ -248,6 +279,9 @@ abstract class MetaAxis implements AxisListener {
     public void resetMinMax() {
         min = Double.POSITIVE_INFINITY;
         max = Double.NEGATIVE_INFINITY;
+        if(hysteresis != null) {
+            hysteresis.reset();
+        }
         if(axis != null && isAutoscale()) {
             axis.setStart(0);
             axis.setEnd(1);
@@ -267,31 +301,78 @@ abstract class MetaAxis implements AxisListener {
 
     public void commitMinMax() {
         if(min != Double.POSITIVE_INFINITY && isAutoscale()) {
-            autoMinMax();
+            autoMinMax(false);
         }
     }
 
 
     private void autoMinMax() {
+        autoMinMax(true);
+    }
+
+
+    /**
+     * Sets the axis range to fit the data.
+     * @param force if false, nothing is done if the range is unchanged
+     */
+    private void autoMinMax(boolean force) {
         double min = this.min;
         if(!Double.isNaN(scrollWidth)) {
             min = max - scrollWidth;
         }
-        double margin = .1 * (max - min);
-        axis.setStart(min - margin);
-        axis.setEnd(max + margin);
+        double start;
+        double end;
+        if(hysteresis != null && min <= max) {
+            if(force) {
+                hysteresis.reset();
+            }
+            hysteresis.update(min, max, isScrolling());
+            start = hysteresis.getStart();
+            end = hysteresis.getEnd();
+        } else {
+            double margin = .1 * (max - min);
+            start = min - margin;
+            end = max + margin;
+        }
+        if(!force && axis.getStart() == start && axis.getEnd() == end) {
+            // New points are within the current range, and their plot lines have already repainted them,
+            // so there's no need to repaint the whole plot.
+            return;
+        }
+        axis.setStart(start);
+        axis.setEnd(end);
+        // The text fields are updated by updateText, which is called at a low rate.
+        textStale = true;
+        minMaxUpdated();
+    }
+
+
+    /**
+     * Copies the axis range into the min/max text fields, if autoscaling has changed it since they were last updated.
+     */
+    public void updateText() {
+        if(textStale && minText != null && axis != null) {
+            setText();
+        }
+    }
+
+
+    /**
+     * Copies the axis range into the min/max text fields.
+     */
+    private void setText() {
         minTextAutomaticallyUpdated = true;
         maxTextAutomaticallyUpdated = true;
         if(logscale) {
-            minText.setValue(Math.pow(10, min - margin));
-            maxText.setValue(Math.pow(10, max + margin));
+            minText.setValue(Math.pow(10, axis.getStart()));
+            maxText.setValue(Math.pow(10, axis.getEnd()));
         } else {
-            minText.setValue(min - margin);
-            maxText.setValue(max + margin);
+            minText.setValue(axis.getStart());
+            maxText.setValue(axis.getEnd());
         }
         minTextAutomaticallyUpdated = false;
         maxTextAutomaticallyUpdated = false;
-        minMaxUpdated();
+        textStale = false;
     }
 
 
@@ -370,11 +451,20 @@ abstract class MetaAxis implements AxisListener {
         boolean oldlogscale = this.logscale;
         this.logscale = logscale;
         if(logscale != oldlogscale) {
+            Events events = Events.get();
+            Object event = events.beginLogscale();
             if(logscale) {
                 makeLog();
             } else {
                 makeLinear();
             }
+            if(event != null) {
+                long points = 0;
+                for(DoubleData data : getDatasets()) {
+                    points += data.getLength();
+                }
+                events.endLogscale(event, name, logscale, points);
+            }
             logscaleUpdated(logscale);
         }
     }
@@ -388,18 +478,26 @@ abstract class MetaAxis implements AxisListener {
     }
 
 
+    /**
+     * Sets whether autoscaling uses hysteresis, so the range only changes in round steps when the data leaves it.
+     * @param enabled true to enable hysteresis
+     */
+    public void setHysteresis(boolean enabled) {
+        hysteresis = enabled ? new AutoscaleHysteresis() : null;
+    }
+
+
+    /**
+     * Returns true if the axis scrolls to show a fixed amount of the most recent data.
+     * @return true if a scroll width is set
+     */
+    public boolean isScrolling() {
+        return !Double.isNaN(scrollWidth);
+    }
+
+
     private void axisManipulated() {
-        minTextAutomaticallyUpdated = true;
-        maxTextAutomaticallyUpdated = true;
-        if(logscale) {
-            minText.setValue(Math.pow(10, axis.getStart()));
-            maxText.setValue(Math.pow(10, axis.getEnd()));
-        } else {
-            minText.setValue(axis.getStart());
-            maxText.setValue(axis.getEnd());
-        }
-        minTextAutomaticallyUpdated = false;
-        maxTextAutomaticallyUpdated = false;
+        setText();
         autoScaleCheckBox.setSelected(false);
     }
 
@@ -0,0 +1,304 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+
+/**
+ * Runtime metrics for the plot as a whole.
+ * Metrics for individual files are in {@link FileMetrics}.
+ * @author Adam Crume
+ */
+class Metrics implements MetricsMBean {
+    /** JMX domain of the MBeans. */
+    private static final String DOMAIN = "plotter.tail";
+
+    /** Number of instances created, used to give each plot's MBeans unique names. */
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    /** Identifies this plot's MBeans. */
+    private final int instance = instances.incrementAndGet();
+
+    /** Names of the registered MBeans. */
+    private final List<ObjectName> registered = new ArrayList<ObjectName>();
+
+    /** Time to add a batch of rows to the plot, in milliseconds. */
+    private final Histogram batchApply = new Histogram();
+
+    /** Time to paint the plot, in milliseconds. */
+    private final Histogram paint = new Histogram();
+
+
+    /**
+     * Records the time taken to add a batch of rows to the plot.
+     * @param nanos time in nanoseconds
+     */
+    public void batchApplied(long nanos) {
+        batchApply.add(nanos / 1e6);
+    }
+
+
+    /**
+     * Records the time taken to paint the plot.
+     * @param nanos time in nanoseconds
+     */
+    public void painted(long nanos) {
+        paint.add(nanos / 1e6);
+    }
+
+
+    /**
+     * Samples values derived from the plot.
+     * Must be called on the Swing thread.
+     * @param dataFiles files being plotted
+     */
+    public void update(List<DataFile> dataFiles) {
+        for(DataFile dataFile : dataFiles) {
+            dataFile.getMetrics().update(dataFile.getFields());
+        }
+    }
+
+
+    /**
+     * Returns the metrics as rows of a table with the metric name and its value.
+     * Must be called on the Swing thread.
+     * @param dataFiles files being plotted
+     * @return rows of the table
+     */
+    public List<String[]> getRows(List<DataFile> dataFiles) {
+        NumberFormat format = new DecimalFormat("#,##0.###");
+        NumberFormat countFormat = new DecimalFormat("#,##0");
+        List<String[]> rows = new ArrayList<String[]>();
+        for(DataFile dataFile : dataFiles) {
+            FileMetrics m = dataFile.getMetrics();
+            String name = dataFile.getFile() == null ? "<standard input>" : dataFile.getFile().getName();
+            rows.add(new String[] { name + " lines/s", countFormat.format(m.getLinesPerSecond()) });
+            rows.add(new String[] { name + " lines", countFormat.format(m.getLinesRead()) });
+            rows.add(new String[] { name + " bytes", countFormat.format(m.getBytesRead()) });
+            rows.add(new String[] { name + " parse errors", countFormat.format(m.getParseErrors()) });
+            rows.add(new String[] { name + " queue depth (peak)",
+                    countFormat.format(m.getQueueDepth()) + " (" + countFormat.format(m.getPeakQueueDepth()) + ")" });
+            for(Field field : dataFile.getFields()) {
+                PlotDataset dataset = field.getDataset();
+                if(dataset != null) {
+                    int points = dataset.getPointCount();
+                    rows.add(new String[] { field.getName() + " points (KB)",
+                            countFormat.format(points) + " ("
+                                    + countFormat.format((long) points * FileMetrics.BYTES_PER_POINT / 1024) + ")" });
+                }
+            }
+        }
+        rows.add(new String[] { "Batch apply ms, mean (p99, max)", formatTimes(batchApply, format) });
+        rows.add(new String[] { "Paint ms, mean (p99, max)", formatTimes(paint, format) });
+        rows.add(new String[] { "Heap used MB", countFormat.format(getHeapUsedBytes() / (1024 * 1024)) });
+        return rows;
+    }
+
+
+    /**
+     * Formats the mean, 99th percentile, and maximum of a histogram.
+     * @param histogram histogram to format
+     * @param format number format
+     * @return the formatted values, or "-" if the histogram is empty
+     */
+    private static String formatTimes(Histogram histogram, NumberFormat format) {
+        synchronized(histogram) {
+            if(histogram.getCount() == 0) {
+                return "-";
+            }
+            return format.format(histogram.getMean()) + " (" + format.format(histogram.getQuantile(.99)) + ", "
+                    + format.format(histogram.getMax()) + ")";
+        }
+    }
+
+
+    /**
+     * Registers MBeans for the plot and each file with the platform MBean server.
+     * The names include an instance key, so more than one plot can be registered in the same JVM.
+     * Failures are reported but otherwise ignored, since metrics are not essential.
+     * @param dataFiles files being plotted
+     */
+    public void register(List<DataFile> dataFiles) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new StandardMBean(this, MetricsMBean.class),
+                    new ObjectName(DOMAIN + ":type=TailPlot,instance=" + instance));
+            for(DataFile dataFile : dataFiles) {
+                String name = dataFile.getFile() == null ? "<standard input>" : dataFile.getFile().getPath();
+                register(server, new StandardMBean(dataFile.getMetrics(), FileMetricsMBean.class),
+                        new ObjectName(DOMAIN + ":type=DataFile,instance=" + instance + ",index=" + dataFile.getIndex()
+                                + ",name=" + ObjectName.quote(name)));
+            }
+        } catch(JMException e) {
+            System.err.println("Unable to register MBeans: " + e);
+        }
+    }
+
+
+    private void register(MBeanServer server, StandardMBean mbean, ObjectName name) throws JMException {
+        server.registerMBean(mbean, name);
+        registered.add(name);
+    }
+
+
+    /**
+     * Unregisters the MBeans registered by {@link #register(List)}.
+     * Failures are reported but otherwise ignored.
+     */
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for(ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch(JMException e) {
+                System.err.println("Unable to unregister MBean " + name + ": " + e);
+            }
+        }
+        registered.clear();
+    }
+
+
+    @Override
+    public long getBatchesApplied() {
+        return batchApply.getCount();
+    }
+
+
+    @Override
+    public double getBatchApplyMeanMillis() {
+        return batchApply.getMean();
+    }
+
+
+    @Override
+    public double getBatchApplyP99Millis() {
+        return batchApply.getQuantile(.99);
+    }
+
+
+    @Override
+    public double getBatchApplyMaxMillis() {
+        return batchApply.getMax();
+    }
+
+
+    @Override
+    public long getFramesPainted() {
+        return paint.getCount();
+    }
+
+
+    @Override
+    public double getPaintMeanMillis() {
+        return paint.getMean();
+    }
+
+
+    @Override
+    public double getPaintP99Millis() {
+        return paint.getQuantile(.99);
+    }
+
+
+    @Override
+    public double getPaintMaxMillis() {
+        return paint.getMax();
+    }
+
+
+    @Override
+    public long getHeapUsedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+
+    /**
+     * Distribution of a measurement.
+     * Values are added once per batch or frame rather than per line, so an uncontended lock is cheap enough.
+     */
+    static class Histogram {
+        /** Distribution of the values. */
+        private final QuantileSketch sketch = new QuantileSketch();
+
+        /** Sum of the values. */
+        private double sum;
+
+        /** Largest value, or NaN if there are none. */
+        private double max = Double.NaN;
+
+
+        /**
+         * Adds a value.
+         * @param value value to add
+         */
+        public synchronized void add(double value) {
+            sketch.add(value);
+            sum += value;
+            if(!(value <= max)) {
+                max = value;
+            }
+        }
+
+
+        /**
+         * Returns the number of values.
+         * @return the number of values
+         */
+        public synchronized long getCount() {
+            return sketch.getCount();
+        }
+
+
+        /**
+         * Returns the mean of the values.
+         * @return the mean, or NaN if there are no values
+         */
+        public synchronized double getMean() {
+            return sum / sketch.getCount();
+        }
+
+
+        /**
+         * Returns the approximate value at a quantile.
+         * @param q quantile, between 0 and 1
+         * @return value at the quantile, or NaN if there are no values
+         */
+        public synchronized double getQuantile(double q) {
+            return Math.min(sketch.getQuantile(q), max);
+        }
+
+
+        /**
+         * Returns the largest value.
+         * @return the largest value, or NaN if there are no values
+         */
+        public synchronized double getMax() {
+            return max;
+        }
+    }
+}
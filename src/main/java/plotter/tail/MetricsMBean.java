@@ -0,0 +1,85 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+/**
+ * JMX view of {@link Metrics}.
+ * Times are cumulative since TailPlot started.
+ * @author Adam Crume
+ */
+public interface MetricsMBean {
+    /**
+     * Returns the number of batches of rows added to the plot on the Swing thread.
+     * @return number of batches
+     */
+    long getBatchesApplied();
+
+
+    /**
+     * Returns the mean time to add a batch of rows to the plot.
+     * @return mean time in milliseconds, or NaN if no batches have been added
+     */
+    double getBatchApplyMeanMillis();
+
+
+    /**
+     * Returns the 99th percentile time to add a batch of rows to the plot.
+     * @return time in milliseconds, or NaN if no batches have been added
+     */
+    double getBatchApplyP99Millis();
+
+
+    /**
+     * Returns the longest time to add a batch of rows to the plot.
+     * @return time in milliseconds, or NaN if no batches have been added
+     */
+    double getBatchApplyMaxMillis();
+
+
+    /**
+     * Returns the number of times the plot has been painted.
+     * @return number of frames
+     */
+    long getFramesPainted();
+
+
+    /**
+     * Returns the mean time to paint the plot.
+     * @return mean time in milliseconds, or NaN if the plot has not been painted
+     */
+    double getPaintMeanMillis();
+
+
+    /**
+     * Returns the 99th percentile time to paint the plot.
+     * @return time in milliseconds, or NaN if the plot has not been painted
+     */
+    double getPaintP99Millis();
+
+
+    /**
+     * Returns the longest time to paint the plot.
+     * @return time in milliseconds, or NaN if the plot has not been painted
+     */
+    double getPaintMaxMillis();
+
+
+    /**
+     * Returns the amount of heap in use.
+     * @return heap in use, in bytes
+     */
+    long getHeapUsedBytes();
+}
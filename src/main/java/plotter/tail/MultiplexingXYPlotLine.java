@@ -17,6 +17,7 @@ limitations under the License.
 package plotter.tail;
 
 import java.awt.Color;
+import java.awt.Container;
 import java.awt.GridLayout;
 import java.awt.Shape;
 import java.awt.Stroke;
@@ -39,6 +40,18 @@ public class MultiplexingXYPlotLine extends XYPlotLine {
 
     private boolean switched;
 
+    /** Incremented when data is removed or changed in place. */
+    private int modCount;
+
+    /** Index of the first point added or changed since the last {@link #flushRepaint()}, or -1. */
+    private int repaintFrom = -1;
+
+    /** Index of a point whose Y value was replaced since it was last repainted, or -1. */
+    private int replacedIndex = -1;
+
+    /** Y value of {@link #replacedIndex} when it was last repainted. */
+    private double replacedY;
+
 
     public MultiplexingXYPlotLine(XYAxis xAxis, XYAxis yAxis, XYDimension independentDimension) {
         this.xAxis = xAxis;
@@ -71,10 +84,163 @@ public class MultiplexingXYPlotLine extends XYPlotLine {
             if(x < prevX) {
                 scatter();
             }
+            dataAdded(Math.min(x, prevX), Math.max(x, prevX));
+        } else {
+            dataAdded(x, x);
+        }
+    }
+
+
+    /**
+     * Adds points.
+     * This is equivalent to calling {@link #add(double, double)} for each point,
+     * but the data arrays grow at most once, and the points are not repainted until {@link #flushRepaint()}.
+     * @param x X values
+     * @param y Y values
+     * @param off index of the first point in the arrays
+     * @param len number of points
+     */
+    public void append(double[] x, double[] y, int off, int len) {
+        if(len == 0) {
+            return;
+        }
+        DoubleData xData = delegate.getXData();
+        DoubleData yData = delegate.getYData();
+        int start = xData.getLength();
+        boolean increasing = true;
+        double prevX = start > 0 ? xData.get(start - 1) : Double.NaN;
+        double minX = start > 0 ? prevX : x[off];
+        double maxX = minX;
+        for(int i = off; i < off + len; i++) {
+            double xi = x[i];
+            if(xi < prevX) {
+                increasing = false;
+            }
+            if(xi < minX) {
+                minX = xi;
+            }
+            if(xi > maxX) {
+                maxX = xi;
+            }
+            prevX = xi;
+        }
+        xData.add(x, off, len);
+        yData.add(y, off, len);
+        if(!increasing) {
+            scatter();
+        }
+        markDirty(start);
+        dataAdded(minX, maxX);
+    }
+
+
+    /**
+     * Changes the Y value of the last point, which must exist.
+     * Only the last point is changed in place, so caches of projected points only need to project it again.
+     * Rendered tiles and scrolled rasters are told about it as if the point were added again.
+     * The point is not repainted until {@link #flushRepaint()}.
+     * @param y new Y value
+     */
+    public void setLastY(double y) {
+        DoubleData xData = delegate.getXData();
+        DoubleData yData = delegate.getYData();
+        int index = xData.getLength() - 1;
+        if(replacedIndex == -1 && (repaintFrom == -1 || index < repaintFrom)) {
+            // The point has been painted, so where it was must be repainted as well as where it is now.
+            replacedIndex = index;
+            replacedY = yData.get(index);
+        }
+        yData.set(index, y);
+        markDirty(index);
+        double x = xData.get(index);
+        // Include the previous point, since the line segment connecting to it moved too.
+        double prevX = index > 0 ? xData.get(index - 1) : x;
+        dataAdded(Math.min(x, prevX), Math.max(x, prevX));
+    }
+
+
+    /**
+     * Records that points were added or changed, so they are repainted by the next {@link #flushRepaint()}.
+     * @param index index of the first point added or changed; all points after it are repainted too
+     */
+    private void markDirty(int index) {
+        if(repaintFrom == -1 || index < repaintFrom) {
+            repaintFrom = index;
         }
     }
 
 
+    /**
+     * Repaints the points added or changed since the last call.
+     * This is called once per frame, so that a busy input doesn't cause a repaint for every batch of points.
+     */
+    public void flushRepaint() {
+        DoubleData yData = delegate.getYData();
+        int length = Math.min(delegate.getXData().getLength(), yData.getLength());
+        if(replacedIndex != -1 && replacedIndex < length) {
+            // Where the point was painted can only be computed from its old value, so put it back briefly.
+            double y = yData.get(replacedIndex);
+            yData.set(replacedIndex, replacedY);
+            delegate.repaintData(replacedIndex);
+            yData.set(replacedIndex, y);
+        }
+        if(repaintFrom != -1 && repaintFrom < length) {
+            // Include the previous point so the line segment connecting to it is drawn.
+            int first = Math.max(repaintFrom - 1, 0);
+            delegate.repaintData(first, length - first);
+        }
+        replacedIndex = -1;
+        repaintFrom = -1;
+    }
+
+
+    /**
+     * Tells scrolling plot contents which X range new data was added to, so that range is rendered again.
+     * @param minX minimum X value of the new data, including the point it connects to
+     * @param maxX maximum X value of the new data
+     */
+    private void dataAdded(double minX, double maxX) {
+        Container parent = getParent();
+        if(parent instanceof ScrollingPlotContents) {
+            ((ScrollingPlotContents) parent).dataAdded(minX, maxX);
+        }
+    }
+
+
+    /**
+     * Tells scrolling plot contents that data was removed or changed in place.
+     */
+    private void dataChanged() {
+        modCount++;
+        // The replaced point may be gone, and the whole line is repainted anyway.
+        replacedIndex = -1;
+        Container parent = getParent();
+        if(parent instanceof ScrollingPlotContents) {
+            ((ScrollingPlotContents) parent).dataChanged();
+        }
+    }
+
+
+    /**
+     * Tells scrolling plot contents that this line's appearance changed.
+     */
+    private void invalidateRaster() {
+        Container parent = getParent();
+        if(parent instanceof ScrollingPlotContents) {
+            ((ScrollingPlotContents) parent).invalidateRaster();
+        }
+    }
+
+
+    /**
+     * Returns a count which is incremented whenever data is removed or changed in place, but not when it is appended.
+     * @return the modification count
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+
     public void scatter() {
         if(!switched) {
             ScatterXYPlotLine scatter = new ScatterXYPlotLine(xAxis, yAxis);
@@ -89,6 +255,7 @@ public class MultiplexingXYPlotLine extends XYPlotLine {
             add(scatter);
             delegate = scatter;
             switched = true;
+            dataChanged();
         }
     }
 
@@ -102,12 +269,14 @@ public class MultiplexingXYPlotLine extends XYPlotLine {
     @Override
     public void prepend(DoubleData x, DoubleData y) {
         delegate.prepend(x, y);
+        dataChanged();
     }
 
 
     @Override
     public void prepend(double[] x, int xoff, double[] y, int yoff, int len) {
         delegate.prepend(x, xoff, y, yoff, len);
+        dataChanged();
     }
 
 
@@ -126,18 +295,21 @@ public class MultiplexingXYPlotLine extends XYPlotLine {
     @Override
     public void removeFirst(int removeCount) {
         delegate.removeFirst(removeCount);
+        dataChanged();
     }
 
 
     @Override
     public void removeLast(int removeCount) {
         delegate.removeLast(removeCount);
+        dataChanged();
     }
 
 
     @Override
     public void removeAllPoints() {
         delegate.removeAllPoints();
+        dataChanged();
     }
 
 
@@ -155,6 +327,14 @@ public class MultiplexingXYPlotLine extends XYPlotLine {
     }
 
 
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        // Repainting the whole line means its appearance changed, such as its stroke when highlighted from the legend.
+        invalidateRaster();
+        super.repaint(tm, x, y, width, height);
+    }
+
+
     @Override
     public void setStroke(Stroke stroke) {
         super.setStroke(stroke);
@@ -21,7 +21,17 @@ import java.text.FieldPosition;
 import java.text.NumberFormat;
 import java.text.ParsePosition;
 
+/**
+ * Formats small and large numbers in scientific notation, and others in plain notation.
+ * When the underlying formats are simple {@link DecimalFormat}s, doubles are formatted by a {@link FastDecimalFormat},
+ * and the most recently formatted values are cached, since tick labels and highlighted values repeat.
+ * Like {@link DecimalFormat}, this is not thread-safe.
+ * @author Adam Crume
+ */
 class MultiscaleNumberFormat extends NumberFormat {
+    /** Number of formatted values to cache. */
+    private static final int CACHE_SIZE = 32;
+
     private NumberFormat plainFormat = new DecimalFormat("#.###");
 
     private NumberFormat exponentialFormat = new DecimalFormat("0.###E0");
@@ -30,8 +40,21 @@ class MultiscaleNumberFormat extends NumberFormat {
 
     private double lowerThreshold = .01;
 
+    /** Fast equivalent of {@link #plainFormat}, or null. */
+    private FastDecimalFormat fastPlainFormat;
+
+    /** Fast equivalent of {@link #exponentialFormat}, or null. */
+    private FastDecimalFormat fastExponentialFormat;
+
+    /** Recently formatted values, from most to least recently used. */
+    private CacheEntry[] cache = new CacheEntry[CACHE_SIZE];
+
+    /** Number of values in the cache. */
+    private int cacheSize;
+
 
     public MultiscaleNumberFormat() {
+        createFastFormats();
     }
 
 
@@ -41,13 +64,23 @@ class MultiscaleNumberFormat extends NumberFormat {
         this.exponentialFormat = exponentialFormat;
         this.lowerThreshold = lowerThreshold;
         this.upperThreshold = upperThreshold;
+        createFastFormats();
+    }
+
+
+    private void createFastFormats() {
+        fastPlainFormat = FastDecimalFormat.create(plainFormat);
+        fastExponentialFormat = FastDecimalFormat.create(exponentialFormat);
     }
 
 
     @Override
     public StringBuffer format(double number, StringBuffer toAppendTo, FieldPosition pos) {
         double mag = Math.abs(number);
-        if(mag > upperThreshold || (mag < lowerThreshold && mag != 0)) {
+        boolean exponential = mag > upperThreshold || (mag < lowerThreshold && mag != 0);
+        if(formatFast(number, exponential, toAppendTo, pos)) {
+            return toAppendTo;
+        } else if(exponential) {
             return exponentialFormat.format(number, toAppendTo, pos);
         } else {
             return plainFormat.format(number, toAppendTo, pos);
@@ -58,7 +91,11 @@ class MultiscaleNumberFormat extends NumberFormat {
     @Override
     public StringBuffer format(long number, StringBuffer toAppendTo, FieldPosition pos) {
         long mag = Math.abs(number);
-        if(mag > upperThreshold || (mag < lowerThreshold && mag != 0)) {
+        boolean exponential = mag > upperThreshold || (mag < lowerThreshold && mag != 0);
+        // Values which are exact as doubles format the same way, except for ties, which the fast path rejects.
+        if(mag <= 1L << 53 && formatFast(number, exponential, toAppendTo, pos)) {
+            return toAppendTo;
+        } else if(exponential) {
             return exponentialFormat.format(number, toAppendTo, pos);
         } else {
             return plainFormat.format(number, toAppendTo, pos);
@@ -66,6 +103,79 @@ class MultiscaleNumberFormat extends NumberFormat {
     }
 
 
+    /**
+     * Formats a value using the cache or the fast formats, if possible.
+     * @param number value to format
+     * @param exponential true to use scientific notation
+     * @param toAppendTo buffer to append the text to
+     * @param pos field position to fill in
+     * @return false if the value must be formatted by the underlying formats instead
+     */
+    private boolean formatFast(double number, boolean exponential, StringBuffer toAppendTo, FieldPosition pos) {
+        FastDecimalFormat fastFormat = exponential ? fastExponentialFormat : fastPlainFormat;
+        // Only the integer field is supported, which is what NumberFormat.format(double) asks for.
+        if(fastFormat == null || pos.getField() != INTEGER_FIELD || pos.getFieldAttribute() != null) {
+            return false;
+        }
+        long bits = Double.doubleToLongBits(number);
+        CacheEntry entry = lookup(bits);
+        if(entry == null) {
+            if(!fastFormat.format(number)) {
+                return false;
+            }
+            entry = insert(bits);
+            entry.text = new String(fastFormat.getBuffer(), 0, fastFormat.getLength());
+            entry.integerBegin = fastFormat.getIntegerBegin();
+            entry.integerEnd = fastFormat.getIntegerEnd();
+        }
+        int offset = toAppendTo.length();
+        toAppendTo.append(entry.text);
+        pos.setBeginIndex(offset + entry.integerBegin);
+        pos.setEndIndex(offset + entry.integerEnd);
+        return true;
+    }
+
+
+    /**
+     * Looks up a value in the cache, and makes it the most recently used.
+     * @param bits bits of the value
+     * @return the cache entry, or null if the value isn't cached
+     */
+    private CacheEntry lookup(long bits) {
+        for(int i = 0; i < cacheSize; i++) {
+            CacheEntry entry = cache[i];
+            if(entry.bits == bits) {
+                System.arraycopy(cache, 0, cache, 1, i);
+                cache[0] = entry;
+                return entry;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Adds a value to the cache as the most recently used, evicting the least recently used value if the cache is full.
+     * @param bits bits of the value
+     * @return the cache entry, which the caller must fill in
+     */
+    private CacheEntry insert(long bits) {
+        CacheEntry entry;
+        if(cacheSize == cache.length) {
+            // Reuse the evicted entry.
+            entry = cache[cacheSize - 1];
+            System.arraycopy(cache, 0, cache, 1, cacheSize - 1);
+        } else {
+            entry = new CacheEntry();
+            System.arraycopy(cache, 0, cache, 1, cacheSize);
+            cacheSize++;
+        }
+        cache[0] = entry;
+        entry.bits = bits;
+        return entry;
+    }
+
+
     @Override
     public Number parse(String source, ParsePosition parsePosition) {
         ParsePosition tmp = new ParsePosition(parsePosition.getIndex());
@@ -84,4 +194,33 @@ class MultiscaleNumberFormat extends NumberFormat {
             return n;
         }
     }
+
+
+    @Override
+    public Object clone() {
+        MultiscaleNumberFormat clone = (MultiscaleNumberFormat) super.clone();
+        // The fast formats' buffers and the cache can't be shared.
+        clone.createFastFormats();
+        clone.cache = new CacheEntry[CACHE_SIZE];
+        clone.cacheSize = 0;
+        return clone;
+    }
+
+
+    /**
+     * A formatted value.
+     */
+    private static final class CacheEntry {
+        /** Bits of the value. */
+        long bits;
+
+        /** Formatted text. */
+        String text;
+
+        /** Index of the first integer digit in the text. */
+        int integerBegin;
+
+        /** Index after the last integer digit in the text. */
+        int integerEnd;
+    }
 }
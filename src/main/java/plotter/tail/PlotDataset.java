@@ -0,0 +1,178 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import plotter.DoubleData;
+
+/**
+ * Points plotted for a field, with the range of their values.
+ * The points are stored in the plot line.
+ * Like {@link plotter.xy.SimpleXYDataset}, which this replaces, ranges only grow as points are added,
+ * and are reset by {@link #removeAllPoints()}.
+ * Unlike it, a batch of points can be added with a single repaint.
+ * @author Adam Crume
+ */
+class PlotDataset {
+    /** Plot line that stores and displays the points. */
+    private final MultiplexingXYPlotLine line;
+
+    /** Minimum X value. */
+    private double minX = Double.POSITIVE_INFINITY;
+
+    /** Maximum X value. */
+    private double maxX = Double.NEGATIVE_INFINITY;
+
+    /** Minimum Y value. */
+    private double minY = Double.POSITIVE_INFINITY;
+
+    /** Maximum Y value. */
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+
+    /**
+     * Creates a dataset.
+     * @param line plot line that stores and displays the points
+     */
+    public PlotDataset(MultiplexingXYPlotLine line) {
+        this.line = line;
+    }
+
+
+    /**
+     * Adds a point.
+     * @param x X value
+     * @param y Y value
+     */
+    public void add(double x, double y) {
+        line.add(x, y);
+        updateRange(x, y);
+    }
+
+
+    /**
+     * Adds points.
+     * @param x X values
+     * @param y Y values
+     * @param off index of the first point in the arrays
+     * @param len number of points
+     */
+    public void append(double[] x, double[] y, int off, int len) {
+        line.append(x, y, off, len);
+        for(int i = off; i < off + len; i++) {
+            updateRange(x[i], y[i]);
+        }
+    }
+
+
+    /**
+     * Changes the Y value of the last point, which must exist.
+     * The Y range grows to include the new value, but doesn't shrink if the old value was an extreme.
+     * @param y new Y value
+     */
+    public void setLastY(double y) {
+        line.setLastY(y);
+        updateRange(line.getXData().get(line.getXData().getLength() - 1), y);
+    }
+
+
+    /**
+     * Extends the ranges to include a point.
+     * NaNs are ignored.
+     * @param x X value
+     * @param y Y value
+     */
+    private void updateRange(double x, double y) {
+        if(x < minX) {
+            minX = x;
+        }
+        if(x > maxX) {
+            maxX = x;
+        }
+        if(y < minY) {
+            minY = y;
+        }
+        if(y > maxY) {
+            maxY = y;
+        }
+    }
+
+
+    /**
+     * Removes all points.
+     */
+    public void removeAllPoints() {
+        line.removeAllPoints();
+        minX = Double.POSITIVE_INFINITY;
+        maxX = Double.NEGATIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+    }
+
+
+    /**
+     * Returns the number of points.
+     * @return the number of points
+     */
+    public int getPointCount() {
+        return line.getXData().getLength();
+    }
+
+
+    public DoubleData getXData() {
+        return line.getXData();
+    }
+
+
+    public DoubleData getYData() {
+        return line.getYData();
+    }
+
+
+    /**
+     * Returns the minimum X value.
+     * @return the minimum X value, or positive infinity if there are no points
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+
+    /**
+     * Returns the maximum X value.
+     * @return the maximum X value, or negative infinity if there are no points
+     */
+    public double getMaxX() {
+        return maxX;
+    }
+
+
+    /**
+     * Returns the minimum Y value.
+     * @return the minimum Y value, or positive infinity if there are no points
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+
+    /**
+     * Returns the maximum Y value.
+     * @return the maximum Y value, or negative infinity if there are no points
+     */
+    public double getMaxY() {
+        return maxY;
+    }
+}
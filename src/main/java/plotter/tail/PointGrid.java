@@ -0,0 +1,379 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.Arrays;
+
+import plotter.DoubleData;
+
+/**
+ * Indexes points in a grid of cells in data space, so points near a location can be found without looking at all of them.
+ * Since the grid doesn't depend on the axes, moving or zooming the plot doesn't require rebuilding it.
+ * Appended points are added incrementally.
+ * The grid is rebuilt only when a point falls outside it, when the number of points has grown enough that
+ * the cells are too full, or when the data is modified other than by appending.
+ * Each cell holds a linked list of its points, stored in arrays.
+ * A cell which fills up, such as when an outlier stretches the grid so most points share a few cells,
+ * is split into a grid of its own covering its points, so skewed data doesn't lead to long lists.
+ * Must only be used on the Swing thread.
+ * @author Adam Crume
+ */
+class PointGrid {
+    /** Receives the points found by {@link PointGrid#search(double, double, double, double, Visitor)}. */
+    interface Visitor {
+        /**
+         * Called for a point which may be in the searched range.
+         * @param index index of the point
+         */
+        void visit(int index);
+    }
+
+
+    /** Maximum number of columns and rows in a grid. */
+    private static final int MAX_SIZE = 1024;
+
+    /** Average number of points per cell when a grid is built. */
+    private static final int POINTS_PER_CELL = 4;
+
+    /** Number of points in a cell at which it is split into a grid of its own. */
+    private static final int SPLIT_POINTS = 64;
+
+    /** Maximum nesting of grids. */
+    private static final int MAX_DEPTH = 8;
+
+    /** Top-level grid, or null if not yet built. */
+    private Cells root;
+
+    /** Index of the next point in the same cell, or -1, for each point. */
+    private int[] next = new int[0];
+
+    /** Number of points which have been indexed. */
+    private int indexed;
+
+    /** Number of points when the grid was last built. */
+    private int built;
+
+    /** Modification count of the data when the grid was last built. */
+    private int modCount;
+
+    /** X values, while points are being added. */
+    private DoubleData xData;
+
+    /** Y values, while points are being added. */
+    private DoubleData yData;
+
+
+    /**
+     * Brings the grid up to date.
+     * @param xData X values
+     * @param yData Y values
+     * @param length number of points to index
+     * @param modCount modification count of the data, which changes when points are modified other than by appending
+     */
+    public void update(DoubleData xData, DoubleData yData, int length, int modCount) {
+        this.xData = xData;
+        this.yData = yData;
+        try {
+            if(root == null || modCount != this.modCount || length < indexed || length > built * POINTS_PER_CELL) {
+                build(length, modCount);
+                return;
+            }
+            if(length > next.length) {
+                next = Arrays.copyOf(next, Math.max(length, next.length * 2));
+            }
+            for(int i = indexed; i < length; i++) {
+                double x = xData.get(i);
+                double y = yData.get(i);
+                if(!isFinite(x) || !isFinite(y)) {
+                    continue;
+                }
+                if(!root.contains(x, y)) {
+                    // The grid is too small, so build a larger one.
+                    build(length, modCount);
+                    return;
+                }
+                add(root, i, x, y);
+            }
+            indexed = length;
+        } finally {
+            this.xData = null;
+            this.yData = null;
+        }
+    }
+
+
+    /**
+     * Builds the grid from scratch.
+     * The grid covers twice the range of the points in each dimension, centered on them, so it has room to grow.
+     * @param length number of points to index
+     * @param modCount modification count of the data
+     */
+    private void build(int length, int modCount) {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < length; i++) {
+            double x = xData.get(i);
+            double y = yData.get(i);
+            if(isFinite(x) && isFinite(y)) {
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        if(minX > maxX) {
+            minX = maxX = minY = maxY = 0;
+        }
+        double halfWidth = halfRange(minX, maxX);
+        double halfHeight = halfRange(minY, maxY);
+        root = new Cells(gridSize(length), minX - halfWidth, maxX + halfWidth, minY - halfHeight, maxY + halfHeight, 0);
+        if(length > next.length) {
+            next = new int[length];
+        }
+        for(int i = 0; i < length; i++) {
+            double x = xData.get(i);
+            double y = yData.get(i);
+            if(isFinite(x) && isFinite(y)) {
+                add(root, i, x, y);
+            }
+        }
+        indexed = length;
+        built = Math.max(1, length);
+        this.modCount = modCount;
+    }
+
+
+    /**
+     * Adds a point to the cell of a grid containing it, splitting the cell if it fills up.
+     * @param cells the grid
+     * @param index index of the point
+     * @param x X value
+     * @param y Y value
+     */
+    private void add(Cells cells, int index, double x, double y) {
+        int cell = cells.getRow(y) * cells.size + cells.getColumn(x);
+        if(cells.children != null && cells.children[cell] != null) {
+            add(cells.children[cell], index, x, y);
+            return;
+        }
+        next[index] = cells.heads[cell];
+        cells.heads[cell] = index;
+        int count = ++cells.counts[cell];
+        // Splitting is tried again each time the count doubles, in case the points were too close to separate.
+        if(count >= SPLIT_POINTS && (count & (count - 1)) == 0 && cells.depth < MAX_DEPTH) {
+            split(cells, cell, count);
+        }
+    }
+
+
+    /**
+     * Moves the points of a cell into a grid of their own, which covers just those points.
+     * @param cells the grid containing the cell
+     * @param cell index of the cell
+     * @param count number of points in the cell
+     */
+    private void split(Cells cells, int cell, int count) {
+        int[] indices = new int[count];
+        int n = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for(int i = cells.heads[cell]; i != -1; i = next[i]) {
+            indices[n++] = i;
+            double x = xData.get(i);
+            double y = yData.get(i);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        if(minX == maxX && minY == maxY) {
+            // Identical points can't be separated.
+            return;
+        }
+        Cells child = new Cells(gridSize(count), minX, maxX, minY, maxY, cells.depth + 1);
+        if(cells.children == null) {
+            cells.children = new Cells[cells.heads.length];
+        }
+        cells.children[cell] = child;
+        cells.heads[cell] = -1;
+        cells.counts[cell] = 0;
+        // The list is newest first, so add the points oldest first to keep that order.
+        for(int i = n - 1; i >= 0; i--) {
+            add(child, indices[i], xData.get(indices[i]), yData.get(indices[i]));
+        }
+    }
+
+
+    /**
+     * Finds the points which may be in a range.
+     * Every point in the range is visited, along with some points near it.
+     * @param minX minimum X value
+     * @param maxX maximum X value
+     * @param minY minimum Y value
+     * @param maxY maximum Y value
+     * @param visitor receives the points
+     */
+    public void search(double minX, double maxX, double minY, double maxY, Visitor visitor) {
+        if(root != null) {
+            search(root, minX, maxX, minY, maxY, visitor);
+        }
+    }
+
+
+    private void search(Cells cells, double minX, double maxX, double minY, double maxY, Visitor visitor) {
+        int col1 = cells.getColumn(minX);
+        int col2 = cells.getColumn(maxX);
+        int row1 = cells.getRow(minY);
+        int row2 = cells.getRow(maxY);
+        for(int row = row1; row <= row2; row++) {
+            for(int col = col1; col <= col2; col++) {
+                int cell = row * cells.size + col;
+                if(cells.children != null && cells.children[cell] != null) {
+                    search(cells.children[cell], minX, maxX, minY, maxY, visitor);
+                } else {
+                    for(int i = cells.heads[cell]; i != -1; i = next[i]) {
+                        visitor.visit(i);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of columns and rows for a grid of some number of points.
+     * @param count number of points
+     * @return the number of columns and rows
+     */
+    private static int gridSize(int count) {
+        return (int) Math.max(1, Math.min(MAX_SIZE, Math.sqrt(count / POINTS_PER_CELL)));
+    }
+
+
+    /**
+     * Returns half the range of some values, or a default if they are all the same.
+     * @param min minimum value
+     * @param max maximum value
+     * @return half the range
+     */
+    private static double halfRange(double min, double max) {
+        double half = (max - min) / 2;
+        return half > 0 && isFinite(half) ? half : Math.max(1, Math.abs(min));
+    }
+
+
+    private static boolean isFinite(double d) {
+        return !Double.isNaN(d) && !Double.isInfinite(d);
+    }
+
+
+    /**
+     * A uniform grid of cells.
+     * Values outside the grid are clamped to the nearest cell, which keeps searches correct for points
+     * just outside the bounds of a split cell's grid.
+     */
+    private static final class Cells {
+        /** Number of columns and rows. */
+        final int size;
+
+        /** Minimum X value covered. */
+        final double minX;
+
+        /** Minimum Y value covered. */
+        final double minY;
+
+        /** Width of a cell in X units. */
+        final double cellWidth;
+
+        /** Height of a cell in Y units. */
+        final double cellHeight;
+
+        /** Number of grids this one is nested in. */
+        final int depth;
+
+        /** Index of the newest point in each cell, or -1, in row-major order. */
+        final int[] heads;
+
+        /** Number of points in each cell's list. */
+        final int[] counts;
+
+        /** Grids which cells have been split into, or null. */
+        Cells[] children;
+
+
+        Cells(int size, double minX, double maxX, double minY, double maxY, int depth) {
+            this.size = size;
+            this.minX = minX;
+            this.minY = minY;
+            this.depth = depth;
+            // Any positive size works for a range with no width, since everything is clamped to the grid.
+            cellWidth = maxX > minX ? (maxX - minX) / size : 1;
+            cellHeight = maxY > minY ? (maxY - minY) / size : 1;
+            heads = new int[size * size];
+            Arrays.fill(heads, -1);
+            counts = new int[size * size];
+        }
+
+
+        /**
+         * Returns true if a point is inside the grid, rather than clamped to it.
+         * @param x X value
+         * @param y Y value
+         * @return true if the point is inside the grid
+         */
+        boolean contains(double x, double y) {
+            double col = (x - minX) / cellWidth;
+            double row = (y - minY) / cellHeight;
+            return col >= 0 && col < size && row >= 0 && row < size;
+        }
+
+
+        /**
+         * Returns the column containing an X value, clamped to the grid.
+         * @param x X value
+         * @return the column
+         */
+        int getColumn(double x) {
+            return clamp((x - minX) / cellWidth);
+        }
+
+
+        /**
+         * Returns the row containing a Y value, clamped to the grid.
+         * @param y Y value
+         * @return the row
+         */
+        int getRow(double y) {
+            return clamp((y - minY) / cellHeight);
+        }
+
+
+        /**
+         * Converts a cell coordinate to a column or row, clamped to the grid.
+         * @param c cell coordinate
+         * @return the column or row
+         */
+        private int clamp(double c) {
+            // Also maps NaN to 0
+            return c >= size ? size - 1 : c > 0 ? (int) c : 0;
+        }
+    }
+}
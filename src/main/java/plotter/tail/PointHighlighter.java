@@ -26,10 +26,11 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.Shape;
 import java.awt.Stroke;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.awt.geom.Point2D;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +40,7 @@ import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.Border;
 
 import plotter.DoubleData;
@@ -51,6 +53,8 @@ import plotter.xy.XYPlotLine;
 
 /**
  * Highlights data points the mouse cursor is near and displays their values.
+ * The popover keeps a row of components for each field, and only changes the text of values which changed.
+ * Updates caused by mouse movement are coalesced, so they happen at most once per {@link #setUpdateInterval(int) interval}.
  * @author Adam Crume
  */
 public class PointHighlighter extends JComponent implements MouseListener, MouseMotionListener {
@@ -77,6 +81,18 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
     /** Fields to highlight and display. */
     private List<Field> fields = new ArrayList<Field>();
 
+    /** Rows of the popover, in the same order as {@link #fields}. */
+    private List<Row> rows = new ArrayList<Row>();
+
+    /** Foreground color of the rows' labels. */
+    private Color rowForeground;
+
+    /** Font of the rows' labels. */
+    private Font rowFont;
+
+    /** Updates the display after the mouse moves, so several movements only cause one update. */
+    private Timer updateTimer;
+
     /** True if the X axis is log-scaled. */
     private boolean logX;
 
@@ -113,6 +129,21 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public PointHighlighter() {
         setLayout(null);
+        display = new JPanel();
+        display.setLayout(new GridBagLayout());
+        display.setBackground(Color.black);
+        display.setOpaque(true);
+        Border outsideBorder = BorderFactory.createLineBorder(Color.DARK_GRAY);
+        Border insideBorder = BorderFactory.createLineBorder(Color.black, 5);
+        Border border = BorderFactory.createCompoundBorder(outsideBorder, insideBorder);
+        display.setBorder(border);
+        updateTimer = new Timer(33, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateDisplay();
+            }
+        });
+        updateTimer.setRepeats(false);
     }
 
 
@@ -122,19 +153,34 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
             Color savedColor = g.getColor();
             try {
                 g.setColor(getForeground());
-                for(Field field : fields) {
+                for(int i = 0; i < fields.size(); i++) {
+                    Field field = fields.get(i);
                     if(field.isVisible()) {
                         XYPlotLine line = field.getPlotLine();
-                        Point2D logical = getNearestDataPoint(line, this.x, this.y);
-                        if(logical != null) {
+                        Row row = rows.get(i);
+                        ScreenCoordinates coords = row.coordinates;
+                        int ix = getNearestIndex(line, coords, this.x, this.y, row.index);
+                        row.index = ix;
+                        if(ix == -1) {
+                            continue;
+                        }
+                        int xx;
+                        int yy;
+                        if(coords.isSorted()) {
+                            xx = coords.getX(ix);
+                            yy = coords.getY(ix);
+                            if(yy == ScreenCoordinates.UNDEFINED) {
+                                continue;
+                            }
+                        } else {
                             XYAxis xAxis = line.getXAxis();
                             XYAxis yAxis = line.getYAxis();
-                            int xx = (int) SwingUtilities
-                                    .convertPoint(xAxis, xAxis.toPhysical(logical.getX()), 0, this).getX();
-                            int yy = (int) SwingUtilities
-                                    .convertPoint(yAxis, 0, yAxis.toPhysical(logical.getY()), this).getY();
-                            g.drawOval(xx - diameter / 2, yy - diameter / 2, diameter, diameter);
+                            xx = (int) SwingUtilities
+                                    .convertPoint(xAxis, xAxis.toPhysical(line.getXData().get(ix)), 0, this).getX();
+                            yy = (int) SwingUtilities
+                                    .convertPoint(yAxis, 0, yAxis.toPhysical(line.getYData().get(ix)), this).getY();
                         }
+                        g.drawOval(xx - diameter / 2, yy - diameter / 2, diameter, diameter);
                     }
                 }
             } finally {
@@ -145,33 +191,51 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
 
 
     /**
-     * Result is *not* adjusted for log scale.
-     * Returns null if there is no data.
+     * Returns the index of the data point nearest the mouse cursor.
+     * For lines with sorted X values, this is the point with the nearest X value.
+     * When the line's pixel coordinates are cached, the search is done in pixels, without converting the mouse location.
+     * For scatter plots, this is the visible point nearest the mouse cursor in both dimensions.
+     * @param line line to search
+     * @param coords cached pixel coordinates of the line's points
+     * @param x X coordinate of the mouse cursor
+     * @param y Y coordinate of the mouse cursor
+     * @param hint index of the previous nearest point, or -1
+     * @return index of the nearest point, or -1 if there is no data
      */
-    private Point2D getNearestDataPoint(XYPlotLine line, int x, int y) {
+    private int getNearestIndex(XYPlotLine line, ScreenCoordinates coords, int x, int y, int hint) {
+        coords.update(this);
+        if(coords.isSorted()) {
+            return coords.getNearestIndex(x, hint);
+        } else if(line.getIndependentDimension() != XYDimension.X) {
+            return coords.getNearestPoint(x, y);
+        }
         XYAxis xAxis = line.getXAxis();
-        XYAxis yAxis = line.getYAxis();
         double logicalX = xAxis.toLogical((int) SwingUtilities.convertPoint(this, x, 0, xAxis).getX());
-        double logicalY = yAxis.toLogical((int) SwingUtilities.convertPoint(this, 0, y, yAxis).getY());
-        assert line.getIndependentDimension() == XYDimension.X;
-        DoubleData xData = line.getXData();
-        DoubleData yData = line.getYData();
+        return getNearestIndex(line.getXData(), logicalX);
+    }
+
+
+    /**
+     * Returns the index of the X value nearest to the given value.
+     * @param xData sorted X values
+     * @param x value to search for
+     * @return index of the nearest X value, or -1 if there are none
+     */
+    static int getNearestIndex(DoubleData xData, double x) {
         if(xData.getLength() == 0) {
-            return null;
+            return -1;
         }
-        int ix = xData.binarySearch(logicalX);
+        int ix = xData.binarySearch(x);
         if(ix < 0) {
             ix = -ix - 1;
         }
         if(ix == xData.getLength()) {
             ix--;
         }
-        if(ix > 0 && Math.abs(logicalX - xData.get(ix - 1)) < Math.abs(logicalX - xData.get(ix))) {
+        if(ix > 0 && Math.abs(x - xData.get(ix - 1)) < Math.abs(x - xData.get(ix))) {
             ix--;
         }
-        logicalX = xData.get(ix);
-        logicalY = yData.get(ix);
-        return new Point2D.Double(logicalX, logicalY);
+        return ix;
     }
 
 
@@ -186,14 +250,6 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
         contents = (XYPlotContents) e.getSource();
         contents.add(this, 0);
         contents.revalidate();
-        display = new JPanel();
-        display.setLayout(new GridBagLayout());
-        display.setBackground(Color.black);
-        display.setOpaque(true);
-        Border outsideBorder = BorderFactory.createLineBorder(Color.DARK_GRAY);
-        Border insideBorder = BorderFactory.createLineBorder(Color.black, 5);
-        Border border = BorderFactory.createCompoundBorder(outsideBorder, insideBorder);
-        display.setBorder(border);
         add(display);
         revalidate();
         x = e.getX();
@@ -204,6 +260,7 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
 
     @Override
     public void mouseExited(MouseEvent e) {
+        updateTimer.stop();
         x = -1;
         y = -1;
         if(contents != null) {
@@ -233,7 +290,7 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
     public void mouseDragged(MouseEvent e) {
         x = e.getX();
         y = e.getY();
-        updateDisplay();
+        scheduleUpdate();
     }
 
 
@@ -241,7 +298,17 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
     public void mouseMoved(MouseEvent e) {
         x = e.getX();
         y = e.getY();
-        updateDisplay();
+        scheduleUpdate();
+    }
+
+
+    /**
+     * Updates the display when the update interval expires, unless an update is already pending.
+     */
+    private void scheduleUpdate() {
+        if(!updateTimer.isRunning()) {
+            updateTimer.start();
+        }
     }
 
 
@@ -253,50 +320,46 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
             return;
         }
 
-        // TODO: optimize
-        display.removeAll();
         Color foreground = getForeground();
         Font font = getFont();
-        for(Field field : fields) {
+        boolean restyle = foreground != rowForeground || font != rowFont;
+        rowForeground = foreground;
+        rowFont = font;
+        for(int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            Row row = rows.get(i);
+            if(restyle) {
+                row.setStyle(foreground, font);
+            }
+            int ix = -1;
             if(field.isVisible()) {
                 XYPlotLine line = field.getPlotLine();
-                Point2D logical = getNearestDataPoint(line, this.x, this.y);
-                if(logical != null) {
-                    double logicalX = logical.getX();
-                    double logicalY = logical.getY();
+                ix = getNearestIndex(line, row.coordinates, this.x, this.y, row.index);
+                row.index = ix;
+                if(ix != -1) {
+                    double logicalX = line.getXData().get(ix);
+                    double logicalY = line.getYData().get(ix);
                     if(logX) {
                         logicalX = Math.pow(10, logicalX);
                     }
                     if(field.isOnY2() ? logY2 : logY) {
                         logicalY = Math.pow(10, logicalY);
                     }
-                    NumberFormat xFormat = this.xFormat;
                     NumberFormat yFormat = field.isOnY2() ? this.y2Format : this.yFormat;
-                    GridBagConstraints constraints = new GridBagConstraints();
-                    constraints.insets = lineSampleInsets;
-                    constraints.anchor = GridBagConstraints.WEST;
-                    constraints.fill = GridBagConstraints.BOTH;
-                    LineSample sample = new LineSample(line);
-                    sample.setPreferredSize(lineSamplePreferredSize);
-                    display.add(sample, constraints);
-                    JLabel nameLabel = new JLabel(field.getName());
-                    nameLabel.setForeground(foreground);
-                    nameLabel.setFont(font);
-                    constraints.insets = labelInsets;
-                    constraints.fill = GridBagConstraints.NONE;
-                    display.add(nameLabel, constraints);
-                    JLabel xLabel = new JLabel(xFormat.format(logicalX));
-                    xLabel.setForeground(foreground);
-                    xLabel.setFont(font);
-                    display.add(xLabel, constraints);
-                    JLabel yLabel = new JLabel(yFormat.format(logicalY));
-                    yLabel.setForeground(foreground);
-                    yLabel.setFont(font);
-                    constraints.gridwidth = GridBagConstraints.REMAINDER;
-                    constraints.insets = emptyInsets;
-                    display.add(yLabel, constraints);
+                    row.nameLabel.setText(field.getName());
+                    // Only format values which changed.
+                    if(!row.valid || Double.doubleToLongBits(logicalX) != Double.doubleToLongBits(row.x)) {
+                        row.xLabel.setText(xFormat.format(logicalX));
+                        row.x = logicalX;
+                    }
+                    if(!row.valid || Double.doubleToLongBits(logicalY) != Double.doubleToLongBits(row.y)) {
+                        row.yLabel.setText(yFormat.format(logicalY));
+                        row.y = logicalY;
+                    }
+                    row.valid = true;
                 }
             }
+            row.setVisible(ix != -1);
         }
 
         Dimension preferredSize = display.getPreferredSize();
@@ -319,7 +382,6 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
         }
         display.setLocation(px, py);
         display.setSize(preferredSize);
-        display.revalidate();
         repaint();
     }
 
@@ -344,6 +406,51 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public void addField(Field field) {
         fields.add(field);
+        Row row = new Row(field.getPlotLine());
+        row.setStyle(rowForeground, rowFont);
+        row.setVisible(false);
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.insets = lineSampleInsets;
+        constraints.anchor = GridBagConstraints.WEST;
+        constraints.fill = GridBagConstraints.BOTH;
+        display.add(row.sample, constraints);
+        constraints.insets = labelInsets;
+        constraints.fill = GridBagConstraints.NONE;
+        display.add(row.nameLabel, constraints);
+        display.add(row.xLabel, constraints);
+        constraints.gridwidth = GridBagConstraints.REMAINDER;
+        constraints.insets = emptyInsets;
+        display.add(row.yLabel, constraints);
+        rows.add(row);
+    }
+
+
+    /**
+     * Forces the values to be formatted again the next time the display is updated.
+     */
+    private void invalidateRows() {
+        for(Row row : rows) {
+            row.valid = false;
+        }
+    }
+
+
+    /**
+     * Returns the minimum time between updates caused by mouse movement.
+     * @return the minimum time between updates, in milliseconds
+     */
+    public int getUpdateInterval() {
+        return updateTimer.getInitialDelay();
+    }
+
+
+    /**
+     * Sets the minimum time between updates caused by mouse movement.
+     * @param millis the minimum time between updates, in milliseconds
+     */
+    public void setUpdateInterval(int millis) {
+        updateTimer.setInitialDelay(millis);
+        updateTimer.setDelay(millis);
     }
 
 
@@ -353,6 +460,7 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public void setLogX(boolean logscale) {
         this.logX = logscale;
+        resetCoordinates();
     }
 
 
@@ -362,6 +470,7 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public void setLogY(boolean logscale) {
         this.logY = logscale;
+        resetCoordinates();
     }
 
 
@@ -371,6 +480,17 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public void setLogY2(boolean logscale) {
         this.logY2 = logscale;
+        resetCoordinates();
+    }
+
+
+    /**
+     * Discards the cached coordinates of every line, since changing a log scale converts the data in place.
+     */
+    private void resetCoordinates() {
+        for(Row row : rows) {
+            row.coordinates.reset();
+        }
     }
 
 
@@ -425,6 +545,7 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public void setXFormat(NumberFormat xFormat) {
         this.xFormat = xFormat;
+        invalidateRows();
     }
 
 
@@ -443,6 +564,7 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public void setYFormat(NumberFormat yFormat) {
         this.yFormat = yFormat;
+        invalidateRows();
     }
 
 
@@ -461,6 +583,59 @@ public class PointHighlighter extends JComponent implements MouseListener, Mouse
      */
     public void setY2Format(NumberFormat y2Format) {
         this.y2Format = y2Format;
+        invalidateRows();
+    }
+
+
+    /**
+     * Components and cached state for one field in the popover.
+     */
+    private class Row {
+        /** Pixel coordinates of the field's points. */
+        final ScreenCoordinates coordinates;
+
+        final LineSample sample;
+
+        final JLabel nameLabel = new JLabel();
+
+        final JLabel xLabel = new JLabel();
+
+        final JLabel yLabel = new JLabel();
+
+        /** Index of the nearest point when the display was last updated or painted, or -1. */
+        int index = -1;
+
+        /** X value displayed by {@link #xLabel}. */
+        double x;
+
+        /** Y value displayed by {@link #yLabel}. */
+        double y;
+
+        /** False if the labels must be formatted again. */
+        boolean valid;
+
+
+        Row(XYPlotLine line) {
+            coordinates = new ScreenCoordinates(line);
+            sample = new LineSample(line);
+            sample.setPreferredSize(lineSamplePreferredSize);
+        }
+
+
+        void setStyle(Color foreground, Font font) {
+            for(JLabel label : new JLabel[] { nameLabel, xLabel, yLabel }) {
+                label.setForeground(foreground);
+                label.setFont(font);
+            }
+        }
+
+
+        void setVisible(boolean visible) {
+            sample.setVisible(visible);
+            nameLabel.setVisible(visible);
+            xLabel.setVisible(visible);
+            yLabel.setVisible(visible);
+        }
     }
 
 
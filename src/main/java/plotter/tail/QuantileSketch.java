@@ -0,0 +1,266 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.Arrays;
+
+/**
+ * Approximates quantiles of a stream of values in bounded memory.
+ * Values are counted in logarithmically sized buckets, so a quantile is accurate to within a relative error of
+ * {@link #RELATIVE_ACCURACY}, as long as the values span less than {@link #MAX_BUCKETS} buckets.
+ * Beyond that, the smallest values are collapsed into the lowest bucket.
+ * <p>
+ * Every sketch uses the same bucket boundaries, so sketches can be merged with {@link #add(QuantileSketch)}
+ * and removed again with {@link #subtract(QuantileSketch)}.
+ * Non-finite values are ignored.
+ * @author Adam Crume
+ */
+class QuantileSketch {
+    /** Maximum relative error of quantiles. */
+    static final double RELATIVE_ACCURACY = .01;
+
+    /** Ratio between the bounds of a bucket. */
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    /** Natural log of {@link #GAMMA}. */
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /** Maximum number of buckets for each sign.  This covers values spanning about 35 orders of magnitude. */
+    static final int MAX_BUCKETS = 4096;
+
+    /** Number of buckets allocated at first. */
+    private static final int INITIAL_BUCKETS = 128;
+
+    /** Counts of positive values. */
+    private final Store positive = new Store();
+
+    /** Counts of negative values, indexed by magnitude. */
+    private final Store negative = new Store();
+
+    /** Number of values too close to zero to be bucketed. */
+    private long zeroCount;
+
+    /** Total number of values. */
+    private long count;
+
+
+    /**
+     * Adds a value.
+     * @param value value to add
+     */
+    public void add(double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if(value > Double.MIN_NORMAL) {
+            positive.add(index(value), 1);
+        } else if(value < -Double.MIN_NORMAL) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+
+    /**
+     * Adds all values counted by another sketch.
+     * @param other sketch to merge into this one
+     */
+    public void add(QuantileSketch other) {
+        positive.add(other.positive, 1);
+        negative.add(other.negative, 1);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+
+    /**
+     * Removes all values counted by another sketch.
+     * The other sketch's values must have been added to this one.
+     * @param other sketch whose values to remove
+     */
+    public void subtract(QuantileSketch other) {
+        positive.add(other.positive, -1);
+        negative.add(other.negative, -1);
+        zeroCount -= other.zeroCount;
+        count -= other.count;
+    }
+
+
+    /**
+     * Removes all values.
+     * Allocated memory is kept so the sketch can be reused without allocating.
+     */
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+
+    /**
+     * Returns the number of values counted.
+     * @return the number of values counted
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the approximate value at the given quantile.
+     * @param q quantile, between 0 and 1
+     * @return approximate value at the quantile, or NaN if the sketch is empty
+     */
+    public double getQuantile(double q) {
+        if(count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        long n = 0;
+        for(int i = negative.maxIndex; i >= negative.minIndex; i--) {
+            n += negative.get(i);
+            if(n > rank) {
+                return -value(i);
+            }
+        }
+        n += zeroCount;
+        if(n > rank) {
+            return 0;
+        }
+        for(int i = positive.minIndex; i <= positive.maxIndex; i++) {
+            n += positive.get(i);
+            if(n > rank) {
+                return value(i);
+            }
+        }
+        return value(positive.maxIndex);
+    }
+
+
+    /**
+     * Returns the index of the bucket containing a positive value.
+     * @param value positive value
+     * @return index of the bucket
+     */
+    private static int index(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+
+    /**
+     * Returns the value representing a bucket, chosen to minimize the relative error.
+     * @param index index of the bucket
+     * @return value representing the bucket
+     */
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+
+    /**
+     * Counts for a contiguous range of buckets, grown as needed.
+     */
+    private static class Store {
+        /** Bucket counts, or null if nothing has been added yet. */
+        private long[] counts;
+
+        /** Bucket index of <code>counts[0]</code>. */
+        private int offset;
+
+        /** Lowest index that may be non-zero. */
+        private int minIndex = Integer.MAX_VALUE;
+
+        /** Highest index that may be non-zero. */
+        private int maxIndex = Integer.MIN_VALUE;
+
+
+        long get(int index) {
+            return counts[index - offset];
+        }
+
+
+        void add(int index, long n) {
+            if(counts == null) {
+                counts = new long[INITIAL_BUCKETS];
+                offset = index - INITIAL_BUCKETS / 2;
+            } else if(index < offset || index >= offset + counts.length) {
+                index = makeRoom(index);
+            }
+            counts[index - offset] += n;
+            if(index < minIndex) {
+                minIndex = index;
+            }
+            if(index > maxIndex) {
+                maxIndex = index;
+            }
+        }
+
+
+        void add(Store other, int sign) {
+            for(int i = other.minIndex; i <= other.maxIndex; i++) {
+                long n = other.get(i);
+                if(n != 0) {
+                    add(i, sign * n);
+                }
+            }
+        }
+
+
+        void clear() {
+            if(minIndex <= maxIndex) {
+                Arrays.fill(counts, minIndex - offset, maxIndex - offset + 1, 0);
+            }
+            minIndex = Integer.MAX_VALUE;
+            maxIndex = Integer.MIN_VALUE;
+        }
+
+
+        /**
+         * Makes room for an index outside the allocated range.
+         * @param index index that needs room
+         * @return the index to use, which is clamped if the range would exceed {@link QuantileSketch#MAX_BUCKETS}
+         *         (in which case the lowest buckets are collapsed together)
+         */
+        private int makeRoom(int index) {
+            if(minIndex > maxIndex) {
+                // Empty, so just move the range.
+                offset = index - counts.length / 2;
+                return index;
+            }
+            int lo = Math.min(index, minIndex);
+            int hi = Math.max(index, maxIndex);
+            if(hi - lo >= MAX_BUCKETS) {
+                // Give up accuracy for the smallest values, since the largest are usually more interesting.
+                lo = hi - MAX_BUCKETS + 1;
+                index = Math.max(index, lo);
+            }
+            int length = Math.min(MAX_BUCKETS, Math.max(2 * (hi - lo + 1), counts.length));
+            int newOffset = index < minIndex ? hi - length + 1 : lo;
+            long[] newCounts = new long[length];
+            for(int i = minIndex; i <= maxIndex; i++) {
+                newCounts[Math.max(i, lo) - newOffset] += counts[i - offset];
+            }
+            counts = newCounts;
+            offset = newOffset;
+            minIndex = Math.max(minIndex, lo);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+/**
+ * Limits how often the axes are rescaled and the plot repainted.
+ * Data is added to the plot as soon as it arrives, but the axes are only updated with
+ * {@link TailPlot#commitMinMax()}, and the new points repainted with {@link TailPlot#flushRepaints()},
+ * once per frame, however many batches from however many files arrive in between.
+ * If painting takes more than half of a frame, frames are spaced further apart so that the Swing thread
+ * still has time to add data and respond to the user.
+ * All methods must be called on the Swing thread.
+ * @author Adam Crume
+ */
+class RenderScheduler implements ActionListener {
+    /** Largest fraction of the Swing thread's time to spend painting. */
+    private static final double PAINT_SHARE = .5;
+
+    /** Weight of the latest paint time in {@link #paintMillis}. */
+    private static final double PAINT_SMOOTHING = .25;
+
+    /** The plot. */
+    private final TailPlot tailPlot;
+
+    /** Shortest time between frames in milliseconds. */
+    private final int frameMillis;
+
+    /** Fires when the next frame is due. */
+    private final Timer timer;
+
+    /** Smoothed time to paint the plot, in milliseconds. */
+    private double paintMillis;
+
+    /** Value of {@link System#nanoTime()} at the last frame. */
+    private long lastFrame = System.nanoTime() - Long.MAX_VALUE / 2;
+
+
+    /**
+     * Creates a scheduler.
+     * @param tailPlot the plot
+     * @param fps maximum frames per second
+     */
+    public RenderScheduler(TailPlot tailPlot, double fps) {
+        this.tailPlot = tailPlot;
+        this.frameMillis = (int) Math.max(1, Math.round(1000 / fps));
+        timer = new Timer(frameMillis, this);
+        timer.setRepeats(false);
+    }
+
+
+    /**
+     * Requests a frame, because data was added.
+     * If no frame has been drawn for a full frame interval, the frame is drawn immediately.
+     */
+    public void requestFrame() {
+        if(timer.isRunning()) {
+            return;
+        }
+        long wait = getFrameMillis() - (System.nanoTime() - lastFrame) / 1000000;
+        if(wait <= 0) {
+            actionPerformed(null);
+        } else {
+            timer.setInitialDelay((int) wait);
+            timer.start();
+        }
+    }
+
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        lastFrame = System.nanoTime();
+        tailPlot.commitMinMax();
+        tailPlot.flushRepaints();
+    }
+
+
+    /**
+     * Records the time taken to paint the plot.
+     * @param nanos time in nanoseconds
+     */
+    public void painted(long nanos) {
+        paintMillis += PAINT_SMOOTHING * (nanos / 1e6 - paintMillis);
+    }
+
+
+    /**
+     * Returns the current time between frames.
+     * @return milliseconds between frames
+     */
+    public int getFrameMillis() {
+        return (int) Math.max(frameMillis, paintMillis / PAINT_SHARE);
+    }
+}
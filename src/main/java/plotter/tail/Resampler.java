@@ -0,0 +1,135 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates rows into buckets of fixed width in X.
+ * The row for the bucket in progress is updated in place as rows are added,
+ * and a new row is started when a row falls into a different bucket.
+ * NaN values are ignored, and a field with no values in a bucket is NaN.
+ * @author Adam Crume
+ */
+class Resampler {
+    /**
+     * Function used to combine the values in a bucket.
+     */
+    enum Aggregation {
+        AVG, MIN, MAX, LAST, SUM, COUNT
+    }
+
+    /** Width of a bucket in X units. */
+    private final double width;
+
+    /** Function used to combine the values in a bucket. */
+    private final Aggregation aggregation;
+
+    /** Row for the bucket in progress, or null if no rows have been added. */
+    private double[] bucket;
+
+    /** Number of the bucket in progress. */
+    private long bucketNumber;
+
+    /** Number of values in the bucket in progress, indexed the same as the rows. */
+    private long[] counts;
+
+    /** Sums of the values in the bucket in progress, indexed the same as the rows. */
+    private double[] sums;
+
+
+    /**
+     * Creates a resampler.
+     * @param width width of a bucket in X units
+     * @param aggregation function used to combine the values in a bucket
+     */
+    public Resampler(double width, Aggregation aggregation) {
+        this.width = width;
+        this.aggregation = aggregation;
+    }
+
+
+    /**
+     * Adds a row.
+     * The X value of the returned row is the start of the bucket.
+     * @param row the row, with the X value first
+     * @return row for the bucket the row falls in, which is the same array as the previous call returned
+     *         if the row falls in the same bucket, or null if the row's X value is NaN
+     */
+    public double[] add(double[] row) {
+        if(Double.isNaN(row[0])) {
+            return null;
+        }
+        long number = (long) Math.floor(row[0] / width);
+        if(bucket == null || number != bucketNumber || bucket.length != row.length) {
+            // Rows already handed out may still be in use, so a new array is needed.
+            bucket = new double[row.length];
+            Arrays.fill(bucket, Double.NaN);
+            bucket[0] = number * width;
+            bucketNumber = number;
+            if(counts == null || counts.length != row.length) {
+                counts = new long[row.length];
+                sums = new double[row.length];
+            } else {
+                Arrays.fill(counts, 0);
+                Arrays.fill(sums, 0);
+            }
+        }
+        for(int i = 1; i < row.length; i++) {
+            double value = row[i];
+            if(Double.isNaN(value)) {
+                continue;
+            }
+            long count = ++counts[i];
+            switch(aggregation) {
+            case AVG:
+                sums[i] += value;
+                bucket[i] = sums[i] / count;
+                break;
+            case MIN:
+                if(count == 1 || value < bucket[i]) {
+                    bucket[i] = value;
+                }
+                break;
+            case MAX:
+                if(count == 1 || value > bucket[i]) {
+                    bucket[i] = value;
+                }
+                break;
+            case LAST:
+                bucket[i] = value;
+                break;
+            case SUM:
+                sums[i] += value;
+                bucket[i] = sums[i];
+                break;
+            case COUNT:
+                bucket[i] = count;
+                break;
+            }
+        }
+        return bucket;
+    }
+
+
+    /**
+     * Discards the bucket in progress.
+     */
+    public void clear() {
+        bucket = null;
+    }
+}
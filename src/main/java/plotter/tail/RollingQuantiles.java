@@ -0,0 +1,175 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+/**
+ * Computes quantiles of a field over a sliding window of X values.
+ * The window is divided into panes, each with its own {@link QuantileSketch}.
+ * Values are added to the current pane and to a sketch of the whole window.
+ * When a pane is complete, the quantiles are read from the window sketch and the oldest pane is subtracted from it,
+ * so the cost per value is constant, amortized over the values in a pane.
+ * @author Adam Crume
+ */
+class RollingQuantiles {
+    /** Number of panes the window is divided into. */
+    private static final int PANES = 10;
+
+    /** Index of the input field (1-based). */
+    private final int column;
+
+    /** Quantiles to compute, between 0 and 1. */
+    private final double[] quantiles;
+
+    /** Width of a pane in X units. */
+    private final double paneWidth;
+
+    /** Sketches of the panes, indexed by pane number modulo {@link #PANES}. */
+    private final QuantileSketch[] panes = new QuantileSketch[PANES];
+
+    /** Sketch of all the panes in the window. */
+    private final QuantileSketch window = new QuantileSketch();
+
+    /** Number of the current pane, or {@link Long#MIN_VALUE} if no values have been added. */
+    private long currentPane = Long.MIN_VALUE;
+
+    /** Most recently computed values of the quantiles. */
+    private final double[] values;
+
+    /** Index of the source field within the selected fields, or -1 if not yet known. */
+    private int fieldIndex = -1;
+
+
+    /**
+     * Creates rolling quantiles.
+     * @param column index of the input field (1-based)
+     * @param width width of the window in X units
+     * @param quantiles quantiles to compute, between 0 and 1
+     */
+    public RollingQuantiles(int column, double width, double[] quantiles) {
+        this.column = column;
+        this.quantiles = quantiles;
+        this.paneWidth = width / PANES;
+        this.values = new double[quantiles.length];
+        for(int i = 0; i < PANES; i++) {
+            panes[i] = new QuantileSketch();
+        }
+    }
+
+
+    /**
+     * Adds a value.
+     * @param x X value of the row
+     * @param value value of the field
+     * @return true if the window moved and the quantiles were recomputed
+     */
+    public boolean add(double x, double value) {
+        if(Double.isNaN(x)) {
+            return false;
+        }
+        long pane = (long) Math.floor(x / paneWidth);
+        boolean updated = false;
+        if(currentPane == Long.MIN_VALUE) {
+            currentPane = pane;
+        } else if(pane > currentPane) {
+            // The current pane is complete, so report the window ending with it.
+            for(int i = 0; i < quantiles.length; i++) {
+                values[i] = window.getQuantile(quantiles[i]);
+            }
+            updated = true;
+            // Expire panes that are now outside the window.
+            long steps = Math.min(pane - currentPane, PANES);
+            for(long p = pane - steps + 1; p <= pane; p++) {
+                QuantileSketch expired = panes[slot(p)];
+                window.subtract(expired);
+                expired.clear();
+            }
+            currentPane = pane;
+        }
+        // If X moved backwards, the value is counted in the current pane.
+        panes[slot(currentPane)].add(value);
+        window.add(value);
+        return updated;
+    }
+
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        for(QuantileSketch pane : panes) {
+            pane.clear();
+        }
+        window.clear();
+        currentPane = Long.MIN_VALUE;
+    }
+
+
+    /**
+     * Returns the slot in {@link #panes} for a pane number.
+     * @param pane pane number
+     * @return slot for the pane
+     */
+    private static int slot(long pane) {
+        return (int) (((pane % PANES) + PANES) % PANES);
+    }
+
+
+    /**
+     * Returns the index of the input field.
+     * @return the index of the input field (1-based)
+     */
+    public int getColumn() {
+        return column;
+    }
+
+
+    /**
+     * Returns the quantiles being computed.
+     * @return the quantiles, between 0 and 1
+     */
+    public double[] getQuantiles() {
+        return quantiles;
+    }
+
+
+    /**
+     * Returns the most recently computed value of a quantile.
+     * @param i index into {@link #getQuantiles()}
+     * @return the value of the quantile
+     */
+    public double getValue(int i) {
+        return values[i];
+    }
+
+
+    /**
+     * Returns the index of the source field within the selected fields.
+     * @return the index of the source field, or -1 if not yet known
+     */
+    public int getFieldIndex() {
+        return fieldIndex;
+    }
+
+
+    /**
+     * Sets the index of the source field within the selected fields.
+     * @param fieldIndex the index of the source field
+     */
+    public void setFieldIndex(int fieldIndex) {
+        this.fieldIndex = fieldIndex;
+    }
+}
@@ -0,0 +1,425 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import plotter.DoubleData;
+import plotter.xy.XYAxis;
+import plotter.xy.XYDimension;
+import plotter.xy.XYPlotLine;
+
+/**
+ * Caches the pixel coordinates of a plot line's visible points.
+ * Points appended while the axes are unchanged are projected incrementally,
+ * and the cache is discarded when an axis moves, the component is resized, or data is removed.
+ * For lines with sorted X values, the coordinates are cached from the point before the visible range to the point after it.
+ * For scatter plots, the points are indexed in a {@link PointGrid} in data space, which doesn't depend on the axes.
+ * It is only brought up to date when the nearest point is looked up.
+ * Must only be used on the Swing thread.
+ * @author Adam Crume
+ */
+class ScreenCoordinates {
+    /** Y coordinate of points with a NaN Y value. */
+    public static final int UNDEFINED = Integer.MIN_VALUE;
+
+    /** Pixel coordinates are clamped to this magnitude to avoid overflow. */
+    private static final double MAX_COORDINATE = 1e6;
+
+    /** Initial distance in pixels around a location to search for the nearest point. */
+    private static final int SEARCH_RADIUS = 8;
+
+    /** Line whose points are cached. */
+    private final XYPlotLine line;
+
+    /** True if the line's X values are sorted and the X axis increases to the right. */
+    private boolean sorted;
+
+    /** True if the line is a scatter plot whose points can be searched with {@link #getNearestPoint(int, int)}. */
+    private boolean scattered;
+
+    /** Index of the first cached point. */
+    private int first;
+
+    /** Number of cached points. */
+    private int count;
+
+    /** X pixel coordinates. */
+    private int[] xs = new int[16];
+
+    /** Y pixel coordinates, or {@link #UNDEFINED}. */
+    private int[] ys = new int[16];
+
+    /** Start of the X axis the points were projected with. */
+    private double xStart = Double.NaN;
+
+    /** X pixel coordinate of the start of the X axis. */
+    private double x0;
+
+    /** Pixels per X unit. */
+    private double xScale;
+
+    /** Start of the Y axis the points were projected with. */
+    private double yStart;
+
+    /** Y pixel coordinate of the start of the Y axis. */
+    private double y0;
+
+    /** Pixels per Y unit. */
+    private double yScale;
+
+    /** Modification count of the line when the points were projected. */
+    private int modCount;
+
+    /** Width of the component the points were projected for. */
+    private int width;
+
+    /** Height of the component the points were projected for. */
+    private int height;
+
+    /** Index of the points of a scatter plot, or null if it hasn't been needed. */
+    private PointGrid grid;
+
+    /** Index of the nearest point found so far by {@link #getNearestPoint(int, int)}. */
+    private int searchIndex;
+
+    /** Squared distance to the nearest point found so far by {@link #getNearestPoint(int, int)}. */
+    private long searchDistance;
+
+    /** X values of the line being searched by {@link #getNearestPoint(int, int)}. */
+    private DoubleData searchXData;
+
+    /** Y values of the line being searched by {@link #getNearestPoint(int, int)}. */
+    private DoubleData searchYData;
+
+    /** X pixel coordinate being searched for by {@link #getNearestPoint(int, int)}. */
+    private int searchX;
+
+    /** Y pixel coordinate being searched for by {@link #getNearestPoint(int, int)}. */
+    private int searchY;
+
+    /** Checks the points found in the grid. */
+    private final PointGrid.Visitor searchVisitor = new PointGrid.Visitor() {
+        @Override
+        public void visit(int index) {
+            checkPoint(index, searchXData, searchYData, searchX, searchY);
+        }
+    };
+
+
+    /**
+     * Creates a cache.
+     * @param line line whose points are cached
+     */
+    public ScreenCoordinates(XYPlotLine line) {
+        this.line = line;
+    }
+
+
+    /**
+     * Brings the cache up to date.
+     * @param target component whose coordinate system is used
+     */
+    public void update(JComponent target) {
+        XYAxis xAxis = line.getXAxis();
+        XYAxis yAxis = line.getYAxis();
+        double xStart = xAxis.getStart();
+        double xEnd = xAxis.getEnd();
+        double yStart = yAxis.getStart();
+        double yEnd = yAxis.getEnd();
+        double x0 = SwingUtilities.convertPoint(xAxis, xAxis.toPhysical(xStart), 0, target).x;
+        double xScale = (SwingUtilities.convertPoint(xAxis, xAxis.toPhysical(xEnd), 0, target).x - x0) / (xEnd - xStart);
+        double y0 = SwingUtilities.convertPoint(yAxis, 0, yAxis.toPhysical(yStart), target).y;
+        double yScale = (SwingUtilities.convertPoint(yAxis, 0, yAxis.toPhysical(yEnd), target).y - y0) / (yEnd - yStart);
+        int modCount = line instanceof MultiplexingXYPlotLine ? ((MultiplexingXYPlotLine) line).getModCount() : 0;
+        int width = target.getWidth();
+        int height = target.getHeight();
+
+        boolean independentX = line.getIndependentDimension() == XYDimension.X;
+        boolean finite = !Double.isNaN(xScale) && !Double.isInfinite(xScale) && !Double.isNaN(yScale)
+                && !Double.isInfinite(yScale);
+        boolean sorted = independentX && finite && xScale > 0;
+        boolean scattered = !independentX && finite && width > 0 && height > 0;
+        boolean moved = xStart != this.xStart || x0 != this.x0 || xScale != this.xScale || yStart != this.yStart
+                || y0 != this.y0 || yScale != this.yScale || modCount != this.modCount || sorted != this.sorted
+                || scattered != this.scattered;
+        this.sorted = sorted;
+        this.scattered = scattered;
+        this.width = width;
+        this.height = height;
+        if(moved) {
+            this.xStart = xStart;
+            this.x0 = x0;
+            this.xScale = xScale;
+            this.yStart = yStart;
+            this.y0 = y0;
+            this.yScale = yScale;
+            this.modCount = modCount;
+        }
+        if(sorted) {
+            updateSorted(moved, xEnd);
+        } else {
+            count = 0;
+        }
+    }
+
+
+    /**
+     * Discards the cache.
+     * Must be called when the line's data is modified in place, such as when it is converted to or from a log scale.
+     */
+    public void reset() {
+        xStart = Double.NaN;
+        count = 0;
+        grid = null;
+    }
+
+
+    /**
+     * Brings the cached coordinates of a sorted line up to date.
+     * @param moved true if the axes or data changed, other than by appending
+     * @param xEnd end of the X axis
+     */
+    private void updateSorted(boolean moved, double xEnd) {
+        DoubleData xData = line.getXData();
+        DoubleData yData = line.getYData();
+        int n = xData.getLength();
+        int from = Math.max(0, insertionPoint(xData, xStart) - 1);
+        int to = Math.min(n, insertionPoint(xData, xEnd) + 1);
+        if(moved || from != first || to < first + count) {
+            first = from;
+            count = 0;
+        }
+        int newCount = to - first;
+        if(newCount > xs.length) {
+            int capacity = Math.max(newCount, xs.length * 2);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+        // The last point is projected again, since its Y value may have been replaced in place.
+        for(int i = Math.max(0, count - 1); i < newCount; i++) {
+            xs[i] = clamp(x0 + (xData.get(first + i) - xStart) * xScale);
+            double y = yData.get(first + i);
+            ys[i] = Double.isNaN(y) ? UNDEFINED : clamp(y0 + (y - yStart) * yScale);
+        }
+        count = newCount;
+    }
+
+
+    /**
+     * Returns true if the line's points are cached.
+     * If not, the line's X values are not sorted or the X axis doesn't increase to the right.
+     * @return true if the line's points are cached
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+
+    /**
+     * Returns the index of the point with the nearest X pixel coordinate.
+     * @param x X pixel coordinate
+     * @return the index of the point in the line's data, or -1 if there are no points
+     */
+    public int getNearestIndex(int x) {
+        return getNearestIndex(x, -1);
+    }
+
+
+    /**
+     * Returns the index of the point with the nearest X pixel coordinate.
+     * The search starts at a hint, such as the previous result, so small mouse movements only look at a few points.
+     * @param x X pixel coordinate
+     * @param hint index of a point near the result, or -1
+     * @return the index of the point in the line's data, or -1 if there are no points
+     */
+    public int getNearestIndex(int x, int hint) {
+        if(count == 0) {
+            return -1;
+        }
+        // Find the first point at or after x, between lo and hi (inclusive).
+        int lo = 0;
+        int hi = count;
+        int h = hint - first;
+        if(h >= 0 && h < count) {
+            // Gallop away from the hint until the point is bracketed.
+            if(xs[h] < x) {
+                lo = h + 1;
+                for(int step = 1; lo + step - 1 < count; step <<= 1) {
+                    int p = lo + step - 1;
+                    if(xs[p] >= x) {
+                        hi = p;
+                        break;
+                    }
+                    lo = p + 1;
+                }
+            } else {
+                hi = h;
+                for(int step = 1; hi - step >= 0; step <<= 1) {
+                    int p = hi - step;
+                    if(xs[p] < x) {
+                        lo = p + 1;
+                        break;
+                    }
+                    hi = p;
+                }
+            }
+        }
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(xs[mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if(lo == count) {
+            lo--;
+        }
+        if(lo > 0 && x - xs[lo - 1] < xs[lo] - x) {
+            lo--;
+        }
+        return first + lo;
+    }
+
+
+    /**
+     * Returns true if the line is a scatter plot which can be searched with {@link #getNearestPoint(int, int)}.
+     * @return true if the line can be searched in both dimensions
+     */
+    public boolean isScattered() {
+        return scattered;
+    }
+
+
+    /**
+     * Returns the index of the visible point nearest a location.
+     * Points are looked up in the grid within a square around the location, which grows until it contains a point
+     * which is at least as close as anything outside it.
+     * Distances are measured between rounded pixel coordinates, and ties go to the newest point, which is drawn on top.
+     * @param x X pixel coordinate
+     * @param y Y pixel coordinate
+     * @return the index of the point in the line's data, or -1 if no points are visible
+     */
+    public int getNearestPoint(int x, int y) {
+        if(!scattered) {
+            return -1;
+        }
+        DoubleData xData = line.getXData();
+        DoubleData yData = line.getYData();
+        int n = Math.min(xData.getLength(), yData.getLength());
+        if(grid == null) {
+            grid = new PointGrid();
+        }
+        // The last point isn't indexed, since its Y value may be replaced in place.
+        grid.update(xData, yData, Math.max(0, n - 1), modCount);
+        searchIndex = -1;
+        searchDistance = Long.MAX_VALUE;
+        if(n > 0) {
+            checkPoint(n - 1, xData, yData, x, y);
+        }
+        searchXData = xData;
+        searchYData = yData;
+        searchX = x;
+        searchY = y;
+        long maxRadius = (long) Math.abs(x) + Math.abs(y) + width + height;
+        for(long r = SEARCH_RADIUS;; r *= 2) {
+            // Points outside the square are more than r pixels away, even after rounding.
+            double xa = xStart + (x - r - 1 - x0) / xScale;
+            double xb = xStart + (x + r + 1 - x0) / xScale;
+            double ya = yStart + (y - r - 1 - y0) / yScale;
+            double yb = yStart + (y + r + 1 - y0) / yScale;
+            grid.search(Math.min(xa, xb), Math.max(xa, xb), Math.min(ya, yb), Math.max(ya, yb), searchVisitor);
+            if(searchDistance <= r * r || r > maxRadius) {
+                break;
+            }
+        }
+        searchXData = null;
+        searchYData = null;
+        return searchIndex;
+    }
+
+
+    /**
+     * Checks whether a point is visible and nearer than {@link #searchDistance}.
+     * @param index index of the point
+     * @param xData X values
+     * @param yData Y values
+     * @param x X pixel coordinate being searched for
+     * @param y Y pixel coordinate being searched for
+     */
+    private void checkPoint(int index, DoubleData xData, DoubleData yData, int x, int y) {
+        double px = x0 + (xData.get(index) - xStart) * xScale;
+        double py = y0 + (yData.get(index) - yStart) * yScale;
+        // Also rejects NaNs
+        if(!(px > -.5 && px < width - .5 && py > -.5 && py < height - .5)) {
+            return;
+        }
+        long dx = Math.round(px) - x;
+        long dy = Math.round(py) - y;
+        long distance = dx * dx + dy * dy;
+        if(distance < searchDistance || (distance == searchDistance && index > searchIndex)) {
+            searchDistance = distance;
+            searchIndex = index;
+        }
+    }
+
+
+    /**
+     * Returns the X pixel coordinate of a point.
+     * @param index index of the point in the line's data
+     * @return the X pixel coordinate
+     */
+    public int getX(int index) {
+        return xs[index - first];
+    }
+
+
+    /**
+     * Returns the Y pixel coordinate of a point.
+     * @param index index of the point in the line's data
+     * @return the Y pixel coordinate, or {@link #UNDEFINED} if the Y value is NaN
+     */
+    public int getY(int index) {
+        return ys[index - first];
+    }
+
+
+    /**
+     * Finds where a value would be inserted into sorted data.
+     * @param data sorted data
+     * @param value value to search for
+     * @return index of the value or where it would be inserted
+     */
+    private static int insertionPoint(DoubleData data, double value) {
+        int ix = data.binarySearch(value);
+        return ix < 0 ? -ix - 1 : ix;
+    }
+
+
+    /**
+     * Converts a pixel coordinate to an int, clamping it to avoid overflow.
+     * @param p pixel coordinate
+     * @return the clamped, rounded coordinate
+     */
+    private static int clamp(double p) {
+        return (int) Math.round(Math.max(-MAX_COORDINATE, Math.min(MAX_COORDINATE, p)));
+    }
+}
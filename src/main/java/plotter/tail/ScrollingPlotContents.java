@@ -0,0 +1,372 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import plotter.xy.XYAxis;
+import plotter.xy.XYGrid;
+import plotter.xy.XYPlotContents;
+import plotter.xy.XYPlotLine;
+
+/**
+ * Plot contents which keep the grid and plot lines in an offscreen raster while scrolling.
+ * When the X axis is shifted without being rescaled, the raster is shifted by the same number of pixels,
+ * and only the newly exposed strip and the columns containing new data are rendered.
+ * Everything is rendered again when the Y axes or the width of the X axis change, or when the component is resized.
+ * Because the raster is shifted by whole pixels, the grid and lines may be off by up to half a pixel
+ * at the edge of the newly rendered strip.
+ * Other components, such as markers, are painted normally on top of the raster.
+ * Alternatively, the plot lines can be rasterized off the Swing thread by a {@link BackgroundRenderer},
+ * in which case the raster is not used.
+ * @author Adam Crume
+ */
+class ScrollingPlotContents extends XYPlotContents {
+    private static final long serialVersionUID = 1L;
+
+    /** Extra pixels rendered on each side of a damaged region, to cover line widths and point shapes. */
+    private static final int MARGIN = 8;
+
+    /** X axis. */
+    private final XYAxis xAxis;
+
+    /** Y axis. */
+    private final XYAxis yAxis;
+
+    /** Second Y axis, or null. */
+    private final XYAxis y2Axis;
+
+    /** True if the raster is used. */
+    private boolean scrolling;
+
+    /** Grid and plot lines, or null if not yet rendered. */
+    private BufferedImage raster;
+
+    /** False if the raster must be rendered again from scratch. */
+    private boolean valid;
+
+    /** Start of the X axis when the raster was last rendered or shifted. */
+    private double rasterXStart;
+
+    /** Width of the X axis when the raster was rendered. */
+    private double rasterXWidth;
+
+    /** Start of the Y axis when the raster was rendered. */
+    private double rasterYStart;
+
+    /** End of the Y axis when the raster was rendered. */
+    private double rasterYEnd;
+
+    /** Start of the second Y axis when the raster was rendered. */
+    private double rasterY2Start;
+
+    /** End of the second Y axis when the raster was rendered. */
+    private double rasterY2End;
+
+    /** Renders the plot lines off the Swing thread, or null to paint them normally. */
+    private BackgroundRenderer backgroundRenderer;
+
+    /** Minimum X value of data added since the raster was rendered. */
+    private double damageMinX = Double.POSITIVE_INFINITY;
+
+    /** Maximum X value of data added since the raster was rendered. */
+    private double damageMaxX = Double.NEGATIVE_INFINITY;
+
+
+    /**
+     * Creates plot contents.
+     * @param xAxis X axis
+     * @param yAxis Y axis
+     * @param y2Axis second Y axis, or null
+     */
+    public ScrollingPlotContents(XYAxis xAxis, XYAxis yAxis, XYAxis y2Axis) {
+        this.xAxis = xAxis;
+        this.yAxis = yAxis;
+        this.y2Axis = y2Axis;
+    }
+
+
+    /**
+     * Returns true if the raster is used.
+     * @return true if the raster is used
+     */
+    public boolean isScrolling() {
+        return scrolling;
+    }
+
+
+    /**
+     * Sets whether the raster is used.
+     * @param scrolling true if the raster should be used
+     */
+    public void setScrolling(boolean scrolling) {
+        this.scrolling = scrolling;
+        if(!scrolling) {
+            raster = null;
+        }
+        invalidateRaster();
+    }
+
+
+    /**
+     * Sets the renderer used to rasterize the plot lines off the Swing thread.
+     * @param backgroundRenderer the renderer, or null to paint the plot lines normally
+     */
+    public void setBackgroundRenderer(BackgroundRenderer backgroundRenderer) {
+        this.backgroundRenderer = backgroundRenderer;
+        repaint();
+    }
+
+
+    /**
+     * Records that data was added to a plot line, so the columns containing it are rendered again.
+     * @param minX minimum X value of the data, including the point it connects to
+     * @param maxX maximum X value of the data
+     */
+    public void dataAdded(double minX, double maxX) {
+        if(minX < damageMinX) {
+            damageMinX = minX;
+        }
+        if(maxX > damageMaxX) {
+            damageMaxX = maxX;
+        }
+        if(backgroundRenderer != null) {
+            backgroundRenderer.dataAdded(minX, maxX);
+        }
+    }
+
+
+    /**
+     * Records that data was removed or changed in place, so everything must be rendered again.
+     */
+    public void dataChanged() {
+        valid = false;
+        if(backgroundRenderer != null) {
+            backgroundRenderer.clear();
+        }
+    }
+
+
+    /**
+     * Forces the raster to be rendered again from scratch the next time the contents are painted.
+     */
+    public void invalidateRaster() {
+        valid = false;
+    }
+
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        // Explicit repaints come from components being added, removed or hidden, which the raster can't track.
+        valid = false;
+        super.repaint(tm, x, y, width, height);
+    }
+
+
+    @Override
+    protected void paintChildren(Graphics g) {
+        if(backgroundRenderer != null) {
+            paintInBackground(g);
+            return;
+        }
+        if(!scrolling) {
+            super.paintChildren(g);
+            return;
+        }
+        int width = getWidth();
+        int height = getHeight();
+        if(width <= 0 || height <= 0) {
+            return;
+        }
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        Rectangle clip = g.getClipBounds();
+        if(clip == null) {
+            clip = bounds;
+        }
+        if(raster == null || raster.getWidth() != width || raster.getHeight() != height) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            if(gc != null) {
+                raster = gc.createCompatibleImage(width, height);
+            } else {
+                raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            valid = false;
+        }
+
+        double xStart = xAxis.getStart();
+        double xWidth = xAxis.getEnd() - xStart;
+        double scale = width / xWidth;
+        int shift = 0;
+        if(valid) {
+            // The width isn't compared exactly, because the scrolling range is computed as (max + margin) - (max - width - margin).
+            if(Math.abs(xWidth - rasterXWidth) * scale > .01 || !sameRange(yAxis, rasterYStart, rasterYEnd)
+                    || (y2Axis != null && !sameRange(y2Axis, rasterY2Start, rasterY2End))) {
+                valid = false;
+            } else {
+                shift = (int) Math.round((xStart - rasterXStart) * scale);
+                if(Math.abs(shift) >= width) {
+                    valid = false;
+                }
+            }
+        }
+
+        Graphics2D rg = raster.createGraphics();
+        try {
+            if(!valid) {
+                renderRaster(rg, bounds);
+                rasterXStart = xStart;
+                rasterXWidth = xWidth;
+                rasterYStart = yAxis.getStart();
+                rasterYEnd = yAxis.getEnd();
+                if(y2Axis != null) {
+                    rasterY2Start = y2Axis.getStart();
+                    rasterY2End = y2Axis.getEnd();
+                }
+                valid = true;
+            } else {
+                Rectangle damage = null;
+                if(shift != 0) {
+                    if(shift > 0) {
+                        rg.copyArea(shift, 0, width - shift, height, -shift, 0);
+                        damage = new Rectangle(width - shift - MARGIN, 0, shift + MARGIN, height);
+                    } else {
+                        rg.copyArea(0, 0, width + shift, height, -shift, 0);
+                        damage = new Rectangle(0, 0, MARGIN - shift, height);
+                    }
+                    // Only move the raster's start by whole pixels, so the error doesn't accumulate.
+                    rasterXStart += shift / scale;
+                }
+                if(damageMinX <= damageMaxX) {
+                    int x1 = SwingUtilities.convertPoint(xAxis, xAxis.toPhysical(damageMinX), 0, this).x;
+                    int x2 = SwingUtilities.convertPoint(xAxis, xAxis.toPhysical(damageMaxX), 0, this).x;
+                    Rectangle columns = new Rectangle(Math.min(x1, x2) - MARGIN, 0, Math.abs(x2 - x1) + 2 * MARGIN, height);
+                    damage = damage == null ? columns : damage.union(columns);
+                }
+                // A repaint of the whole area while scrolling is just the scroll, which has been handled.
+                if(shift == 0 || !clip.contains(bounds)) {
+                    damage = damage == null ? clip : damage.union(clip);
+                }
+                if(damage != null) {
+                    renderRaster(rg, damage.intersection(bounds));
+                }
+            }
+        } finally {
+            rg.dispose();
+        }
+        damageMinX = Double.POSITIVE_INFINITY;
+        damageMaxX = Double.NEGATIVE_INFINITY;
+
+        g.drawImage(raster, 0, 0, null);
+        for(int i = getComponentCount() - 1; i >= 0; i--) {
+            Component c = getComponent(i);
+            if(c.isVisible() && !isRastered(c)) {
+                paintChild(g, c);
+            }
+        }
+    }
+
+
+    /**
+     * Paints the grid, then the plot lines as rendered by the {@link #backgroundRenderer}, then everything else.
+     * @param g graphics to paint with
+     */
+    private void paintInBackground(Graphics g) {
+        List<XYPlotLine> lines = new ArrayList<XYPlotLine>();
+        for(int i = getComponentCount() - 1; i >= 0; i--) {
+            Component c = getComponent(i);
+            if(c instanceof XYPlotLine) {
+                lines.add((XYPlotLine) c);
+            } else if(c instanceof XYGrid && c.isVisible()) {
+                paintChild(g, c);
+            }
+        }
+        backgroundRenderer.paint(g, lines);
+        for(int i = getComponentCount() - 1; i >= 0; i--) {
+            Component c = getComponent(i);
+            if(c.isVisible() && !isRastered(c)) {
+                paintChild(g, c);
+            }
+        }
+    }
+
+
+    /**
+     * Renders part of the raster.
+     * @param rg graphics for the raster
+     * @param region region to render
+     */
+    private void renderRaster(Graphics2D rg, Rectangle region) {
+        if(region.isEmpty()) {
+            return;
+        }
+        rg.setClip(region);
+        rg.setColor(getBackground());
+        rg.fillRect(region.x, region.y, region.width, region.height);
+        for(int i = getComponentCount() - 1; i >= 0; i--) {
+            Component c = getComponent(i);
+            if(c.isVisible() && isRastered(c)) {
+                paintChild(rg, c);
+            }
+        }
+    }
+
+
+    /**
+     * Paints a child component.
+     * @param g graphics in this component's coordinates
+     * @param c child to paint
+     */
+    private static void paintChild(Graphics g, Component c) {
+        Graphics cg = g.create(c.getX(), c.getY(), c.getWidth(), c.getHeight());
+        try {
+            c.paint(cg);
+        } finally {
+            cg.dispose();
+        }
+    }
+
+
+    /**
+     * Returns true if a child is kept in the raster.
+     * @param c child component
+     * @return true if the child is kept in the raster
+     */
+    private static boolean isRastered(Component c) {
+        return c instanceof XYPlotLine || c instanceof XYGrid;
+    }
+
+
+    /**
+     * Checks whether an axis still has the same range.
+     * @param axis the axis
+     * @param start previous start
+     * @param end previous end
+     * @return true if the range is unchanged
+     */
+    private static boolean sameRange(XYAxis axis, double start, double end) {
+        return axis.getStart() == start && axis.getEnd() == end;
+    }
+}
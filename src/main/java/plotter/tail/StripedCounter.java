@@ -0,0 +1,67 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that can be incremented from several threads without contention.
+ * Each thread adds to one of several cells, chosen by thread ID, and the cells are summed when the counter is read.
+ * The cells are spaced a cache line apart so that threads updating different cells don't slow each other down.
+ * @author Adam Crume
+ */
+class StripedCounter {
+    /** Number of cells.  Must be a power of two. */
+    private static final int STRIPES = 8;
+
+    /** Distance between cells, in longs.  64 bytes is the most common cache line size. */
+    private static final int SPACING = 8;
+
+    /** The cells. */
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+
+    /**
+     * Adds to the counter.
+     * @param n amount to add
+     */
+    public void add(long n) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        cells.getAndAdd(stripe * SPACING, n);
+    }
+
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment() {
+        add(1);
+    }
+
+
+    /**
+     * Returns the value of the counter.
+     * The result is not an atomic snapshot if the counter is being updated concurrently.
+     * @return the value of the counter
+     */
+    public long get() {
+        long sum = 0;
+        for(int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * SPACING);
+        }
+        return sum;
+    }
+}
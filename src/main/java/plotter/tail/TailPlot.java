@@ -18,8 +18,12 @@ package plotter.tail;
 
 import java.awt.AWTEvent;
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.GridBagLayout;
 import java.awt.Image;
 import java.awt.Insets;
@@ -28,8 +32,14 @@ import java.awt.Stroke;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.MessageFormat;
@@ -40,10 +50,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import javax.imageio.ImageIO;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFormattedTextField;
@@ -55,6 +70,7 @@ import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.TableModelEvent;
@@ -68,8 +84,9 @@ import plotter.Legend;
 import plotter.LegendItem;
 import plotter.xy.LinearXYAxis;
 import plotter.xy.PointData;
-import plotter.xy.SimpleXYDataset;
 import plotter.xy.XYAxis;
+import plotter.xy.XYPlot;
+import plotter.xy.XYPlotContents;
 import plotter.xy.XYPlotLine;
 
 public class TailPlot {
@@ -81,6 +98,51 @@ public class TailPlot {
 
     private XYPlotFrame frame;
 
+    /** Window displaying the plot, or null if rendering to an image. */
+    private JFrame window;
+
+    /** Image file to render the plot to, or null to display the plot in a window. */
+    private File outputFile;
+
+    /** Size of the image rendered to {@link #outputFile}. */
+    private Dimension outputSize = new Dimension(400, 300);
+
+    /** True if summary statistics are printed instead of plotting. */
+    private boolean statistics;
+
+    /** Milliseconds between printing summary statistics while following files, or 0 to print once at the end. */
+    private long statisticsInterval;
+
+    /** Milliseconds between printing latency measurements, or 0 if latency is not measured. */
+    private long latencyInterval;
+
+    /** Measures latency, or null if latency is not measured.  Only accessed on the Swing thread. */
+    private LatencyMonitor latencyMonitor;
+
+    /** Runtime metrics. */
+    private final Metrics metrics = new Metrics();
+
+    /** Refreshes the metrics, or null if they are not refreshed.  Only accessed on the Swing thread. */
+    private Timer metricsTimer;
+
+    /** Maximum number of times per second the axes are updated and the plot repainted. */
+    private double fps = 30;
+
+    /** True if plot lines are rasterized off the Swing thread. */
+    private boolean backgroundRendering;
+
+    /** Rasterizes plot lines off the Swing thread, or null. */
+    private BackgroundRenderer backgroundRenderer;
+
+    /** True if autoscaled axes only change in round steps when the data leaves their range. */
+    private boolean autoscaleHysteresis;
+
+    /** Limits how often the axes are updated and the plot repainted. */
+    private RenderScheduler renderScheduler;
+
+    /** Counts down as files are read to the end and will not be read further. */
+    private CountDownLatch runningFiles;
+
     private XYAxis xAxis;
 
     private XYAxis yAxis;
@@ -92,12 +154,12 @@ public class TailPlot {
 
     private Iterator<Color> colors;
 
-    private MetaAxis metaX = new MetaAxis() {
+    private MetaAxis metaX = new MetaAxis("X") {
         public List<DoubleData> getDatasets() {
             List<DoubleData> datasets = new ArrayList<DoubleData>();
             for(DataFile dataFile : dataFiles) {
                 for(Field f : dataFile.getFields()) {
-                    SimpleXYDataset dataset = f.getDataset();
+                    PlotDataset dataset = f.getDataset();
                     if(dataset != null) {
                         datasets.add(dataset.getXData());
                     }
@@ -112,6 +174,7 @@ public class TailPlot {
             pointHightlighter.setLogX(logscale);
             locationFormat.setLogX(logscale);
             slopeFormat.setLogX(logscale);
+            updateRenderTransform();
             frame.getPlot().repaint();
         }
 
@@ -122,14 +185,14 @@ public class TailPlot {
         }
     };
 
-    private MetaAxis metaY = new MetaAxis() {
+    private MetaAxis metaY = new MetaAxis("Y") {
         @Override
         public List<DoubleData> getDatasets() {
             List<DoubleData> datasets = new ArrayList<DoubleData>();
             for(DataFile dataFile : dataFiles) {
                 for(Field f : dataFile.getFields()) {
                     if(!f.isOnY2()) {
-                        SimpleXYDataset dataset = f.getDataset();
+                        PlotDataset dataset = f.getDataset();
                         if(dataset != null) {
                             datasets.add(dataset.getYData());
                         }
@@ -145,6 +208,7 @@ public class TailPlot {
             pointHightlighter.setLogY(logscale);
             locationFormat.setLogY(logscale);
             slopeFormat.setLogY(logscale);
+            updateRenderTransform();
             frame.getPlot().repaint();
         }
 
@@ -155,14 +219,14 @@ public class TailPlot {
         }
     };
 
-    private MetaAxis metaY2 = new MetaAxis() {
+    private MetaAxis metaY2 = new MetaAxis("Y2") {
         @Override
         public List<DoubleData> getDatasets() {
             List<DoubleData> datasets = new ArrayList<DoubleData>();
             for(DataFile dataFile : dataFiles) {
                 for(Field f : dataFile.getFields()) {
                     if(f.isOnY2()) {
-                        SimpleXYDataset dataset = f.getDataset();
+                        PlotDataset dataset = f.getDataset();
                         if(dataset != null) {
                             datasets.add(dataset.getYData());
                         }
@@ -176,6 +240,7 @@ public class TailPlot {
         @Override
         protected void logscaleUpdated(boolean logscale) {
             pointHightlighter.setLogY2(logscale);
+            updateRenderTransform();
             frame.getPlot().repaint();
         }
 
@@ -202,7 +267,12 @@ public class TailPlot {
 
     public static void main(String[] args) {
         try {
-            new TailPlot().run(args);
+            TailPlot tailPlot = new TailPlot();
+            tailPlot.run(args);
+            if(!tailPlot.isFollow() || tailPlot.latencyInterval > 0) {
+                // Nothing is displayed, so don't wait for reader threads or AWT to shut down.
+                System.exit(0);
+            }
         } catch(Exception e) {
             e.printStackTrace();
             System.exit(1);
@@ -225,20 +295,45 @@ public class TailPlot {
         System.err.println("      --y2-format=FMT           display format of the Y2 axis. Example: time,YYY-MM-dd_HH:mm:ss to display as a timestamp (default: number)");
         System.err.println("  -t, --title=TITLE             set the window title (defaults to the file name)");
         System.err.println("      --scroll-width=AMT        amount of data to keep on screen (in X axis units)");
+        System.err.println("      --output=FILE             render the plot to an image once all input is read, instead of opening a window (format is taken from the file extension)");
+        System.err.println("      --size=WxH                size of the image written by --output (default: 400x300)");
+        System.err.println("      --stats                   print summary statistics of each field once all input is read, instead of plotting");
+        System.err.println("      --stats-interval=SECS     print summary statistics every SECS seconds while following the files, instead of plotting");
+        System.err.println("      --fps=N                   update the axes and repaint at most N times per second (default: 30)");
+        System.err.println("      --autoscale-hysteresis    only rescale auto-scaled axes, to round values, when the data leaves their range");
+        System.err.println("      --background-render       rasterize plot lines on background threads, keeping the window responsive while large plots are drawn");
+        System.err.println("      --latency=SECS            print latency percentiles every SECS seconds instead of opening a window, treating X values as the times lines were written (see notes)");
         System.err.println("      --help                    display this message");
         System.err.println();
         System.err.println("File-specific options:");
         System.err.println("  -F, --field-separator=REGEX   set the field separator regex (default: [,\\t ]+)");
         System.err.println("  -f, --fields=FIELDS           field names (separated by the field separator)");
-        System.err.println("  -s, --select=FIELDS           comma-separated list of field indices to plot (1-based)");        
+        System.err.println("  -s, --select=FIELDS           comma-separated list of field indices to plot (1-based), or of key paths with --json");        
         System.err.println("      --y2=FIELDS               comma-separated list of field indices to place on the Y2 axis (1-based)");
-        System.err.println("  -x, --x=INDEX                 index of field to use as X value. Note that X values must be monotonically increasing. (1-based, default: line number is X value)");
+        System.err.println("  -x, --x=INDEX                 index of field to use as X value, or key path with --json. Note that X values must be monotonically increasing. (1-based, default: line number is X value)");
         System.err.println("      --field-format=FIELD,FMT  input format of a field. Example: 1,time,YYY-MM-dd_HH:mm:ss to read field 1 as a timestamp (default: number)");
         System.err.println("  -h, --header-line             use the first line as a header line");
+        System.err.println("      --quantiles=FIELD,WIDTH[,PCT...]  also plot percentiles of a field over a rolling window of WIDTH X units (default percentiles: 50,95,99)");
+        System.err.println("      --derive=NAME=EXPR        also plot a field computed from other fields. Example: 'ratio=col3/col4' (see notes)");
+        System.err.println("      --resample=BUCKET:AGG     plot one point per BUCKET X units, combining values with AGG: avg, min, max, last, sum or count");
+        System.err.println("      --csv[=SEP]               split lines as comma-separated values with optional double quotes (RFC 4180), using the single character SEP as the separator (default: ,)");
+        System.err.println("      --json                    read each line as a JSON object. --select and --x take key paths such as latency.p99, and field N is the Nth key path in --select");
+        System.err.println("      --pattern=REGEX           read fields from the capture groups of REGEX instead of splitting lines (field N is group N, and named groups name the fields)");
+        System.err.println("      --include=REGEX           only plot lines containing a match for REGEX");
+        System.err.println("      --exclude=REGEX           do not plot lines containing a match for REGEX");
+        System.err.println("      --where=EXPR              only plot lines where EXPR is true. Example: 'col2>0' (see notes)");
         System.err.println();
         System.err.println("Notes:");
         System.err.println("  If both --fields and --header-line are specified, the first line is skipped, and field names are taken from --fields.");
         System.err.println();
+        System.err.println("  Expressions for --derive and --where may use colN (field N, 1-based), x (the X value), numbers, parentheses, the operators + - * / % ^,");
+        System.err.println("  the comparisons < <= > >= == != (1 if true, 0 if false),");
+        System.err.println("  and the functions abs, sqrt, log, log10, exp, min, max, delta(e) (change from the previous line), rate(e) (change per X unit,");
+        System.err.println("  treating a decrease as a counter reset), ema(e,ALPHA) (exponential moving average), and sma(e,N) (mean of the last N lines).");
+        System.err.println();
+        System.err.println("  --latency measures the time from when a line was written until it is added to the plot, and until the plot is next painted.");
+        System.err.println("  The plot is painted offscreen at the --fps rate.  X values must be times in milliseconds since the epoch, as written by plotter.tail.LoadGenerator.");
+        System.err.println();
         System.err.println("  For compatibility with legacy scripts, if only one file is specified, the options may come before the file name, although this usage is discouraged.");
         System.err.println();
         System.err.println("Examples:");
@@ -265,15 +360,15 @@ public class TailPlot {
             } else if(args[i].startsWith("--fields=")) {
                 dataFile.setFieldString(args[i].substring("--fields=".length()));
             } else if(args[i].equals("-s")) {
-                dataFile.setSelection(parseIntList(args[++i]));
+                setSelection(dataFile, args[++i]);
             } else if(args[i].startsWith("--select=")) {
-                dataFile.setSelection(parseIntList(args[i].substring("--select=".length())));
+                setSelection(dataFile, args[i].substring("--select=".length()));
             } else if(args[i].startsWith("--y2=")) {
                 dataFile.setY2(parseIntList(args[i].substring("--y2=".length())));
             } else if(args[i].startsWith("-x")) {
-                dataFile.setX(Integer.parseInt(args[++i]));
+                setX(dataFile, args[++i]);
             } else if(args[i].startsWith("--x=")) {
-                dataFile.setX(Integer.parseInt(args[i].substring("--x=".length())));
+                setX(dataFile, args[i].substring("--x=".length()));
             } else if(args[i].startsWith("--field-format=")) {
                 String s = args[i].substring("--field-format=".length());
                 int ix = s.indexOf(",");
@@ -299,12 +394,46 @@ public class TailPlot {
                 setAxisFormat(metaY2, format);
             } else if(args[i].equals("--header-line") || args[i].equals("-h")) {
                 dataFile.setHeaderLine(true);
+            } else if(args[i].startsWith("--quantiles=")) {
+                dataFile.addRollingQuantiles(parseRollingQuantiles(args[i].substring("--quantiles=".length())));
+            } else if(args[i].startsWith("--derive=")) {
+                parseDerived(dataFile, args[i].substring("--derive=".length()));
+            } else if(args[i].startsWith("--resample=")) {
+                dataFile.setResampler(parseResampler(args[i].substring("--resample=".length())));
+            } else if(args[i].equals("--csv") || args[i].startsWith("--csv=")) {
+                dataFile.setCsvSeparator(parseCsvSeparator(args[i]));
+            } else if(args[i].equals("--json")) {
+                dataFile.setJson(true);
+            } else if(args[i].startsWith("--pattern=")) {
+                dataFile.setLinePattern(parseLinePattern(args[i].substring("--pattern=".length())));
+            } else if(args[i].startsWith("--include=")) {
+                dataFile.addLineFilter(parseLineFilter(args[i].substring("--include=".length()), false));
+            } else if(args[i].startsWith("--exclude=")) {
+                dataFile.addLineFilter(parseLineFilter(args[i].substring("--exclude=".length()), true));
+            } else if(args[i].startsWith("--where=")) {
+                dataFile.addPredicate(parseExpression(args[i].substring("--where=".length())));
             } else if(args[i].equals("-t")) {
                 title = args[++i];
             } else if(args[i].startsWith("--title=")) {
                 title = args[i].substring("--title=".length());
             } else if(args[i].startsWith("--scroll-width=")) {
                 scrollWidthString = args[i].substring("--scroll-width=".length());
+            } else if(args[i].startsWith("--output=")) {
+                setOutputFile(args[i].substring("--output=".length()));
+            } else if(args[i].startsWith("--size=")) {
+                setOutputSize(args[i].substring("--size=".length()));
+            } else if(args[i].equals("--stats")) {
+                statistics = true;
+            } else if(args[i].startsWith("--stats-interval=")) {
+                setStatisticsInterval(args[i].substring("--stats-interval=".length()));
+            } else if(args[i].startsWith("--latency=")) {
+                setLatencyInterval(args[i].substring("--latency=".length()));
+            } else if(args[i].startsWith("--fps=")) {
+                setFps(args[i].substring("--fps=".length()));
+            } else if(args[i].equals("--background-render")) {
+                backgroundRendering = true;
+            } else if(args[i].equals("--autoscale-hysteresis")) {
+                autoscaleHysteresis = true;
             } else if(args[i].equals("--help") || args[i].equals("-h")) {
                 usage(null);
             } else if(args[i].startsWith("-")) {
@@ -359,6 +488,101 @@ public class TailPlot {
     }
 
 
+    /**
+     * Sets the image file to render to based on the command line spec.
+     * @param path path of the image file
+     */
+    private void setOutputFile(String path) {
+        int ix = path.lastIndexOf('.');
+        String suffix = ix == -1 ? "" : path.substring(ix + 1);
+        if(!ImageIO.getImageWritersBySuffix(suffix).hasNext()) {
+            usage("Unrecognized image format for --output: " + path);
+        }
+        outputFile = new File(path);
+    }
+
+
+    /**
+     * Sets the size of the rendered image based on the command line spec.
+     * @param size size in the form WxH
+     */
+    private void setOutputSize(String size) {
+        int ix = size.indexOf('x');
+        try {
+            int width = Integer.parseInt(size.substring(0, ix));
+            int height = Integer.parseInt(size.substring(ix + 1));
+            if(width <= 0 || height <= 0) {
+                usage("Invalid size: " + size);
+            }
+            outputSize = new Dimension(width, height);
+        } catch(NumberFormatException e) {
+            usage("Invalid size: " + size);
+        } catch(IndexOutOfBoundsException e) {
+            usage("Invalid size: " + size);
+        }
+    }
+
+
+    /**
+     * Sets the interval for printing statistics based on the command line spec.
+     * @param seconds interval in seconds
+     */
+    private void setStatisticsInterval(String seconds) {
+        try {
+            statisticsInterval = (long) (Double.parseDouble(seconds) * 1000);
+        } catch(NumberFormatException e) {
+            usage("Invalid interval: " + seconds);
+        }
+        if(statisticsInterval <= 0) {
+            usage("Invalid interval: " + seconds);
+        }
+        statistics = true;
+    }
+
+
+    /**
+     * Sets the interval for printing latency based on the command line spec.
+     * @param seconds interval in seconds
+     */
+    private void setLatencyInterval(String seconds) {
+        try {
+            latencyInterval = (long) (Double.parseDouble(seconds) * 1000);
+        } catch(NumberFormatException e) {
+            usage("Invalid interval: " + seconds);
+        }
+        if(latencyInterval <= 0) {
+            usage("Invalid interval: " + seconds);
+        }
+    }
+
+
+    /**
+     * Sets the maximum frame rate based on the command line spec.
+     * @param fps frames per second
+     */
+    private void setFps(String fps) {
+        try {
+            this.fps = Double.parseDouble(fps);
+        } catch(NumberFormatException e) {
+            usage("Invalid frame rate: " + fps);
+        }
+        if(!(this.fps > 0)) {
+            usage("Invalid frame rate: " + fps);
+        }
+    }
+
+
+    /**
+     * Tells the background renderer which axes are log-scaled, so tiles rendered with other transforms aren't reused.
+     */
+    private void updateRenderTransform() {
+        if(backgroundRenderer != null) {
+            backgroundRenderer.setTransform((metaX.isLogscale() ? 1 : 0) | (metaY.isLogscale() ? 2 : 0)
+                    | (metaY2.isLogscale() ? 4 : 0));
+        }
+    }
+
+
     private void parseArgs(String[] args) {
         title = null;
         String scrollWidthString = null;
@@ -392,13 +616,13 @@ public class TailPlot {
                 if(dataFile == null) {
                     usage(args[i] + " must be used after file argument");
                 } else {
-                    dataFile.setSelection(parseIntList(args[++i]));
+                    setSelection(dataFile, args[++i]);
                 }
             } else if(args[i].startsWith("--select=")) {
                 if(dataFile == null) {
                     usage(args[i] + " must be used after file argument");
                 } else {
-                    dataFile.setSelection(parseIntList(args[i].substring("--select=".length())));
+                    setSelection(dataFile, args[i].substring("--select=".length()));
                 }
             } else if(args[i].startsWith("--y2=")) {
                 if(dataFile == null) {
@@ -410,13 +634,13 @@ public class TailPlot {
                 if(dataFile == null) {
                     usage(args[i] + " must be used after file argument");
                 } else {
-                    dataFile.setX(Integer.parseInt(args[++i]));
+                    setX(dataFile, args[++i]);
                 }
             } else if(args[i].startsWith("--x=")) {
                 if(dataFile == null) {
                     usage(args[i] + " must be used after file argument");
                 } else {
-                    dataFile.setX(Integer.parseInt(args[i].substring("--x=".length())));
+                    setX(dataFile, args[i].substring("--x=".length()));
                 }
             } else if(args[i].startsWith("--field-format=")) {
                 String s = args[i].substring("--field-format=".length());
@@ -451,12 +675,82 @@ public class TailPlot {
                 } else {
                     dataFile.setHeaderLine(true);
                 }
+            } else if(args[i].startsWith("--quantiles=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.addRollingQuantiles(parseRollingQuantiles(args[i].substring("--quantiles=".length())));
+                }
+            } else if(args[i].startsWith("--derive=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    parseDerived(dataFile, args[i].substring("--derive=".length()));
+                }
+            } else if(args[i].startsWith("--resample=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.setResampler(parseResampler(args[i].substring("--resample=".length())));
+                }
+            } else if(args[i].equals("--csv") || args[i].startsWith("--csv=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.setCsvSeparator(parseCsvSeparator(args[i]));
+                }
+            } else if(args[i].equals("--json")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.setJson(true);
+                }
+            } else if(args[i].startsWith("--pattern=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.setLinePattern(parseLinePattern(args[i].substring("--pattern=".length())));
+                }
+            } else if(args[i].startsWith("--include=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.addLineFilter(parseLineFilter(args[i].substring("--include=".length()), false));
+                }
+            } else if(args[i].startsWith("--exclude=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.addLineFilter(parseLineFilter(args[i].substring("--exclude=".length()), true));
+                }
+            } else if(args[i].startsWith("--where=")) {
+                if(dataFile == null) {
+                    usage(args[i] + " must be used after file argument");
+                } else {
+                    dataFile.addPredicate(parseExpression(args[i].substring("--where=".length())));
+                }
             } else if(args[i].equals("-t")) {
                 title = args[++i];
             } else if(args[i].startsWith("--title=")) {
                 title = args[i].substring("--title=".length());
             } else if(args[i].startsWith("--scroll-width=")) {
                 scrollWidthString = args[i].substring("--scroll-width=".length());
+            } else if(args[i].startsWith("--output=")) {
+                setOutputFile(args[i].substring("--output=".length()));
+            } else if(args[i].startsWith("--size=")) {
+                setOutputSize(args[i].substring("--size=".length()));
+            } else if(args[i].equals("--stats")) {
+                statistics = true;
+            } else if(args[i].startsWith("--stats-interval=")) {
+                setStatisticsInterval(args[i].substring("--stats-interval=".length()));
+            } else if(args[i].startsWith("--latency=")) {
+                setLatencyInterval(args[i].substring("--latency=".length()));
+            } else if(args[i].startsWith("--fps=")) {
+                setFps(args[i].substring("--fps=".length()));
+            } else if(args[i].equals("--background-render")) {
+                backgroundRendering = true;
+            } else if(args[i].equals("--autoscale-hysteresis")) {
+                autoscaleHysteresis = true;
             } else if(args[i].equals("--help") || args[i].equals("-h")) {
                 usage(null);
             } else if(args[i].startsWith("-")) {
@@ -499,6 +793,25 @@ public class TailPlot {
     public void run(String[] args) throws IOException {
         // If multiple files are specified, the legacy parser will hand over to the new parser.
         parseArgsLegacy(args);
+        if(latencyInterval > 0 && (outputFile != null || statistics)) {
+            usage("--latency cannot be used with --output, --stats, or --stats-interval");
+        }
+        if(outputFile != null || statistics || latencyInterval > 0) {
+            // Must be set before AWT is initialized.
+            System.setProperty("java.awt.headless", "true");
+        }
+        if(statistics) {
+            runningFiles = new CountDownLatch(dataFiles.size());
+            for(DataFile dataFile : dataFiles) {
+                dataFile.start();
+            }
+            try {
+                runningFiles.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
 
         boolean restartable = true;
         for(DataFile dataFile : dataFiles) {
@@ -507,7 +820,36 @@ public class TailPlot {
             }
         }
 
-        frame = new XYPlotFrame();
+        renderScheduler = new RenderScheduler(this, fps);
+        metaX.setHysteresis(autoscaleHysteresis);
+        metaY.setHysteresis(autoscaleHysteresis);
+        metaY2.setHysteresis(autoscaleHysteresis);
+        frame = new XYPlotFrame() {
+            @Override
+            protected XYPlot createPlot() {
+                return new XYPlot() {
+                    @Override
+                    public void paint(Graphics g) {
+                        Events events = Events.get();
+                        Object event = events.beginPaint();
+                        long start = System.nanoTime();
+                        super.paint(g);
+                        long time = System.nanoTime() - start;
+                        metrics.painted(time);
+                        renderScheduler.painted(time);
+                        if(event != null) {
+                            events.endPaint(event, getWidth(), getHeight(), fields.size());
+                        }
+                    }
+                };
+            }
+
+
+            @Override
+            protected XYPlotContents createContents() {
+                return new ScrollingPlotContents(getXAxis(), getYAxis(), getY2Axis());
+            }
+        };
         boolean useY2 = false;
         for(DataFile dataFile : dataFiles) {
             if(dataFile.isUseY2()) {
@@ -517,7 +859,7 @@ public class TailPlot {
         frame.setUseY2(useY2);
         frame.setUseLegend(true);
         JPanel content = new JPanel();
-        JPanel settings = new JPanel(new GridBagLayout());
+        final JPanel settings = new JPanel(new GridBagLayout());
         GridBagConstraints constraints = new GridBagConstraints();
         constraints.gridwidth = GridBagConstraints.REMAINDER;
         constraints.weightx = 1.0;
@@ -726,21 +1068,102 @@ public class TailPlot {
         settings.add(linesTableHeader, constraints);
         settings.add(linesTable, constraints);
 
+        final JCheckBox showMetricsCheckbox = new JCheckBox("Show metrics");
+        showMetricsCheckbox.setToolTipText("Display throughput, queue, timing, and memory metrics");
+        settings.add(showMetricsCheckbox, constraints);
+        final DefaultTableModel metricsTableModel = new DefaultTableModel(new String[] { "Metric", "Value" }, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        final JTable metricsTable = new JTable(metricsTableModel);
+        metricsTable.setVisible(false);
+        settings.add(metricsTable, constraints);
+        final ActionListener refreshMetrics = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                metrics.update(dataFiles);
+                if(metricsTable.isShowing()) {
+                    List<String[]> rows = metrics.getRows(dataFiles);
+                    metricsTableModel.setRowCount(rows.size());
+                    for(int i = 0; i < rows.size(); i++) {
+                        String[] row = rows.get(i);
+                        for(int j = 0; j < row.length; j++) {
+                            if(!row[j].equals(metricsTableModel.getValueAt(i, j))) {
+                                metricsTableModel.setValueAt(row[j], i, j);
+                            }
+                        }
+                    }
+                }
+            }
+        };
+        showMetricsCheckbox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                metricsTable.setVisible(showMetricsCheckbox.isSelected());
+                metricsTable.getParent().revalidate();
+                // Fill the table immediately rather than waiting for the timer.
+                refreshMetrics.actionPerformed(e);
+            }
+        });
+        if(outputFile == null) {
+            metricsTimer = new Timer(1000, refreshMetrics);
+            metricsTimer.start();
+        }
+
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, settings, content);
         splitPane.setOneTouchExpandable(true);
         splitPane.setDividerLocation(0);
-        frame.setContentPane(splitPane);
-        frame.setTitle(title);
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        List<Image> icons = new ArrayList<Image>();
-        Class<? extends TailPlot> c = getClass();
-        Toolkit toolkit = Toolkit.getDefaultToolkit();
-        icons.add(toolkit.getImage(c.getResource("icon_16x16.png")));
-        icons.add(toolkit.getImage(c.getResource("icon_24x24.png")));
-        icons.add(toolkit.getImage(c.getResource("icon_32x32.png")));
-        icons.add(toolkit.getImage(c.getResource("icon_48x48.png")));
-        frame.setIconImages(icons);
+        if(outputFile == null && latencyInterval == 0) {
+            window = new JFrame();
+            window.setContentPane(splitPane);
+            window.setTitle(title);
+            window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            window.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    stopMetrics();
+                }
+            });
+            List<Image> icons = new ArrayList<Image>();
+            Class<? extends TailPlot> c = getClass();
+            Toolkit toolkit = Toolkit.getDefaultToolkit();
+            icons.add(toolkit.getImage(c.getResource("icon_16x16.png")));
+            icons.add(toolkit.getImage(c.getResource("icon_24x24.png")));
+            icons.add(toolkit.getImage(c.getResource("icon_32x32.png")));
+            icons.add(toolkit.getImage(c.getResource("icon_48x48.png")));
+            window.setIconImages(icons);
+
+            final ActionListener refreshRangeText = new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    // Don't spend time formatting values into the text fields while the settings panel is collapsed.
+                    if(settings.isShowing() && settings.getWidth() > 0) {
+                        metaX.updateText();
+                        metaY.updateText();
+                        metaY2.updateText();
+                    }
+                }
+            };
+            new Timer(250, refreshRangeText).start();
+            settings.addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    // Catch up immediately when the settings panel is expanded.
+                    refreshRangeText.actionPerformed(null);
+                }
+            });
+        }
         frame.setup(content);
+        ScrollingPlotContents plotContents = (ScrollingPlotContents) frame.getContents();
+        if(backgroundRendering && window != null) {
+            backgroundRenderer = new BackgroundRenderer(plotContents, frame.getXAxis(), frame.getYAxis(),
+                    frame.getY2Axis(), new ForkJoinPool());
+            plotContents.setBackgroundRenderer(backgroundRenderer);
+        } else {
+            plotContents.setScrolling(metaX.isScrolling());
+        }
 
         xAxis = (LinearXYAxis) frame.getXAxis();
         yAxis = frame.getYAxis();
@@ -805,22 +1228,154 @@ public class TailPlot {
         };
 
         Legend legend = frame.getLegend();
-        frame.getToolkit().addAWTEventListener(
-                new LegendDragListener(legend, frame.getContents(), frame.getPlot()),
-                AWTEvent.MOUSE_MOTION_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
+        if(window != null) {
+            window.getToolkit().addAWTEventListener(
+                    new LegendDragListener(legend, frame.getContents(), frame.getPlot()),
+                    AWTEvent.MOUSE_MOTION_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
+        }
         legend.setToolTipText("Shift-drag to move legend");
 
         pointHightlighter = frame.getPointHighlighter();
         pointHightlighter.setXFormat(metaX.getPreciseFormat());
         pointHightlighter.setYFormat(metaY.getPreciseFormat());
         pointHightlighter.setY2Format(metaY.getPreciseFormat());
+        pointHightlighter.setUpdateInterval((int) Math.max(1, Math.round(1000 / fps)));
 
-        frame.setSize(400, 300);
-        frame.setVisible(true);
+        if(window != null) {
+            window.setSize(400, 300);
+            window.setVisible(true);
+        }
 
+        if(latencyInterval > 0) {
+            latencyMonitor = new LatencyMonitor();
+        }
+        if(outputFile == null) {
+            metrics.register(dataFiles);
+        }
+        runningFiles = new CountDownLatch(dataFiles.size());
         for(DataFile dataFile : dataFiles) {
             dataFile.start();
         }
+        if(outputFile != null) {
+            renderToImage(content);
+        } else if(latencyInterval > 0) {
+            measureLatency(content);
+        }
+    }
+
+
+    /**
+     * Paints the plot offscreen and prints latency measurements until all files are finished.
+     * @param content component containing the plot
+     * @throws IOException if interrupted
+     */
+    private void measureLatency(final JPanel content) throws IOException {
+        final BufferedImage image = new BufferedImage(outputSize.width, outputSize.height,
+                BufferedImage.TYPE_INT_RGB);
+        final ActionListener paint = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(!latencyMonitor.isDirty()) {
+                    return;
+                }
+                Graphics2D g = image.createGraphics();
+                try {
+                    content.printAll(g);
+                } finally {
+                    g.dispose();
+                }
+                latencyMonitor.painted();
+            }
+        };
+        final Timer paintTimer = new Timer((int) Math.max(1, Math.round(1000 / fps)), paint);
+        final Timer printTimer = new Timer((int) latencyInterval, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                latencyMonitor.print(System.out);
+            }
+        });
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    content.setSize(outputSize);
+                    layoutTree(content);
+                    paintTimer.start();
+                    printTimer.start();
+                }
+            });
+            runningFiles.await();
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    paintTimer.stop();
+                    printTimer.stop();
+                    commitMinMax();
+                    // Account for the last rows.
+                    paint.actionPerformed(null);
+                    latencyMonitor.print(System.out);
+                    stopMetrics();
+                }
+            });
+        } catch(InterruptedException e) {
+            throw new IOException("Interrupted while measuring latency", e);
+        } catch(InvocationTargetException e) {
+            throw new IOException("Unable to measure latency", e.getCause());
+        }
+    }
+
+
+    /**
+     * Waits for all files to be read, then renders the plot to {@link #outputFile}.
+     * Data is handed to the Swing thread in order, so once all files are finished,
+     * the render task runs after all data has been added to the plot.
+     * @param content component containing the plot
+     * @throws IOException if the image cannot be written
+     */
+    private void renderToImage(final JPanel content) throws IOException {
+        final BufferedImage image = new BufferedImage(outputSize.width, outputSize.height,
+                BufferedImage.TYPE_INT_RGB);
+        try {
+            runningFiles.await();
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    // The last data may be waiting for a frame.
+                    commitMinMax();
+                    content.setSize(outputSize);
+                    layoutTree(content);
+                    Graphics2D g = image.createGraphics();
+                    try {
+                        content.printAll(g);
+                    } finally {
+                        g.dispose();
+                    }
+                }
+            });
+        } catch(InterruptedException e) {
+            throw new IOException("Interrupted while rendering " + outputFile, e);
+        } catch(InvocationTargetException e) {
+            throw new IOException("Unable to render " + outputFile, e.getCause());
+        }
+        String name = outputFile.getName();
+        ImageIO.write(image, name.substring(name.lastIndexOf('.') + 1), outputFile);
+    }
+
+
+    /**
+     * Lays out a component and all its descendants.
+     * {@link Container#validate()} does nothing for components that have never been displayed,
+     * so this is necessary to lay out components offscreen.
+     * @param component component to lay out
+     */
+    private static void layoutTree(Component component) {
+        if(component instanceof Container) {
+            Container container = (Container) component;
+            container.doLayout();
+            for(Component child : container.getComponents()) {
+                layoutTree(child);
+            }
+        }
     }
 
 
@@ -853,6 +1408,182 @@ public class TailPlot {
     }
 
 
+    /**
+     * Parses the spec for rolling quantiles from the command line.
+     * @param s spec in the form FIELD,WIDTH[,PCT...]
+     * @return the rolling quantiles
+     */
+    private RollingQuantiles parseRollingQuantiles(String s) {
+        String[] data = s.split(",");
+        if(data.length < 2) {
+            usage("Expected FIELD,WIDTH[,PCT...] for --quantiles: " + s);
+        }
+        try {
+            int column = Integer.parseInt(data[0].trim());
+            double width = Double.parseDouble(data[1].trim());
+            double[] quantiles;
+            if(data.length == 2) {
+                quantiles = new double[] { .5, .95, .99 };
+            } else {
+                quantiles = new double[data.length - 2];
+                for(int i = 0; i < quantiles.length; i++) {
+                    quantiles[i] = Double.parseDouble(data[i + 2].trim()) / 100;
+                    if(!(quantiles[i] >= 0 && quantiles[i] <= 1)) {
+                        usage("Percentile must be between 0 and 100 for --quantiles: " + s);
+                    }
+                }
+            }
+            if(!(width > 0)) {
+                usage("Width must be positive for --quantiles: " + s);
+            }
+            return new RollingQuantiles(column, width, quantiles);
+        } catch(NumberFormatException e) {
+            usage("Invalid number for --quantiles: " + s);
+            return null;
+        }
+    }
+
+
+    /**
+     * Parses a derived field from the command line and adds it to a file.
+     * @param dataFile file to add the field to
+     * @param s spec in the form NAME=EXPR
+     */
+    private void parseDerived(DataFile dataFile, String s) {
+        int ix = s.indexOf('=');
+        if(ix <= 0) {
+            usage("Expected NAME=EXPR for --derive: " + s);
+        }
+        dataFile.addDerived(s.substring(0, ix).trim(), parseExpression(s.substring(ix + 1)));
+    }
+
+
+    /**
+     * Parses an expression from the command line.
+     * @param s text of the expression
+     * @return the expression
+     */
+    private Expression parseExpression(String s) {
+        try {
+            return Expression.parse(s);
+        } catch(ParseException e) {
+            usage(e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Parses a line pattern from the command line.
+     * @param regex the regex
+     * @return the line pattern
+     */
+    private LinePattern parseLinePattern(String regex) {
+        try {
+            return new LinePattern(regex);
+        } catch(PatternSyntaxException e) {
+            usage(e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Parses a line filter from the command line.
+     * @param regex regex to search for
+     * @param exclude true if matching lines are rejected, false if only matching lines are accepted
+     * @return the line filter
+     */
+    private LineFilter parseLineFilter(String regex, boolean exclude) {
+        try {
+            return new LineFilter(regex, exclude);
+        } catch(PatternSyntaxException e) {
+            usage(e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Parses the spec for resampling from the command line.
+     * @param s spec in the form BUCKET:AGG
+     * @return the resampler
+     */
+    private Resampler parseResampler(String s) {
+        int ix = s.lastIndexOf(':');
+        if(ix == -1) {
+            usage("Expected BUCKET:AGG for --resample: " + s);
+        }
+        double width = 0;
+        try {
+            width = Double.parseDouble(s.substring(0, ix).trim());
+        } catch(NumberFormatException e) {
+            usage("Invalid bucket width for --resample: " + s);
+        }
+        if(!(width > 0)) {
+            usage("Bucket width must be positive for --resample: " + s);
+        }
+        Resampler.Aggregation aggregation = null;
+        try {
+            aggregation = Resampler.Aggregation.valueOf(s.substring(ix + 1).trim().toUpperCase(Locale.ENGLISH));
+        } catch(IllegalArgumentException e) {
+            usage("Unrecognized aggregation for --resample: " + s);
+        }
+        return new Resampler(width, aggregation);
+    }
+
+
+    /**
+     * Parses the separator for --csv from the command line.
+     * @param arg the argument, either --csv or --csv=SEP
+     * @return the separator
+     */
+    private char parseCsvSeparator(String arg) {
+        if(arg.equals("--csv")) {
+            return ',';
+        }
+        String s = arg.substring("--csv=".length());
+        if(s.equals("\\t")) {
+            return '\t';
+        } else if(s.length() != 1) {
+            usage("Separator for --csv must be a single character: " + s);
+        }
+        return s.charAt(0);
+    }
+
+
+    /**
+     * Sets the fields to plot from the command line.
+     * @param dataFile file to set the fields for
+     * @param s comma-separated list of field indices or key paths
+     */
+    private void setSelection(DataFile dataFile, String s) {
+        try {
+            dataFile.setSelection(parseIntList(s));
+        } catch(NumberFormatException e) {
+            String[] keyPaths = s.split(",");
+            for(int i = 0; i < keyPaths.length; i++) {
+                keyPaths[i] = keyPaths[i].trim();
+            }
+            dataFile.setKeyPaths(keyPaths);
+        }
+    }
+
+
+    /**
+     * Sets the X field from the command line.
+     * @param dataFile file to set the X field for
+     * @param s field index or key path
+     */
+    private void setX(DataFile dataFile, String s) {
+        try {
+            dataFile.setX(Integer.parseInt(s));
+        } catch(NumberFormatException e) {
+            dataFile.setXKeyPath(s.trim());
+        }
+    }
+
+
     private int[] parseIntList(String s) {
         String[] data = s.split(",");
         int[] selection = new int[data.length];
@@ -907,7 +1638,7 @@ public class TailPlot {
         for(DataFile dataFile : dataFiles) {
             for(Field field : dataFile.getFields()) {
                 if(field.isVisible()) {
-                    SimpleXYDataset dataset = field.getDataset();
+                    PlotDataset dataset = field.getDataset();
                     if(dataset != null && dataset.getPointCount() > 0) {
                         // It's important to check for an empty data set because
                         // an empty one will return infinities for the min and max.
@@ -931,10 +1662,31 @@ public class TailPlot {
 
 
     public void commitMinMax() {
+        Events events = Events.get();
+        Object event = events.beginCommitMinMax();
         metaY.commitMinMax();
         metaY2.commitMinMax();
         metaX.commitMinMax();
         pointHightlighter.updateDisplay();
+        if(event != null) {
+            events.endCommitMinMax(event, metaX, metaY, metaY2);
+        }
+    }
+
+
+    /**
+     * Repaints the points added to the plot lines since the last call.
+     * Must be called on the Swing thread.
+     */
+    void flushRepaints() {
+        for(DataFile dataFile : dataFiles) {
+            for(Field field : dataFile.getFields()) {
+                XYPlotLine line = field.getPlotLine();
+                if(line instanceof MultiplexingXYPlotLine) {
+                    ((MultiplexingXYPlotLine) line).flushRepaint();
+                }
+            }
+        }
     }
 
 
@@ -954,6 +1706,98 @@ public class TailPlot {
 
 
     public boolean isAutorestart() {
-        return autorestartCheckbox.isSelected();
+        return isFollow() && autorestartCheckbox != null && autorestartCheckbox.isSelected();
+    }
+
+
+    /**
+     * Returns true if files should be followed as they grow.
+     * If false, files are only read up to their current end.
+     * @return true if files should be followed as they grow
+     */
+    public boolean isFollow() {
+        if(outputFile != null) {
+            return false;
+        }
+        return !statistics || statisticsInterval > 0;
+    }
+
+
+    /**
+     * Returns true if summary statistics are printed instead of plotting.
+     * @return true if summary statistics are printed instead of plotting
+     */
+    public boolean isStatistics() {
+        return statistics;
+    }
+
+
+    /**
+     * Sets whether summary statistics are printed instead of plotting.
+     * @param statistics true if summary statistics are printed instead of plotting
+     */
+    void setStatistics(boolean statistics) {
+        this.statistics = statistics;
+    }
+
+
+    /**
+     * Returns the runtime metrics.
+     * @return the runtime metrics
+     */
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Returns the scheduler that limits how often the axes are updated and the plot repainted.
+     * Must be called on the Swing thread.
+     * @return the render scheduler
+     */
+    RenderScheduler getRenderScheduler() {
+        return renderScheduler;
+    }
+
+
+    /**
+     * Returns the latency monitor.
+     * Must be called on the Swing thread.
+     * @return the latency monitor, or null if latency is not measured
+     */
+    LatencyMonitor getLatencyMonitor() {
+        return latencyMonitor;
+    }
+
+
+    /**
+     * Returns the number of milliseconds between printing summary statistics.
+     * @return milliseconds between printing summary statistics, or 0 to print once at the end
+     */
+    public long getStatisticsInterval() {
+        return statisticsInterval;
+    }
+
+
+    /**
+     * Stops refreshing the metrics and unregisters their MBeans.
+     * Must be called on the Swing thread.
+     */
+    private void stopMetrics() {
+        if(metricsTimer != null) {
+            metricsTimer.stop();
+            metricsTimer = null;
+        }
+        metrics.unregister();
+    }
+
+
+    /**
+     * Called when a file has been read as far as it will be.
+     */
+    void fileFinished() {
+        if(runningFiles != null) {
+            runningFiles.countDown();
+        }
     }
 }
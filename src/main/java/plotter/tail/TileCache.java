@@ -0,0 +1,230 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches rendered tiles, evicting the least recently used tiles when a memory budget is exceeded.
+ * Tiles are identified by a layer, which describes how they were rendered, and an index within the layer.
+ * A tile can be marked dirty when the data it shows changes; it is still returned,
+ * so it can be displayed until it is rendered again.
+ * Not thread-safe.
+ * @author Adam Crume
+ */
+class TileCache {
+    /** Maximum number of bytes of images to keep. */
+    private final long maxBytes;
+
+    /** Number of bytes of images currently kept. */
+    private long bytes;
+
+    /** Tiles, in order from least to most recently used. */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, .75f, true);
+
+
+    /**
+     * Creates a tile cache.
+     * @param maxBytes maximum number of bytes of images to keep
+     */
+    public TileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+
+    /**
+     * Returns a tile and marks it as recently used.
+     * @param layer layer of the tile
+     * @param index index of the tile within the layer
+     * @return the tile's image, or null if it is not cached
+     */
+    public BufferedImage get(Object layer, long index) {
+        Entry entry = entries.get(new Key(layer, index));
+        return entry == null ? null : entry.image;
+    }
+
+
+    /**
+     * Returns true if the data shown by a tile has changed.
+     * @param layer layer of the tile
+     * @param index index of the tile within the layer
+     * @return true if the tile is cached and dirty
+     */
+    public boolean isDirty(Object layer, long index) {
+        Entry entry = entries.get(new Key(layer, index));
+        return entry != null && entry.dirty;
+    }
+
+
+    /**
+     * Adds or replaces a tile, which is not dirty, and evicts tiles if the cache is over budget.
+     * @param layer layer of the tile
+     * @param index index of the tile within the layer
+     * @param image image of the tile
+     */
+    public void put(Object layer, long index, BufferedImage image) {
+        Entry old = entries.put(new Key(layer, index), new Entry(image));
+        if(old != null) {
+            bytes -= size(old.image);
+        }
+        bytes += size(image);
+        Iterator<Entry> itr = entries.values().iterator();
+        while(bytes > maxBytes && itr.hasNext()) {
+            Entry entry = itr.next();
+            if(entry.image == image) {
+                // Never evict the tile just added.
+                continue;
+            }
+            bytes -= size(entry.image);
+            itr.remove();
+        }
+    }
+
+
+    /**
+     * Marks a range of tiles as dirty.
+     * @param layer layer of the tiles
+     * @param from index of the first tile
+     * @param to index of the last tile (inclusive)
+     */
+    public void invalidate(Object layer, long from, long to) {
+        for(Map.Entry<Key, Entry> e : entries.entrySet()) {
+            Key key = e.getKey();
+            if(key.layer.equals(layer) && key.index >= from && key.index <= to) {
+                e.getValue().dirty = true;
+            }
+        }
+    }
+
+
+    /**
+     * Removes all tiles in a layer.
+     * @param layer the layer
+     */
+    public void removeLayer(Object layer) {
+        Iterator<Map.Entry<Key, Entry>> itr = entries.entrySet().iterator();
+        while(itr.hasNext()) {
+            Map.Entry<Key, Entry> e = itr.next();
+            if(e.getKey().layer.equals(layer)) {
+                bytes -= size(e.getValue().image);
+                itr.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Returns true if any tiles in a layer are cached.
+     * @param layer the layer
+     * @return true if any tiles in the layer are cached
+     */
+    public boolean containsLayer(Object layer) {
+        for(Key key : entries.keySet()) {
+            if(key.layer.equals(layer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Removes all tiles.
+     */
+    public void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+
+    /**
+     * Returns the number of tiles cached.
+     * @return the number of tiles cached
+     */
+    public int size() {
+        return entries.size();
+    }
+
+
+    /**
+     * Returns the number of bytes of images cached.
+     * @return the number of bytes of images cached
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+
+    /**
+     * Estimates the memory used by an image.
+     * @param image the image
+     * @return the number of bytes used
+     */
+    private static long size(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+
+    /**
+     * Identifies a tile.
+     */
+    private static final class Key {
+        final Object layer;
+
+        final long index;
+
+
+        Key(Object layer, long index) {
+            this.layer = layer;
+            this.index = index;
+        }
+
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return index == k.index && layer.equals(k.layer);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return layer.hashCode() * 31 + (int) (index ^ (index >>> 32));
+        }
+    }
+
+
+    /**
+     * A cached tile.
+     */
+    private static final class Entry {
+        final BufferedImage image;
+
+        boolean dirty;
+
+
+        Entry(BufferedImage image) {
+            this.image = image;
+        }
+    }
+}
@@ -38,7 +38,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.BorderFactory;
-import javax.swing.JFrame;
 import javax.swing.SpringLayout;
 import javax.swing.SwingConstants;
 import javax.swing.border.Border;
@@ -58,9 +57,11 @@ import plotter.xy.XYPlot;
 import plotter.xy.XYPlotContents;
 import plotter.xy.XYPlotLine;
 
-public class XYPlotFrame extends JFrame {
-	private static final long serialVersionUID = 1L;
-
+/**
+ * Builds a plot with its axes, grid, legend and displays into a container.
+ * This is not a window itself, so the plot can also be laid out offscreen.
+ */
+public class XYPlotFrame {
 	private XYPlot plot;
 
 	private XYAxis xAxis;
@@ -98,13 +99,8 @@ public class XYPlotFrame extends JFrame {
 	private PointHighlighter pointHighlighter;
 
 
-	public void setup() {
-		setup(getContentPane());
-	}
-
-
 	public void setup(Container contentPane) {
-		plot = new XYPlot();
+		plot = createPlot();
 		xAxis = createXAxis();
 		yAxis = createYAxis();
 		xAxis.setPreferredSize(new Dimension(1, 30));
@@ -136,7 +132,7 @@ public class XYPlotFrame extends JFrame {
 			plot.setY2Axis(y2Axis);
 		}
 		plot.setBackground(Color.darkGray);
-		contents = new XYPlotContents();
+		contents = createContents();
 		contents.setBackground(Color.black);
 		plot.setBackground(Color.darkGray);
 
@@ -222,6 +218,21 @@ public class XYPlotFrame extends JFrame {
 	}
 
 
+	protected XYPlot createPlot() {
+		return new XYPlot();
+	}
+
+
+	/**
+	 * Creates the plot contents.
+	 * This is called after the axes have been created.
+	 * @return the plot contents
+	 */
+	protected XYPlotContents createContents() {
+		return new XYPlotContents();
+	}
+
+
 	protected XYAxis createYAxis() {
 		return new LinearXYAxis(XYDimension.Y);
 	}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits JDK Flight Recorder events.
+ * This is compiled only by JDKs that include Flight Recorder, and loaded by {@link Events#get()}.
+ * The events are disabled by default; enable them with tailplot.jfc.
+ * @author Adam Crume
+ */
+class JfrEvents extends Events {
+    @Override
+    Object beginReadBatch() {
+        ReadBatch event = new ReadBatch();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    void endReadBatch(Object event, DataFile dataFile, int lines, int rows) {
+        if(event != null) {
+            ReadBatch e = (ReadBatch) event;
+            e.end();
+            if(e.shouldCommit()) {
+                e.file = getName(dataFile);
+                e.fields = getFieldNames(dataFile);
+                e.lines = lines;
+                e.rows = rows;
+                e.commit();
+            }
+        }
+    }
+
+
+    @Override
+    Object beginApplyBatch() {
+        ApplyBatch event = new ApplyBatch();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    void endApplyBatch(Object event, DataFile dataFile, int rows) {
+        if(event != null) {
+            ApplyBatch e = (ApplyBatch) event;
+            e.end();
+            if(e.shouldCommit()) {
+                e.file = getName(dataFile);
+                e.fields = getFieldNames(dataFile);
+                e.rows = rows;
+                e.commit();
+            }
+        }
+    }
+
+
+    @Override
+    Object beginCommitMinMax() {
+        CommitMinMax event = new CommitMinMax();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    void endCommitMinMax(Object event, MetaAxis... axes) {
+        if(event != null) {
+            CommitMinMax e = (CommitMinMax) event;
+            e.end();
+            if(e.shouldCommit()) {
+                StringBuilder b = new StringBuilder();
+                for(MetaAxis axis : axes) {
+                    if(b.length() > 0) {
+                        b.append(", ");
+                    }
+                    b.append(axis.getName()).append(": [").append(axis.getMin()).append(", ").append(axis.getMax())
+                            .append(']');
+                    if(axis.isLogscale()) {
+                        b.append(" log");
+                    }
+                }
+                e.ranges = b.toString();
+                e.commit();
+            }
+        }
+    }
+
+
+    @Override
+    Object beginLogscale() {
+        Logscale event = new Logscale();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    void endLogscale(Object event, String axis, boolean logscale, long points) {
+        if(event != null) {
+            Logscale e = (Logscale) event;
+            e.end();
+            if(e.shouldCommit()) {
+                e.axis = axis;
+                e.logscale = logscale;
+                e.points = points;
+                e.commit();
+            }
+        }
+    }
+
+
+    @Override
+    Object beginPaint() {
+        Paint event = new Paint();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    void endPaint(Object event, int width, int height, int fields) {
+        if(event != null) {
+            Paint e = (Paint) event;
+            e.end();
+            if(e.shouldCommit()) {
+                e.width = width;
+                e.height = height;
+                e.fields = fields;
+                e.commit();
+            }
+        }
+    }
+
+
+    /**
+     * Returns the name of a file for events.
+     * @param dataFile the file
+     * @return path of the file
+     */
+    private static String getName(DataFile dataFile) {
+        return dataFile.getFile() == null ? "<standard input>" : dataFile.getFile().getPath();
+    }
+
+
+    /**
+     * Returns the names of a file's fields for events.
+     * @param dataFile the file
+     * @return the field names, separated by commas
+     */
+    private static String getFieldNames(DataFile dataFile) {
+        List<Field> fields = dataFile.getFields();
+        StringBuilder b = new StringBuilder();
+        // The reader thread may be adding fields, so don't use an iterator.
+        for(int i = 0; i < fields.size(); i++) {
+            if(i > 0) {
+                b.append(", ");
+            }
+            b.append(fields.get(i).getName());
+        }
+        return b.toString();
+    }
+
+
+    @Name("plotter.tail.ReadBatch")
+    @Label("Read Batch")
+    @Category("TailPlot")
+    @Description("Lines read and parsed by a file's reader thread")
+    @Enabled(false)
+    static class ReadBatch extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Fields")
+        String fields;
+
+        @Label("Lines")
+        int lines;
+
+        @Label("Rows")
+        @Description("Rows produced, after skipping comments, filtered lines, and lines that could not be parsed")
+        int rows;
+    }
+
+
+    @Name("plotter.tail.ApplyBatch")
+    @Label("Apply Batch")
+    @Category("TailPlot")
+    @Description("Rows handed from a reader thread and added to the plot on the Swing thread")
+    @Enabled(false)
+    static class ApplyBatch extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Fields")
+        String fields;
+
+        @Label("Rows")
+        int rows;
+    }
+
+
+    @Name("plotter.tail.CommitMinMax")
+    @Label("Commit Axis Ranges")
+    @Category("TailPlot")
+    @Description("Axis ranges updated after data was added")
+    @Enabled(false)
+    static class CommitMinMax extends Event {
+        @Label("Ranges")
+        String ranges;
+    }
+
+
+    @Name("plotter.tail.Logscale")
+    @Label("Log Scale Conversion")
+    @Category("TailPlot")
+    @Description("Values converted between linear and log scale")
+    @Enabled(false)
+    static class Logscale extends Event {
+        @Label("Axis")
+        String axis;
+
+        @Label("Log Scale")
+        boolean logscale;
+
+        @Label("Points")
+        long points;
+    }
+
+
+    @Name("plotter.tail.Paint")
+    @Label("Paint")
+    @Category("TailPlot")
+    @Description("Plot painted")
+    @Enabled(false)
+    static class Paint extends Event {
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Fields")
+        int fields;
+    }
+}
@@ -21,6 +21,11 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ JUnitMultiscaleNumberFormat.class })
+@SuiteClasses({ JUnitMultiscaleNumberFormat.class, JUnitQuantileSketch.class, JUnitExpression.class, JUnitDecimalParser.class,
+        JUnitLinePattern.class, JUnitJsonScanner.class,
+        JUnitCsvScanner.class, JUnitLoadGenerator.class, JUnitStripedCounter.class, JUnitPlotDataset.class,
+        JUnitTileCache.class, JUnitAutoscaleHysteresis.class, JUnitScreenCoordinates.class, JUnitMetrics.class,
+        JUnitBackgroundRenderer.class, JUnitResampler.class,
+        JUnitRollingQuantiles.class, JUnitLineFilter.class })
 public class JUnitAll {
 }
@@ -0,0 +1,77 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JUnitAutoscaleHysteresis {
+    @Test
+    public void testRoundStep() {
+        assertEquals(1, AutoscaleHysteresis.roundStep(1.9), 1e-12);
+        assertEquals(2, AutoscaleHysteresis.roundStep(2), 1e-12);
+        assertEquals(5, AutoscaleHysteresis.roundStep(9.9), 1e-12);
+        assertEquals(.05, AutoscaleHysteresis.roundStep(.07), 1e-12);
+    }
+
+
+    @Test
+    public void testGrow() {
+        AutoscaleHysteresis h = new AutoscaleHysteresis();
+        assertTrue(h.update(0, 100, false));
+        assertEquals(-10, h.getStart(), 1e-9);
+        assertEquals(110, h.getEnd(), 1e-9);
+        // Staying inside the range changes nothing.
+        assertFalse(h.update(0, 105, false));
+        assertFalse(h.update(-5, 105, false));
+        // Leaving it grows the range to round values.
+        assertTrue(h.update(0, 111, false));
+        assertEquals(-10, h.getStart(), 1e-9);
+        assertEquals(130, h.getEnd(), 1e-9);
+        // Starting over fits the range to the data again.
+        h.reset();
+        assertTrue(h.update(50, 60, false));
+        assertEquals(49, h.getStart(), 1e-9);
+        assertEquals(61, h.getEnd(), 1e-9);
+    }
+
+
+    @Test
+    public void testScrolling() {
+        AutoscaleHysteresis h = new AutoscaleHysteresis();
+        assertTrue(h.update(0, 100, true));
+        assertEquals(120, h.getEnd() - h.getStart(), 1e-9);
+        assertTrue(h.getStart() <= 0);
+        double end = h.getEnd();
+        int changes = 0;
+        for(int max = 101; max <= 200; max++) {
+            if(h.update(max - 100, max, true)) {
+                changes++;
+                assertEquals(120, h.getEnd() - h.getStart(), 1e-9);
+                assertTrue(h.getEnd() > end);
+                end = h.getEnd();
+            }
+            assertTrue(h.getStart() <= max - 100);
+            assertTrue(h.getEnd() >= max);
+        }
+        // The range advances in steps of 10 rather than on every update.
+        assertEquals(9, changes);
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class JUnitBackgroundRenderer {
+    private static double[][] filter(double[] x, double minX, double maxX) {
+        // Hold the last point separately, as a line's snapshot does.
+        int n = x.length;
+        BackgroundRenderer.Points points = new BackgroundRenderer.Points(x, new double[n], n - 1, x[n - 1], 0, n);
+        return BackgroundRenderer.filter(points, minX, maxX, null);
+    }
+
+
+    @Test
+    public void testFilterKeepsPointsInRange() {
+        assertArrayEquals(new double[] { 4, 5, 6, 7 }, filter(new double[] { 1, 4, 5, 6, 7, 9 }, 4.5, 6.5)[0], 0);
+    }
+
+
+    @Test
+    public void testFilterKeepsCrossingSegments() {
+        // Neither end of the segment from 0 to 10 is in the range.
+        assertArrayEquals(new double[] { 0, 10 }, filter(new double[] { 0, 10, 20 }, 4, 6)[0], 0);
+        assertArrayEquals(new double[] { 10, 0 }, filter(new double[] { 30, 20, 10, 0 }, 4, 6)[0], 0);
+    }
+
+
+    @Test
+    public void testFilterBreaksSkippedPoints() {
+        assertArrayEquals(new double[] { 5, 50, Double.NaN, 70, 5 },
+                filter(new double[] { 5, 50, 60, 70, 5 }, 4, 6)[0], 0);
+        // The last point is held separately from the rest.
+        assertArrayEquals(new double[] { 5, 8, Double.NaN, 70, 5.5 },
+                filter(new double[] { 5, 8, 9, 70, 5.5 }, 4, 6)[0], 0);
+    }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JUnitCsvScanner {
+    @Test
+    public void testQuoted() {
+        CsvScanner scanner = new CsvScanner(',');
+        String line = "1, \"host, a\" ,\"say \"\"hi\"\"\",,\"2.5\"";
+        assertTrue(scanner.scan(line));
+        assertEquals(5, scanner.getFieldCount());
+        assertEquals("1", scanner.getField(1));
+        assertEquals("host, a", scanner.getField(2));
+        assertEquals("say \"hi\"", scanner.getField(3));
+        assertTrue(scanner.isEscaped(3));
+        assertEquals("", scanner.getField(4));
+        assertFalse(scanner.isEscaped(5));
+        assertEquals(2.5, DecimalParser.parse(line, scanner.getStart(5), scanner.getEnd(5)), 0);
+    }
+
+
+    @Test
+    public void testUnquoted() {
+        CsvScanner scanner = new CsvScanner(';');
+        assertTrue(scanner.scan(" 1 ;2;"));
+        assertEquals(3, scanner.getFieldCount());
+        assertEquals("1", scanner.getField(1));
+        assertEquals("2", scanner.getField(2));
+        assertEquals("", scanner.getField(3));
+    }
+
+
+    @Test
+    public void testUnterminated() {
+        CsvScanner scanner = new CsvScanner(',');
+        assertFalse(scanner.scan("1,\"abc"));
+        assertFalse(scanner.scan("1,\"abc\"\""));
+    }
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class JUnitDecimalParser {
+    @Test
+    public void testSameAsFormat() throws ParseException {
+        NumberFormat format = NumberFormat.getInstance(Locale.US);
+        assertTrue(DecimalParser.isCompatible(format));
+        String[] values = { "0", "-0", "1", "-1", "12.5", "-12.5", ".5", "5.", "0.1", "123456789.123456",
+                "9007199254740992", "0.1234567890123456", "1.797693134862315" };
+        for(String s : values) {
+            assertEquals(s, format.parse(s).doubleValue(), DecimalParser.parse(s, 0, s.length()), 0);
+            assertEquals(s, Double.doubleToLongBits(format.parse(s).doubleValue()),
+                    Double.doubleToLongBits(DecimalParser.parse(s, 0, s.length())));
+        }
+    }
+
+
+    @Test
+    public void testRange() {
+        assertEquals(-42.25, DecimalParser.parse("x=-42.25;", 2, 8), 0);
+    }
+
+
+    @Test
+    public void testRejected() {
+        String[] values = { "", "-", ".", "+1", " 1", "1 ", "1,000", "1e5", "1E5", "1.2.3", "12ms", "NaN",
+                "9007199254740993", "0.12345678901234567890123" };
+        for(String s : values) {
+            assertTrue(s, Double.isNaN(DecimalParser.parse(s, 0, s.length())));
+        }
+    }
+
+
+    @Test
+    public void testCompatible() {
+        assertFalse(DecimalParser.isCompatible(NumberFormat.getInstance(Locale.GERMANY)));
+        assertFalse(DecimalParser.isCompatible(NumberFormat.getPercentInstance(Locale.US)));
+        assertFalse(DecimalParser.isCompatible(new DecimalFormat("#.#'ms'", new DecimalFormatSymbols(Locale.US))));
+    }
+}
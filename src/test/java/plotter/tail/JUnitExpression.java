@@ -0,0 +1,151 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class JUnitExpression {
+    @Test
+    public void testArithmetic() throws ParseException {
+        double[] columns = { 0, 6, 3 };
+        assertEquals(9, Expression.parse("col1 + col2").evaluate(0, columns), 0);
+        assertEquals(2, Expression.parse("col1/col2").evaluate(0, columns), 0);
+        assertEquals(7, Expression.parse("1 + col1 - col2 * -(1 - 2) + 1.5e1 % 4").evaluate(0, columns), 0);
+        assertEquals(-512, Expression.parse("-2^3^2").evaluate(0, columns), 0);
+        assertEquals(13, Expression.parse("max(abs(-col1), sqrt(9)) + x").evaluate(7, columns), 0);
+    }
+
+
+    @Test
+    public void testComparisons() throws ParseException {
+        double[] columns = { 0, 6, 3 };
+        assertEquals(1, Expression.parse("col1 > col2").evaluate(0, columns), 0);
+        assertEquals(0, Expression.parse("col1 <= col2").evaluate(0, columns), 0);
+        assertEquals(1, Expression.parse("col1 >= 2 * col2").evaluate(0, columns), 0);
+        assertEquals(1, Expression.parse("col1 - 3 == col2").evaluate(0, columns), 0);
+        assertEquals(0, Expression.parse("col1 != 6").evaluate(0, columns), 0);
+        assertEquals(2, Expression.parse("(col1 < 7) + (col2 < 7)").evaluate(0, columns), 0);
+    }
+
+
+    @Test
+    public void testColumns() throws ParseException {
+        BitSet columns = new BitSet();
+        Expression.parse("col3 / (col1 + x)").addColumns(columns);
+        assertEquals(2, columns.cardinality());
+        assertTrue(columns.get(1));
+        assertTrue(columns.get(3));
+    }
+
+
+    @Test
+    public void testRate() throws ParseException {
+        Expression e = Expression.parse("rate(col1)");
+        double[] columns = new double[2];
+        columns[1] = 100;
+        assertTrue(Double.isNaN(e.evaluate(0, columns)));
+        columns[1] = 120;
+        assertEquals(10, e.evaluate(2, columns), 0);
+        // Counter reset
+        columns[1] = 5;
+        assertEquals(5, e.evaluate(3, columns), 0);
+        columns[1] = Double.NaN;
+        assertTrue(Double.isNaN(e.evaluate(4, columns)));
+        columns[1] = 25;
+        assertEquals(10, e.evaluate(5, columns), 0);
+        e.reset();
+        assertTrue(Double.isNaN(e.evaluate(6, columns)));
+    }
+
+
+    @Test
+    public void testMovingAverages() throws ParseException {
+        Expression sma = Expression.parse("sma(col1, 2)");
+        Expression ema = Expression.parse("ema(col1, 0.5)");
+        Expression delta = Expression.parse("delta(col1)");
+        double[] columns = new double[2];
+        columns[1] = 2;
+        assertEquals(2, sma.evaluate(0, columns), 0);
+        assertEquals(2, ema.evaluate(0, columns), 0);
+        assertTrue(Double.isNaN(delta.evaluate(0, columns)));
+        columns[1] = 4;
+        assertEquals(3, sma.evaluate(1, columns), 0);
+        assertEquals(3, ema.evaluate(1, columns), 0);
+        assertEquals(2, delta.evaluate(1, columns), 0);
+        columns[1] = 8;
+        assertEquals(6, sma.evaluate(2, columns), 0);
+        assertEquals(5.5, ema.evaluate(2, columns), 0);
+        assertEquals(4, delta.evaluate(2, columns), 0);
+        // NaNs leave the averages unchanged.
+        columns[1] = Double.NaN;
+        assertEquals(6, sma.evaluate(3, columns), 0);
+        assertEquals(5.5, ema.evaluate(3, columns), 0);
+    }
+
+
+    @Test
+    public void testSmaDrift() throws ParseException {
+        Expression sma = Expression.parse("sma(col1, 2)");
+        double[] columns = new double[2];
+        columns[1] = 1e17;
+        sma.evaluate(0, columns);
+        // Adding 1 to 1e17 is lost to rounding, so subtracting 1e17 again leaves the running sum short.
+        columns[1] = 1;
+        for(int i = 1; i < 4; i++) {
+            sma.evaluate(i, columns);
+        }
+        assertEquals(1, sma.evaluate(4, columns), 0);
+        // An infinite value doesn't leave the sum NaN once it has left the window.
+        columns[1] = Double.POSITIVE_INFINITY;
+        sma.evaluate(5, columns);
+        columns[1] = 1;
+        for(int i = 6; i < 8; i++) {
+            sma.evaluate(i, columns);
+        }
+        assertEquals(1, sma.evaluate(8, columns), 0);
+    }
+
+
+    @Test
+    public void testLargestSma() throws ParseException {
+        Expression sma = Expression.parse("sma(col1, 16777216)");
+        assertEquals(5, sma.evaluate(0, new double[] { 0, 5 }), 0);
+    }
+
+
+    @Test
+    public void testErrors() {
+        String[] invalid = { "", "col1 +", "col0", "foo", "foo(col1)", "abs(col1, col2)", "(col1", "col1)",
+                "sma(col1, col2)", "sma(col1, 0)", "sma(col1, 1.5)", "sma(col1, 1e12)", "sma(col1, 16777217)",
+                "ema(col1, 2)" };
+        for(String s : invalid) {
+            try {
+                Expression.parse(s);
+                fail("Expected exception for: " + s);
+            } catch(ParseException e) {
+                // expected
+            }
+        }
+    }
+}
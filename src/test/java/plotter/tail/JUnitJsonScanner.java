@@ -0,0 +1,101 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JUnitJsonScanner {
+    @Test
+    public void testKeyPaths() {
+        JsonScanner scanner = new JsonScanner(new String[] { "ts", "latency.p99", "ok", "a\\b" });
+        double[] values = scanner.scan("{\"msg\": \"x\\\"}\", \"latency\": {\"hist\": [1, {\"p99\": 7}], \"p99\": 12.5},"
+                + " \"ts\": 1.5e3, \"ok\": true, \"a\\\\b\": \"-4\"}");
+        assertEquals(1500, values[1], 0);
+        assertEquals(12.5, values[2], 0);
+        assertEquals(1, values[3], 0);
+        assertEquals(-4, values[4], 0);
+    }
+
+
+    @Test
+    public void testMissing() {
+        JsonScanner scanner = new JsonScanner(new String[] { "a.b", "c" });
+        double[] values = scanner.scan("{\"a\": 5, \"c\": null}");
+        assertTrue(Double.isNaN(values[1]));
+        assertTrue(Double.isNaN(values[2]));
+        values = scanner.scan(" { } ");
+        assertTrue(Double.isNaN(values[1]));
+    }
+
+
+    @Test
+    public void testInvalid() {
+        JsonScanner scanner = new JsonScanner(new String[] { "a" });
+        assertNull(scanner.scan("[1, 2]"));
+        assertNull(scanner.scan("{\"a\": 1"));
+        assertNull(scanner.scan("{\"a\": x}"));
+        assertNull(scanner.scan("{\"a\" 1}"));
+    }
+
+
+    @Test
+    public void testNumberGrammar() {
+        JsonScanner scanner = new JsonScanner(new String[] { "a" });
+        String[] valid = { "0", "-0", "12", "-12.5", "0.5", "1e3", "1E+3", "-1.5e-3" };
+        double[] expected = { 0, -0.0, 12, -12.5, .5, 1000, 1000, -.0015 };
+        for(int i = 0; i < valid.length; i++) {
+            assertEquals(valid[i], expected[i], scanner.scan("{\"a\": " + valid[i] + "}")[1], 0);
+            assertEquals(valid[i], expected[i], scanner.scan("{\"a\": \"" + valid[i] + "\"}")[1], 0);
+        }
+        String[] invalid = { "+1", ".5", "01", "-", "1.", "1.e3", "1e", "1e+", "--1", "1-2", "1d", "0x1F", "" };
+        for(String s : invalid) {
+            // Unquoted, the line isn't valid JSON.  Quoted, it's a string which isn't a number.
+            assertNull(s, scanner.scan("{\"a\": " + s + "}"));
+            assertTrue(s, Double.isNaN(scanner.scan("{\"a\": \"" + s + "\"}")[1]));
+        }
+        assertTrue(Double.isNaN(scanner.scan("{\"a\": \" 1\"}")[1]));
+    }
+
+
+    @Test
+    public void testTrailingText() {
+        JsonScanner scanner = new JsonScanner(new String[] { "a" });
+        assertEquals(1, scanner.scan("{\"a\": 1} \t")[1], 0);
+        assertNull(scanner.scan("{\"a\": 1} x"));
+        assertNull(scanner.scan("{\"a\": 1}}"));
+        assertNull(scanner.scan("{\"a\": 1}{\"a\": 2}"));
+    }
+
+
+    @Test
+    public void testDuplicateKeyPaths() {
+        JsonScanner scanner = new JsonScanner(new String[] { "t", "b.c", "t", "b.c", "t" });
+        double[] values = scanner.scan("{\"t\": 5, \"b\": {\"c\": 7}}");
+        assertEquals(5, values[1], 0);
+        assertEquals(7, values[2], 0);
+        assertEquals(5, values[3], 0);
+        assertEquals(7, values[4], 0);
+        assertEquals(5, values[5], 0);
+        values = scanner.scan("{\"b\": {\"c\": 8}}");
+        assertTrue(Double.isNaN(values[1]));
+        assertTrue(Double.isNaN(values[3]));
+        assertEquals(8, values[4], 0);
+    }
+}
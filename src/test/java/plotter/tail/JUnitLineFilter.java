@@ -0,0 +1,96 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JUnitLineFilter {
+    @Test
+    public void testIncludeLiteral() {
+        LineFilter filter = new LineFilter("ERROR", false);
+        assertTrue(filter.accept("1,ERROR,5"));
+        assertTrue(filter.accept("ERROR"));
+        // The literal is absent from the line.
+        assertFalse(filter.accept("1,WARN,5"));
+        assertFalse(filter.accept("1,error,5"));
+        assertFalse(filter.accept(""));
+    }
+
+
+    @Test
+    public void testExcludeLiteral() {
+        LineFilter filter = new LineFilter("DEBUG", true);
+        assertFalse(filter.accept("1,DEBUG,5"));
+        assertTrue(filter.accept("1,INFO,5"));
+        assertTrue(filter.accept(""));
+    }
+
+
+    @Test
+    public void testLiteralWithoutMetacharacters() {
+        // Characters like '-', ',' and ':' aren't special, so these are searched for as they are.
+        LineFilter filter = new LineFilter("a-b, c:d", false);
+        assertTrue(filter.accept("x a-b, c:d y"));
+        assertFalse(filter.accept("x a-b,c:d y"));
+    }
+
+
+    @Test
+    public void testIncludeRegex() {
+        LineFilter filter = new LineFilter("lat=[0-9]+ms", false);
+        assertTrue(filter.accept("req lat=15ms ok"));
+        assertFalse(filter.accept("req lat=ms ok"));
+        // No part of the pattern is in the line.
+        assertFalse(filter.accept("1,2,3"));
+        // The matcher is reused, so it must be reset for each line.
+        assertTrue(filter.accept("lat=1ms"));
+    }
+
+
+    @Test
+    public void testExcludeRegex() {
+        LineFilter filter = new LineFilter("^#|DEBUG|TRACE", true);
+        assertFalse(filter.accept("# comment"));
+        assertFalse(filter.accept("1,TRACE,5"));
+        assertTrue(filter.accept("1,INFO,5 #"));
+        assertTrue(filter.accept("1,2,3"));
+    }
+
+
+    @Test
+    public void testMetacharacters() {
+        // '.' makes this a regex, so it matches any character.
+        LineFilter dot = new LineFilter("1.5", false);
+        assertTrue(dot.accept("x=1.5"));
+        assertTrue(dot.accept("x=125"));
+        assertFalse(dot.accept("x=15"));
+
+        LineFilter escaped = new LineFilter("1\\.5", false);
+        assertTrue(escaped.accept("x=1.5"));
+        assertFalse(escaped.accept("x=125"));
+    }
+
+
+    @Test
+    public void testEmpty() {
+        assertTrue(new LineFilter("", false).accept("anything"));
+        assertFalse(new LineFilter("", true).accept("anything"));
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.regex.Matcher;
+
+import org.junit.Test;
+
+public class JUnitLinePattern {
+    @Test
+    public void testRequiredLiteral() {
+        assertEquals("took ", LinePattern.requiredLiteral("took (\\d+)ms"));
+        assertEquals(") (queue=", LinePattern.requiredLiteral("a(\\d+)\\) \\(queue=(\\d+)"));
+        assertEquals("abc", LinePattern.requiredLiteral("xy?abc+d*"));
+        assertEquals("latenc", LinePattern.requiredLiteral("[a-z ]+latency{1,2}\\d{10}"));
+        assertNull(LinePattern.requiredLiteral("foo|bar"));
+        assertNull(LinePattern.requiredLiteral("(?i)took"));
+        assertNull(LinePattern.requiredLiteral("(\\d+)"));
+    }
+
+
+    @Test
+    public void testRequiredLiteralEscapeOperands() {
+        assertEquals("BC", LinePattern.requiredLiteral("\\x41BC"));
+        assertEquals("yz", LinePattern.requiredLiteral("\\x{41}yz"));
+        assertEquals("bc", LinePattern.requiredLiteral("\\u0041bc"));
+        assertEquals("BC", LinePattern.requiredLiteral("\\cABC"));
+        assertEquals("xy", LinePattern.requiredLiteral("\\0101xy"));
+        assertEquals("89", LinePattern.requiredLiteral("\\0489"));
+        assertEquals("zz", LinePattern.requiredLiteral("(?<name>a)\\k<name>zz"));
+        assertEquals("ab", LinePattern.requiredLiteral("\\pLab"));
+        assertEquals("abc", LinePattern.requiredLiteral("\\p{Lu}abc"));
+        assertNull(LinePattern.requiredLiteral("\\x41"));
+        assertNull(LinePattern.requiredLiteral("\\u0041"));
+        assertNull(LinePattern.requiredLiteral("\\cA"));
+        assertNull(LinePattern.requiredLiteral("\\0101"));
+        assertNull(LinePattern.requiredLiteral("(a)\\k<name>"));
+        assertNull(LinePattern.requiredLiteral("(a)\\12"));
+    }
+
+
+    @Test
+    public void testGroupNames() {
+        assertArrayEquals(new String[] { null, "a", null, "b" },
+                LinePattern.groupNames("(?<a>x)(?:y)(z)(?=w)[(](?<b>\\()"));
+        assertArrayEquals(new String[] { null, null }, LinePattern.groupNames("\\c((a)"));
+    }
+
+
+    @Test
+    public void testMatch() {
+        LinePattern pattern = new LinePattern("took (?<latency>\\d+)ms");
+        assertNull(pattern.match("nothing here"));
+        assertNull(pattern.match("took no time"));
+        Matcher m = pattern.match("request took 123ms");
+        assertEquals("123", m.group(1));
+        assertEquals(1, pattern.getGroupCount());
+        assertEquals("latency", pattern.getGroupName(1));
+    }
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class JUnitLoadGenerator {
+    @Test
+    public void testAppendFixed() {
+        assertEquals("0.000", format(0));
+        assertEquals("1.500", format(1.5));
+        assertEquals("-0.012", format(-.0123));
+        assertEquals("-3.007", format(-3.0071));
+        assertEquals("1446000000000.125", format(1446000000000.125));
+    }
+
+
+    private static String format(double value) {
+        StringBuilder b = new StringBuilder();
+        LoadGenerator.appendFixed(b, value);
+        return b.toString();
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class JUnitMetrics {
+    @Test
+    public void testRegister() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("plotter.tail:type=TailPlot,*");
+        int before = server.queryNames(pattern, null).size();
+        Metrics a = new Metrics();
+        Metrics b = new Metrics();
+        // Each plot gets its own name.
+        a.register(Collections.<DataFile> emptyList());
+        b.register(Collections.<DataFile> emptyList());
+        assertEquals(before + 2, server.queryNames(pattern, null).size());
+        a.unregister();
+        b.unregister();
+        assertEquals(before, server.queryNames(pattern, null).size());
+    }
+}
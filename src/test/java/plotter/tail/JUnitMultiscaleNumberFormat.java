@@ -18,7 +18,11 @@ package plotter.tail;
 
 import static org.junit.Assert.assertEquals;
 
+import java.text.DecimalFormat;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
 import java.text.ParseException;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -49,6 +53,39 @@ public class JUnitMultiscaleNumberFormat {
     }
 
 
+    @Test
+    public void testMatchesDecimalFormat() {
+        DecimalFormat plainFormat = new DecimalFormat("#.######");
+        DecimalFormat exponentialFormat = new DecimalFormat("0.######E0");
+        MultiscaleNumberFormat format = new MultiscaleNumberFormat(plainFormat, exponentialFormat, .01, 999.5);
+        Random random = new Random(0);
+        for(int i = 0; i < 100000; i++) {
+            double value;
+            if(i % 3 == 0) {
+                value = Math.pow(10, random.nextDouble() * 40 - 20);
+            } else if(i % 3 == 1) {
+                // Ties and near-ties
+                value = (random.nextInt(2000000) + .5) / Math.pow(10, random.nextInt(12));
+            } else {
+                value = Double.longBitsToDouble(random.nextLong());
+            }
+            if(random.nextBoolean()) {
+                value = -value;
+            }
+            double mag = Math.abs(value);
+            DecimalFormat expected = mag > 999.5 || (mag < .01 && mag != 0) ? exponentialFormat : plainFormat;
+            FieldPosition expectedPos = new FieldPosition(NumberFormat.INTEGER_FIELD);
+            FieldPosition pos = new FieldPosition(NumberFormat.INTEGER_FIELD);
+            String expectedText = expected.format(value, new StringBuffer("x"), expectedPos).toString();
+            // Format twice to check the cached value.
+            format.format(value);
+            assertEquals(String.valueOf(value), expectedText, format.format(value, new StringBuffer("x"), pos).toString());
+            assertEquals(expectedPos.getBeginIndex(), pos.getBeginIndex());
+            assertEquals(expectedPos.getEndIndex(), pos.getEndIndex());
+        }
+    }
+
+
     @Test
     public void testParse() throws ParseException {
         MultiscaleNumberFormat format = new MultiscaleNumberFormat();
@@ -0,0 +1,140 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import plotter.DoubleData;
+import plotter.xy.LinearXYAxis;
+import plotter.xy.XYDimension;
+
+public class JUnitPlotDataset {
+    private static PlotDataset createDataset() {
+        return new PlotDataset(new MultiplexingXYPlotLine(new LinearXYAxis(XYDimension.X), new LinearXYAxis(
+                XYDimension.Y), XYDimension.X));
+    }
+
+
+    @Test
+    public void testAppend() {
+        PlotDataset dataset = createDataset();
+        dataset.add(0, 5);
+        dataset.append(new double[] { -1, 1, 2, 3 }, new double[] { 0, 4, Double.NaN, 6 }, 1, 3);
+        assertEquals(4, dataset.getPointCount());
+        DoubleData x = dataset.getXData();
+        DoubleData y = dataset.getYData();
+        assertEquals(1, x.get(1), 0);
+        assertEquals(3, x.get(3), 0);
+        assertEquals(4, y.get(1), 0);
+        assertEquals(6, y.get(3), 0);
+        assertEquals(0, dataset.getMinX(), 0);
+        assertEquals(3, dataset.getMaxX(), 0);
+        assertEquals(4, dataset.getMinY(), 0);
+        assertEquals(6, dataset.getMaxY(), 0);
+        dataset.removeAllPoints();
+        assertEquals(0, dataset.getPointCount());
+        assertEquals(Double.POSITIVE_INFINITY, dataset.getMinY(), 0);
+    }
+
+
+    @Test
+    public void testAppendDecreasing() {
+        MultiplexingXYPlotLine line = new MultiplexingXYPlotLine(new LinearXYAxis(XYDimension.X), new LinearXYAxis(
+                XYDimension.Y), XYDimension.X);
+        PlotDataset dataset = new PlotDataset(line);
+        dataset.append(new double[] { 0, 1, 2 }, new double[] { 5, 6, 7 }, 0, 3);
+        assertEquals(XYDimension.X, line.getIndependentDimension());
+        int modCount = line.getModCount();
+        // X decreases within the batch, so the line must become a scatter plot.
+        double[] x = { 3, 9, 4, 8 };
+        double[] y = { 1, 2, 3, 4 };
+        dataset.append(x, y, 0, 4);
+        assertNull(line.getIndependentDimension());
+        assertEquals(modCount + 1, line.getModCount());
+        assertEquals(7, dataset.getPointCount());
+        for(int i = 0; i < x.length; i++) {
+            assertEquals(x[i], dataset.getXData().get(3 + i), 0);
+            assertEquals(y[i], dataset.getYData().get(3 + i), 0);
+        }
+        assertEquals(0, dataset.getMinX(), 0);
+        assertEquals(9, dataset.getMaxX(), 0);
+        assertEquals(1, dataset.getMinY(), 0);
+        assertEquals(7, dataset.getMaxY(), 0);
+    }
+
+
+    @Test
+    public void testAppendBeforeLastPoint() {
+        MultiplexingXYPlotLine line = new MultiplexingXYPlotLine(new LinearXYAxis(XYDimension.X), new LinearXYAxis(
+                XYDimension.Y), XYDimension.X);
+        PlotDataset dataset = new PlotDataset(line);
+        dataset.add(5, 0);
+        // Each point of the batch increases, but the first is before the existing point.
+        dataset.append(new double[] { 1, 2 }, new double[] { 1, 2 }, 0, 2);
+        assertNull(line.getIndependentDimension());
+        assertEquals(3, dataset.getPointCount());
+        assertEquals(1, dataset.getXData().get(1), 0);
+        assertEquals(2, dataset.getXData().get(2), 0);
+    }
+
+
+    @Test
+    public void testSetLastY() {
+        PlotDataset dataset = createDataset();
+        dataset.add(0, 5);
+        dataset.add(1, 6);
+        dataset.setLastY(8);
+        assertEquals(2, dataset.getPointCount());
+        assertEquals(8, dataset.getYData().get(1), 0);
+        assertEquals(5, dataset.getYData().get(0), 0);
+        assertEquals(8, dataset.getMaxY(), 0);
+        dataset.setLastY(2);
+        assertEquals(2, dataset.getMinY(), 0);
+    }
+
+
+    @Test
+    public void testSetLastYMarksDataAdded() {
+        LinearXYAxis xAxis = new LinearXYAxis(XYDimension.X);
+        LinearXYAxis yAxis = new LinearXYAxis(XYDimension.Y);
+        final List<double[]> added = new ArrayList<double[]>();
+        ScrollingPlotContents contents = new ScrollingPlotContents(xAxis, yAxis, null) {
+            private static final long serialVersionUID = 1L;
+
+
+            @Override
+            public void dataAdded(double minX, double maxX) {
+                added.add(new double[] { minX, maxX });
+            }
+        };
+        MultiplexingXYPlotLine line = new MultiplexingXYPlotLine(xAxis, yAxis, XYDimension.X);
+        contents.add(line);
+        PlotDataset dataset = new PlotDataset(line);
+        dataset.append(new double[] { 0, 1, 2 }, new double[] { 5, 6, 7 }, 0, 3);
+        added.clear();
+        // The tiles and raster columns holding the updated bucket must be rendered again.
+        dataset.setLastY(9);
+        assertEquals(1, added.size());
+        assertEquals(1, added.get(0)[0], 0);
+        assertEquals(2, added.get(0)[1], 0);
+    }
+}
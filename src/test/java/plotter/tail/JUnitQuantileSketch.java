@@ -0,0 +1,97 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JUnitQuantileSketch {
+    @Test
+    public void testEmpty() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertEquals(0, sketch.getCount());
+        assertTrue(Double.isNaN(sketch.getQuantile(.5)));
+    }
+
+
+    @Test
+    public void testQuantiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        for(int i = 1; i <= 1000; i++) {
+            sketch.add(i);
+        }
+        assertEquals(1000, sketch.getCount());
+        assertEquals(1, sketch.getQuantile(0), 1 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(500, sketch.getQuantile(.5), 500 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(990, sketch.getQuantile(.99), 990 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(1000, sketch.getQuantile(1), 1000 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+
+    @Test
+    public void testNegativeAndZero() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(-100);
+        sketch.add(-10);
+        sketch.add(0);
+        sketch.add(10);
+        sketch.add(100);
+        sketch.add(Double.NaN);
+        assertEquals(5, sketch.getCount());
+        assertEquals(-100, sketch.getQuantile(0), 100 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(-10, sketch.getQuantile(.25), 10 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(0, sketch.getQuantile(.5), 0);
+        assertEquals(100, sketch.getQuantile(1), 100 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+
+    @Test
+    public void testMergeAndSubtract() {
+        QuantileSketch a = new QuantileSketch();
+        QuantileSketch b = new QuantileSketch();
+        for(int i = 1; i <= 100; i++) {
+            a.add(i);
+            b.add(i * 1e6);
+        }
+        QuantileSketch merged = new QuantileSketch();
+        merged.add(a);
+        merged.add(b);
+        assertEquals(200, merged.getCount());
+        assertEquals(50, merged.getQuantile(.25), 50 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(1e8, merged.getQuantile(1), 1e8 * QuantileSketch.RELATIVE_ACCURACY);
+        merged.subtract(b);
+        assertEquals(100, merged.getCount());
+        assertEquals(100, merged.getQuantile(1), 100 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+
+    @Test
+    public void testWideRange() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(1e-300);
+        for(int i = 1; i <= 1000; i++) {
+            sketch.add(i);
+        }
+        assertEquals(1001, sketch.getCount());
+        // The range is too wide for the buckets, so the smallest value is clamped, but the rest are still accurate.
+        assertTrue(sketch.getQuantile(0) > 1e-300);
+        assertEquals(500, sketch.getQuantile(.5), 500 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(1000, sketch.getQuantile(1), 1000 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import plotter.tail.Resampler.Aggregation;
+
+public class JUnitResampler {
+    private static final double NaN = Double.NaN;
+
+
+    @Test
+    public void testAggregations() {
+        double[][] rows = { { 10, 3 }, { 12, NaN }, { 14, 1 }, { 19, 2 } };
+        check(Aggregation.COUNT, rows, 3);
+        check(Aggregation.SUM, rows, 6);
+        check(Aggregation.AVG, rows, 2);
+        check(Aggregation.MIN, rows, 1);
+        check(Aggregation.MAX, rows, 3);
+        check(Aggregation.LAST, rows, 2);
+    }
+
+
+    private static void check(Aggregation aggregation, double[][] rows, double expected) {
+        Resampler resampler = new Resampler(10, aggregation);
+        double[] bucket = null;
+        for(double[] row : rows) {
+            bucket = resampler.add(row);
+        }
+        assertArrayEquals(aggregation.toString(), new double[] { 10, expected }, bucket, 0);
+    }
+
+
+    @Test
+    public void testNaN() {
+        Resampler resampler = new Resampler(10, Aggregation.SUM);
+        assertNull(resampler.add(new double[] { NaN, 1, 1 }));
+        double[] bucket = resampler.add(new double[] { 5, NaN, 2 });
+        assertArrayEquals(new double[] { 0, NaN, 2 }, bucket, 0);
+        // The row with a NaN X value doesn't count toward the bucket.
+        assertNull(resampler.add(new double[] { NaN, 1, 1 }));
+        assertArrayEquals(new double[] { 0, NaN, 2 }, bucket, 0);
+        assertArrayEquals(new double[] { 0, 4, 5 }, resampler.add(new double[] { 6, 4, 3 }), 0);
+    }
+
+
+    @Test
+    public void testNegative() {
+        Resampler resampler = new Resampler(10, Aggregation.COUNT);
+        // -5 is in the bucket starting at -10, not the one starting at 0.
+        double[] bucket = resampler.add(new double[] { -5, 1 });
+        assertArrayEquals(new double[] { -10, 1 }, bucket, 0);
+        assertSame(bucket, resampler.add(new double[] { -10, 1 }));
+        assertArrayEquals(new double[] { -10, 2 }, bucket, 0);
+        assertSame(bucket, resampler.add(new double[] { -.5, 1 }));
+        assertArrayEquals(new double[] { -10, 3 }, bucket, 0);
+        double[] next = resampler.add(new double[] { 0, 1 });
+        assertNotSame(bucket, next);
+        assertArrayEquals(new double[] { 0, 1 }, next, 0);
+    }
+
+
+    @Test
+    public void testInPlace() {
+        Resampler resampler = new Resampler(1, Aggregation.SUM);
+        double[] bucket = resampler.add(new double[] { 0, 1 });
+        assertSame(bucket, resampler.add(new double[] { .5, 2 }));
+        assertArrayEquals(new double[] { 0, 3 }, bucket, 0);
+
+        // A new bucket gets a new array, so the finished one isn't changed.
+        double[] next = resampler.add(new double[] { 1, 4 });
+        assertNotSame(bucket, next);
+        assertArrayEquals(new double[] { 0, 3 }, bucket, 0);
+        assertArrayEquals(new double[] { 1, 4 }, next, 0);
+
+        // So does a row with a different number of fields.
+        double[] wider = resampler.add(new double[] { 1, 1, 1 });
+        assertNotSame(next, wider);
+        assertArrayEquals(new double[] { 1, 1, 1 }, wider, 0);
+
+        // As does the first row after clearing.
+        resampler.clear();
+        double[] cleared = resampler.add(new double[] { 1, 2, 2 });
+        assertNotSame(wider, cleared);
+        assertArrayEquals(new double[] { 1, 2, 2 }, cleared, 0);
+    }
+
+
+    @Test
+    public void testEarlierBucket() {
+        Resampler resampler = new Resampler(10, Aggregation.SUM);
+        double[] first = resampler.add(new double[] { 25, 1 });
+        resampler.add(new double[] { 27, 2 });
+        // X going backwards starts the earlier bucket over, rather than changing the row already handed out for it.
+        double[] earlier = resampler.add(new double[] { 15, 4 });
+        assertNotSame(first, earlier);
+        assertArrayEquals(new double[] { 20, 3 }, first, 0);
+        assertArrayEquals(new double[] { 10, 4 }, earlier, 0);
+        double[] later = resampler.add(new double[] { 21, 8 });
+        assertNotSame(first, later);
+        assertArrayEquals(new double[] { 20, 8 }, later, 0);
+        assertArrayEquals(new double[] { 20, 3 }, first, 0);
+    }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JUnitRollingQuantiles {
+    private static final double[] QUANTILES = { 0, .5, 1 };
+
+
+    @Test
+    public void testFirstPane() {
+        RollingQuantiles r = new RollingQuantiles(1, 100, QUANTILES);
+        assertFalse(r.add(5, 1));
+        assertFalse(r.add(9.9, 2));
+        assertFalse(r.add(Double.NaN, 3));
+        assertTrue(r.add(10, 3));
+        assertEquals(1, r.getValue(0), QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(2, r.getValue(2), 2 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+
+    @Test
+    public void testClear() {
+        RollingQuantiles r = new RollingQuantiles(1, 100, QUANTILES);
+        r.add(0, 1000);
+        r.add(10, 1);
+        r.clear();
+        r.add(20, 5);
+        assertTrue(r.add(30, 5));
+        assertEquals(5, r.getValue(0), 5 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(5, r.getValue(2), 5 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+
+    /**
+     * Compares against keeping every value in the window.
+     * The window is 100 wide, so each of the 10 panes is 10 wide.
+     * X mostly creeps forward, but also jumps over whole windows and moves backwards,
+     * and starts out negative to exercise the slot arithmetic.
+     * Values grow with the pane they are counted in, so a pane which isn't expired shows up in the minimum.
+     */
+    @Test
+    public void testBruteForce() {
+        Random random = new Random(0);
+        RollingQuantiles r = new RollingQuantiles(1, 100, QUANTILES);
+        List<Long> panes = new ArrayList<Long>();
+        List<Double> values = new ArrayList<Double>();
+        long current = Long.MIN_VALUE;
+        double x = -537;
+        int updates = 0;
+        for(int i = 0; i < 20000; i++) {
+            int move = random.nextInt(100);
+            if(move == 0) {
+                x += 50 + random.nextDouble() * 250;
+            } else if(move < 5) {
+                x -= random.nextDouble() * 40;
+            } else {
+                x += random.nextDouble() * 3;
+            }
+            long pane = (long) Math.floor(x / 10);
+            boolean expected = current != Long.MIN_VALUE && pane > current;
+            double[] window = null;
+            if(expected) {
+                window = window(panes, values, current);
+            }
+            if(current == Long.MIN_VALUE || pane > current) {
+                current = pane;
+            }
+            double value = 1 + (current + 100) * 10 + random.nextDouble() * 5;
+            assertEquals("at " + i, expected, r.add(x, value));
+            if(expected) {
+                updates++;
+                for(int q = 0; q < QUANTILES.length; q++) {
+                    double v = window[(int) (QUANTILES[q] * (window.length - 1))];
+                    assertEquals("at " + i, v, r.getValue(q), v * QuantileSketch.RELATIVE_ACCURACY);
+                }
+            }
+            // X moving backwards counts the value in the current pane.
+            panes.add(current);
+            values.add(value);
+        }
+        assertTrue(updates > 1000);
+    }
+
+
+    /**
+     * Returns the sorted values counted in the window ending with a pane.
+     */
+    private static double[] window(List<Long> panes, List<Double> values, long last) {
+        double[] window = new double[values.size()];
+        int n = 0;
+        for(int i = 0; i < values.size(); i++) {
+            long pane = panes.get(i);
+            if(pane > last - 10 && pane <= last) {
+                window[n++] = values.get(i);
+            }
+        }
+        window = Arrays.copyOf(window, n);
+        Arrays.sort(window);
+        return window;
+    }
+}
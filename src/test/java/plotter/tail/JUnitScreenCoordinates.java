@@ -0,0 +1,164 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import javax.swing.JPanel;
+
+import org.junit.Test;
+
+import plotter.DoubleData;
+import plotter.xy.LinearXYAxis;
+import plotter.xy.XYAxis;
+import plotter.xy.XYDimension;
+
+public class JUnitScreenCoordinates {
+    private static XYAxis createAxis(XYDimension dimension, double start, double end) {
+        LinearXYAxis axis = new LinearXYAxis(dimension);
+        axis.setStart(start);
+        axis.setEnd(end);
+        axis.setSize(200, 100);
+        return axis;
+    }
+
+
+    @Test
+    public void testSetLastY() {
+        XYAxis xAxis = createAxis(XYDimension.X, 0, 10);
+        XYAxis yAxis = createAxis(XYDimension.Y, 0, 10);
+        MultiplexingXYPlotLine line = new MultiplexingXYPlotLine(xAxis, yAxis, XYDimension.X);
+        for(int i = 0; i < 5; i++) {
+            line.add(i, 1);
+        }
+        JPanel target = new JPanel();
+        target.setSize(200, 100);
+        ScreenCoordinates coordinates = new ScreenCoordinates(line);
+        coordinates.update(target);
+        assertTrue(coordinates.isSorted());
+        assertEquals(yAxis.toPhysical(1), coordinates.getY(4), 1);
+
+        line.setLastY(9);
+        coordinates.update(target);
+        assertEquals(yAxis.toPhysical(9), coordinates.getY(4), 1);
+        assertEquals(yAxis.toPhysical(1), coordinates.getY(3), 1);
+    }
+
+
+    @Test
+    public void testGetNearestPoint() {
+        Random random = new Random(0);
+        XYAxis xAxis = createAxis(XYDimension.X, 0, 100);
+        XYAxis yAxis = createAxis(XYDimension.Y, 0, 100);
+        MultiplexingXYPlotLine line = new MultiplexingXYPlotLine(xAxis, yAxis, XYDimension.X);
+        // Decreasing X values turn the line into a scatter plot.
+        line.add(5, 5);
+        line.add(1, 1);
+        JPanel target = new JPanel();
+        target.setSize(200, 100);
+        ScreenCoordinates coordinates = new ScreenCoordinates(line);
+        for(int pass = 0; pass < 6; pass++) {
+            // Later passes spread out further, so points fall outside the grid and force it to be rebuilt.
+            double spread = 50 * (pass + 1);
+            for(int i = 0; i < 500; i++) {
+                line.add(50 + (random.nextDouble() - .5) * spread, 50 + random.nextGaussian() * spread / 4);
+            }
+            if(pass == 3) {
+                xAxis.setStart(40);
+                xAxis.setEnd(45);
+            }
+            coordinates.update(target);
+            assertTrue(coordinates.isScattered());
+            for(int k = 0; k < 200; k++) {
+                int x = random.nextInt(240) - 20;
+                int y = random.nextInt(140) - 20;
+                assertEquals(getNearestPoint(line, xAxis, yAxis, 200, 100, x, y), coordinates.getNearestPoint(x, y));
+            }
+        }
+    }
+
+
+    @Test
+    public void testGetNearestPointWithOutlier() {
+        Random random = new Random(0);
+        XYAxis xAxis = createAxis(XYDimension.X, 0, 100);
+        XYAxis yAxis = createAxis(XYDimension.Y, 0, 100);
+        MultiplexingXYPlotLine line = new MultiplexingXYPlotLine(xAxis, yAxis, XYDimension.X);
+        line.add(5, 5);
+        line.add(1, 1e9);
+        for(int i = 0; i < 20000; i++) {
+            line.add(random.nextDouble() * 100, random.nextDouble() * 100);
+        }
+        JPanel target = new JPanel();
+        target.setSize(200, 100);
+        ScreenCoordinates coordinates = new ScreenCoordinates(line);
+        coordinates.update(target);
+        assertTrue(coordinates.isScattered());
+        for(int k = 0; k < 200; k++) {
+            int x = random.nextInt(240) - 20;
+            int y = random.nextInt(140) - 20;
+            assertEquals(getNearestPoint(line, xAxis, yAxis, 200, 100, x, y), coordinates.getNearestPoint(x, y));
+        }
+
+        // The outlier stretches the grid so the other points share a cell, which must not be searched as one list.
+        PointGrid grid = new PointGrid();
+        grid.update(line.getXData(), line.getYData(), line.getXData().getLength(), 0);
+        final int[] visited = new int[1];
+        grid.search(50, 51, 50, 51, new PointGrid.Visitor() {
+            @Override
+            public void visit(int index) {
+                visited[0]++;
+            }
+        });
+        assertTrue("Visited " + visited[0] + " points", visited[0] < 200);
+    }
+
+
+    /**
+     * Finds the nearest visible point by checking every point.
+     */
+    private static int getNearestPoint(MultiplexingXYPlotLine line, XYAxis xAxis, XYAxis yAxis, int width, int height,
+            int x, int y) {
+        double x0 = xAxis.toPhysical(xAxis.getStart());
+        double xScale = (xAxis.toPhysical(xAxis.getEnd()) - x0) / (xAxis.getEnd() - xAxis.getStart());
+        double y0 = yAxis.toPhysical(yAxis.getStart());
+        double yScale = (yAxis.toPhysical(yAxis.getEnd()) - y0) / (yAxis.getEnd() - yAxis.getStart());
+        DoubleData xData = line.getXData();
+        DoubleData yData = line.getYData();
+        int nearest = -1;
+        long nearestDistance = Long.MAX_VALUE;
+        for(int i = 0; i < xData.getLength(); i++) {
+            double px = x0 + (xData.get(i) - xAxis.getStart()) * xScale;
+            double py = y0 + (yData.get(i) - yAxis.getStart()) * yScale;
+            if(!(px > -.5 && px < width - .5 && py > -.5 && py < height - .5)) {
+                continue;
+            }
+            long dx = Math.round(px) - x;
+            long dy = Math.round(py) - y;
+            long distance = dx * dx + dy * dy;
+            // Ties go to the newest point.
+            if(distance <= nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+}
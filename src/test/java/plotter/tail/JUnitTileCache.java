@@ -0,0 +1,80 @@
+/*******************************************************************************
+Copyright 2015 Adam Crume
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*******************************************************************************/
+
+package plotter.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class JUnitTileCache {
+    private static BufferedImage tile() {
+        // 1000 bytes
+        return new BufferedImage(10, 25, BufferedImage.TYPE_INT_ARGB);
+    }
+
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        TileCache cache = new TileCache(3000);
+        Object layer = "layer";
+        cache.put(layer, 0, tile());
+        cache.put(layer, 1, tile());
+        cache.put(layer, 2, tile());
+        // Touch tile 0 so tile 1 is the least recently used.
+        assertNotNull(cache.get(layer, 0));
+        cache.put(layer, 3, tile());
+        assertEquals(3, cache.size());
+        assertEquals(3000, cache.getBytes());
+        assertNull(cache.get(layer, 1));
+        assertNotNull(cache.get(layer, 0));
+        assertNotNull(cache.get(layer, 2));
+        assertNotNull(cache.get(layer, 3));
+    }
+
+
+    @Test
+    public void testInvalidate() {
+        TileCache cache = new TileCache(100000);
+        Object layer = "layer";
+        Object other = "other";
+        for(int i = 0; i < 5; i++) {
+            cache.put(layer, i, tile());
+        }
+        cache.put(other, 2, tile());
+        cache.invalidate(layer, 1, 2);
+        assertFalse(cache.isDirty(layer, 0));
+        assertTrue(cache.isDirty(layer, 1));
+        assertTrue(cache.isDirty(layer, 2));
+        assertFalse(cache.isDirty(layer, 3));
+        assertFalse(cache.isDirty(other, 2));
+        // Dirty tiles are still available until they are replaced.
+        assertNotNull(cache.get(layer, 1));
+        cache.put(layer, 1, tile());
+        assertFalse(cache.isDirty(layer, 1));
+
+        cache.removeLayer(layer);
+        assertFalse(cache.containsLayer(layer));
+        assertTrue(cache.containsLayer(other));
+        assertEquals(1000, cache.getBytes());
+    }
+}